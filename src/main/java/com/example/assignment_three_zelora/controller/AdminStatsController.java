@@ -0,0 +1,108 @@
+package com.example.assignment_three_zelora.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import com.example.assignment_three_zelora.model.service.AbandonedCartSweeper;
+import com.example.assignment_three_zelora.model.service.CartCache;
+import com.example.assignment_three_zelora.model.service.ReviewModerationService;
+import com.example.assignment_three_zelora.model.service.ReviewSearchIndex;
+import com.example.assignment_three_zelora.model.service.SalesRollupService;
+import com.example.assignment_three_zelora.service.OptimisticRetry;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@RestController
+@RequestMapping("")
+@CrossOrigin(origins = "http://localhost:3000")
+public class AdminStatsController {
+    
+    @Autowired
+    private SalesRollupService salesRollupService;
+    
+    @Autowired
+    private OptimisticRetry optimisticRetry;
+    
+    @Autowired
+    private CartCache cartCache;
+    
+    @Autowired
+    private AbandonedCartSweeper abandonedCartSweeper;
+    
+    @Autowired
+    private ReviewModerationService reviewModerationService;
+    
+    @Autowired
+    private ReviewSearchIndex reviewSearchIndex;
+    
+    // Revenue, order count and units per bucket, answered from the rollups
+    @GetMapping("/admin/stats/sales")
+    public Map<String, Object> getSalesStats(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "DAY") String granularity,
+            @RequestParam(defaultValue = "ALL") String dimension,
+            @RequestParam(required = false) Integer dimensionId) {
+        return salesRollupService.getSalesSeries(from, to, granularity, dimension, dimensionId);
+    }
+    
+    // Rebuild rollups for a date range in the background
+    @PostMapping("/admin/stats/sales/backfill")
+    public ResponseEntity<SalesRollupService.BackfillStatus> startBackfill(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(salesRollupService.startBackfill(from, to));
+    }
+    
+    // Optimistic-lock contention per entity: calls, conflicts, retries per call, exhausted retries
+    @GetMapping("/admin/stats/contention")
+    public Map<String, Map<String, Object>> getContentionStats() {
+        return optimisticRetry.getStatsSnapshot();
+    }
+    
+    // Cart cache hit ratio, write-back coalescing and flush lag
+    @GetMapping("/admin/stats/cart-cache")
+    public Map<String, Object> getCartCacheStats() {
+        return cartCache.getStats();
+    }
+    
+    // Abandoned-cart sweeper progress, deleted and exported rows
+    @GetMapping("/admin/stats/abandoned-carts")
+    public Map<String, Object> getAbandonedCartStats() {
+        return abandonedCartSweeper.getStats();
+    }
+    
+    // Start an abandoned-cart sweep now instead of waiting for the nightly run
+    @PostMapping("/admin/stats/abandoned-carts/sweep")
+    public ResponseEntity<Map<String, Object>> startAbandonedCartSweep() {
+        if (!abandonedCartSweeper.start()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(abandonedCartSweeper.getStats());
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(abandonedCartSweeper.getStats());
+    }
+    
+    // Review moderation queue depth, lag and verdicts per heuristic
+    @GetMapping("/admin/stats/review-moderation")
+    public Map<String, Object> getReviewModerationStats() {
+        return reviewModerationService.getStats();
+    }
+    
+    // Review search index size and startup rebuild time
+    @GetMapping("/admin/stats/review-search")
+    public Map<String, Object> getReviewSearchStats() {
+        return reviewSearchIndex.getStats();
+    }
+    
+    // Progress of the latest backfill
+    @GetMapping("/admin/stats/sales/backfill")
+    public ResponseEntity<SalesRollupService.BackfillStatus> getBackfillStatus() {
+        SalesRollupService.BackfillStatus status = salesRollupService.getBackfillStatus();
+        if (status == null) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.ok(status);
+    }
+}
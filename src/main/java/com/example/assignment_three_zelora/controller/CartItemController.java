@@ -2,8 +2,12 @@ package com.example.assignment_three_zelora.controller;
 
 import com.example.assignment_three_zelora.model.service.CartItemService;
 import com.example.assignment_three_zelora.dto.AddToCartRequest;
+import com.example.assignment_three_zelora.dto.CartBatchRequest;
 import com.example.assignment_three_zelora.dto.UpdateQuantityRequest;
 import com.example.assignment_three_zelora.dto.CartItemResponse;
+import com.example.assignment_three_zelora.dto.CartRevalidationDto;
+import com.example.assignment_three_zelora.dto.CartSummaryDto;
+import com.example.assignment_three_zelora.service.WaitingRoomService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import java.math.BigDecimal;
@@ -18,15 +22,27 @@ public class CartItemController {
     @Autowired
     private CartItemService cartItemService;
 
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
     // Get all items in cart for a user
     @GetMapping("/cart/{userId}")
     public List<CartItemResponse> getCart(@PathVariable Integer userId) {
         return cartItemService.getCartByUserId(userId);
     }
 
-    // Add item to cart
+    // Lines, line and item counts, and total in one call
+    @GetMapping("/cart/{userId}/summary")
+    public CartSummaryDto getCartSummary(@PathVariable Integer userId) {
+        return cartItemService.getCartSummary(userId);
+    }
+
+    // Add item to cart (flash-sale products need a waiting-room admission)
     @PostMapping("/cart/add")
-    public CartItemResponse addToCart(@RequestBody AddToCartRequest request) {
+    public CartItemResponse addToCart(
+            @RequestBody AddToCartRequest request,
+            @RequestHeader(value = WaitingRoomService.TOKEN_HEADER, required = false) String admissionToken) {
+        waitingRoomService.checkAdmission(request.getProductId(), admissionToken);
         return cartItemService.addToCart(
             request.getUserId(),
             request.getProductId(),
@@ -34,12 +50,32 @@ public class CartItemController {
         );
     }
 
-    // Update item quantity in cart
+    // Apply many adds, updates and removes in one call (e.g. syncing a guest cart after login); returns the final cart
+    @PostMapping("/cart/{userId}/batch")
+    public CartSummaryDto applyBatch(
+            @PathVariable Integer userId,
+            @RequestBody CartBatchRequest request,
+            @RequestHeader(value = WaitingRoomService.TOKEN_HEADER, required = false) String admissionToken) {
+        // Admission is checked for every product the batch grows, whichever operations did it
+        return cartItemService.applyBatch(userId, request.getOperations(),
+                productId -> waitingRoomService.checkAdmission(productId, admissionToken));
+    }
+
+    // Re-check the cart against current prices and stock before checkout; changed prices are updated in the cart
+    @PostMapping("/cart/{userId}/revalidate")
+    public CartRevalidationDto revalidateCart(@PathVariable Integer userId) {
+        return cartItemService.revalidate(userId);
+    }
+
+    // Update item quantity in cart (growing a flash-sale line needs a waiting-room admission)
     @PutMapping("/cart/update")
-    public CartItemResponse updateQuantity(@RequestBody UpdateQuantityRequest request) {
+    public CartItemResponse updateQuantity(
+            @RequestBody UpdateQuantityRequest request,
+            @RequestHeader(value = WaitingRoomService.TOKEN_HEADER, required = false) String admissionToken) {
         return cartItemService.updateQuantity(
             request.getCartItemId(),
-            request.getQuantity()
+            request.getQuantity(),
+            productId -> waitingRoomService.checkAdmission(productId, admissionToken)
         );
     }
 
@@ -0,0 +1,22 @@
+package com.example.assignment_three_zelora.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+import com.example.assignment_three_zelora.dto.CheckoutQuoteDto;
+import com.example.assignment_three_zelora.dto.QuoteRequest;
+import com.example.assignment_three_zelora.model.service.PricingEngine;
+
+@RestController
+@RequestMapping("")
+@CrossOrigin(origins = "http://localhost:3000")
+public class CheckoutController {
+    
+    @Autowired
+    private PricingEngine pricingEngine;
+    
+    // Price a basket from catalog prices, including shipping
+    @PostMapping("/checkout/quote")
+    public CheckoutQuoteDto quote(@RequestBody QuoteRequest request) {
+        return pricingEngine.quote(request.getItems(), request.getShippingMethod()).toDto();
+    }
+}
@@ -1,15 +1,30 @@
 package com.example.assignment_three_zelora.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import com.example.assignment_three_zelora.model.entitys.Inventory;
 import com.example.assignment_three_zelora.model.entitys.Product;
+import com.example.assignment_three_zelora.model.entitys.StockForecast;
 import com.example.assignment_three_zelora.model.repos.InventoryRepository;
 import com.example.assignment_three_zelora.model.repos.ProductRepository;
+import com.example.assignment_three_zelora.model.repos.StockForecastRepository;
+import com.example.assignment_three_zelora.model.service.StockAdjustmentService;
+import com.example.assignment_three_zelora.model.service.StockAvailabilityIndex;
+import com.example.assignment_three_zelora.model.service.StockForecastService;
+import com.example.assignment_three_zelora.model.service.StockLedger;
+import com.example.assignment_three_zelora.model.service.StockStatusTracker;
+import com.example.assignment_three_zelora.dto.StockAdjustmentSummaryDto;
 import com.example.assignment_three_zelora.dto.StockStatusDto;
 import com.example.assignment_three_zelora.service.DtoMapperService;
 
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -18,6 +33,8 @@ import java.util.stream.Collectors;
 @CrossOrigin(origins = "http://localhost:3000")
 public class InventoryController {
     
+    private static final int MAX_AVAILABILITY_IDS = 1000;
+    
     @Autowired
     private InventoryRepository inventoryRepository;
     
@@ -27,31 +44,64 @@ public class InventoryController {
     @Autowired
     private DtoMapperService dtoMapperService;
     
-    // Get all inventory items
+    @Autowired
+    private StockLedger stockLedger;
+    
+    @Autowired
+    private StockAdjustmentService stockAdjustmentService;
+    
+    @Autowired
+    private StockStatusTracker stockStatusTracker;
+    
+    @Autowired
+    private StockForecastService stockForecastService;
+    
+    @Autowired
+    private StockAvailabilityIndex stockAvailabilityIndex;
+    
+    @Autowired
+    private StockForecastRepository stockForecastRepository;
+    
+    // Get all inventory items; quantities come from the stock ledger, the table only supplies product and supplier
     @GetMapping("/inventory")
     public List<Inventory> getAllInventory() {
-        return inventoryRepository.findAll();
+        Map<Integer, Inventory> stored = new HashMap<>();
+        for (Inventory row : inventoryRepository.findAll()) {
+            stored.put(row.getInventoryId(), row);
+        }
+        List<Inventory> result = new ArrayList<>(stored.size());
+        for (StockLedger.StockCell cell : stockLedger.getAllCells()) {
+            Inventory row = stored.remove(cell.getInventoryId());
+            if (row == null) {
+                continue;
+            }
+            Inventory current = new Inventory(cell.getInventoryId(), cell.getQuantityInStock(),
+                    cell.getQuantityReserved(), cell.getReorderPoint(), row.getProductId(), row.getSupplierId());
+            current.setVersion(row.getVersion());
+            result.add(current);
+        }
+        // Rows the ledger does not track (no product) are returned as stored
+        result.addAll(new TreeMap<>(stored).values());
+        return result;
     }
     
-    // Get all inventory as DTOs
+    // Get all inventory as DTOs (served from the stock ledger)
     @GetMapping("/inventory/status")
     public List<StockStatusDto> getAllInventoryStatus() {
-        return inventoryRepository.findAll().stream()
-                .map(dtoMapperService::toStockStatusDto)
+        return stockLedger.getAllCells().stream()
+                .map(this::toDto)
                 .collect(Collectors.toList());
     }
     
-    // Get stock status for a specific product
+    // Get stock status for a specific product, summed across suppliers
     @GetMapping("/inventory/product/{productId}")
     public ResponseEntity<StockStatusDto> getProductStockStatus(@PathVariable Integer productId) {
+        StockLedger.ProductStock stock = stockLedger.getProduct(productId);
+        if (stock != null) {
+            return ResponseEntity.ok(dtoMapperService.toStockStatusDto(stock));
+        }
         Optional<Product> product = productRepository.findById(productId);
         if (product.isPresent()) {
-            List<Inventory> inventories = inventoryRepository.findByProductId(product.get());
-            if (!inventories.isEmpty()) {
-                Inventory inventory = inventories.get(0);
-                StockStatusDto dto = dtoMapperService.toStockStatusDto(inventory);
-                return ResponseEntity.ok(dto);
-            }
             // If no inventory record, assume out of stock
             StockStatusDto dto = new StockStatusDto();
             dto.setProductId(productId);
@@ -64,49 +114,117 @@ public class InventoryController {
         return ResponseEntity.notFound().build();
     }
     
-    // Get low stock items
+    // Get low stock products (available across suppliers at or below the reorder point, but not zero)
     @GetMapping("/inventory/low-stock")
     public List<StockStatusDto> getLowStockItems() {
-        return inventoryRepository.findLowStockItems().stream()
+        return stockStatusTracker.getLowStock().stream()
                 .map(dtoMapperService::toStockStatusDto)
                 .collect(Collectors.toList());
     }
     
-    // Get out of stock items
+    // Get out of stock products (nothing available from any supplier once reservations are taken out)
     @GetMapping("/inventory/out-of-stock")
     public List<StockStatusDto> getOutOfStockItems() {
-        return inventoryRepository.findOutOfStockItems().stream()
+        return stockStatusTracker.getOutOfStock().stream()
                 .map(dtoMapperService::toStockStatusDto)
                 .collect(Collectors.toList());
     }
     
-    // Update inventory quantity
+    // Bulk in-stock check for cart and wishlist pages: ?ids=1,2,3 -> {"1": true, "2": false, ...}
+    @GetMapping("/inventory/availability")
+    public ResponseEntity<?> getAvailability(@RequestParam List<Integer> ids) {
+        if (ids.size() > MAX_AVAILABILITY_IDS) {
+            return ResponseEntity.badRequest().body(Map.of("error", "At most " + MAX_AVAILABILITY_IDS + " ids per request"));
+        }
+        Map<Integer, Boolean> availability = new LinkedHashMap<>();
+        for (Integer id : ids) {
+            if (id != null) {
+                availability.put(id, stockAvailabilityIndex.isInStock(id));
+            }
+        }
+        return ResponseEntity.ok(availability);
+    }
+    
+    // Sales-velocity forecasts, soonest expected stockout first
+    @GetMapping("/inventory/forecast")
+    public List<StockForecast> getForecasts() {
+        return stockForecastRepository.findAllByUrgency();
+    }
+    
+    // Forecast for one product
+    @GetMapping("/inventory/forecast/{productId}")
+    public ResponseEntity<StockForecast> getForecast(@PathVariable Integer productId) {
+        return stockForecastRepository.findById(productId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    // Recompute forecasts now instead of waiting for the nightly run
+    @PostMapping("/inventory/forecast/run")
+    public ResponseEntity<Map<String, Object>> runForecast() {
+        return ResponseEntity.ok(stockForecastService.runForecast());
+    }
+    
+    // Update inventory quantity; quantities go through the stock ledger, which writes them behind.
+    // Setting a quantity needs the expectedQuantityInStock/expectedQuantityReserved the admin read (409 if they moved)
     @PutMapping("/inventory/{inventoryId}")
     public ResponseEntity<?> updateInventory(
             @PathVariable Integer inventoryId,
             @RequestBody Map<String, Object> data) {
         try {
-            Optional<Inventory> inventory = inventoryRepository.findById(inventoryId);
-            if (inventory.isPresent()) {
-                Inventory inv = inventory.get();
-                
-                if (data.containsKey("quantityInStock")) {
-                    inv.setQuantityInStock(((Number) data.get("quantityInStock")).intValue());
-                }
-                if (data.containsKey("quantityReserved")) {
-                    inv.setQuantityReserved(((Number) data.get("quantityReserved")).intValue());
-                }
-                if (data.containsKey("reorderPoint")) {
-                    inv.setReorderPoint(((Number) data.get("reorderPoint")).intValue());
+            StockLedger.StockCell cell = stockLedger.getCell(inventoryId);
+            if (cell == null) {
+                return ResponseEntity.notFound().build();
+            }
+            
+            if (data.containsKey("quantityInStock") || data.containsKey("quantityReserved")) {
+                if (data.get("expectedQuantityInStock") == null || data.get("expectedQuantityReserved") == null) {
+                    return ResponseEntity.badRequest().body(Map.of("error",
+                            "expectedQuantityInStock and expectedQuantityReserved are required to set quantities"));
                 }
-                
-                Inventory updated = inventoryRepository.save(inv);
-                return ResponseEntity.ok(dtoMapperService.toStockStatusDto(updated));
+                stockLedger.setQuantities(inventoryId,
+                        ((Number) data.get("expectedQuantityInStock")).intValue(),
+                        ((Number) data.get("expectedQuantityReserved")).intValue(),
+                        data.get("quantityInStock") != null ? ((Number) data.get("quantityInStock")).intValue() : null,
+                        data.get("quantityReserved") != null ? ((Number) data.get("quantityReserved")).intValue() : null);
             }
-            return ResponseEntity.notFound().build();
+            if (data.containsKey("reorderPoint")) {
+                Integer reorderPoint = data.get("reorderPoint") != null ? ((Number) data.get("reorderPoint")).intValue() : null;
+                inventoryRepository.updateReorderPoint(inventoryId, reorderPoint);
+                stockLedger.updateReorderPoint(inventoryId, reorderPoint);
+            }
+            
+            return ResponseEntity.ok(toDto(cell));
+        } catch (OptimisticLockingFailureException e) {
+            Map<String, Object> conflict = new HashMap<>();
+            conflict.put("error", e.getMessage());
+            conflict.put("current", toDto(stockLedger.getCell(inventoryId)));
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(conflict);
         } catch (Exception e) {
             return ResponseEntity.badRequest()
                     .body(Map.of("error", "Failed to update inventory: " + e.getMessage()));
         }
     }
+    
+    // Apply stock deltas in bulk: JSON lines {"productId","supplierId","delta"} or CSV productId,supplierId,delta
+    @PostMapping(value = "/inventory/adjustments/bulk",
+            consumes = {"application/x-ndjson", "application/jsonl", "application/json", "text/csv", "text/plain"})
+    public ResponseEntity<?> bulkAdjust(HttpServletRequest request) {
+        String contentType = request.getContentType() != null ? request.getContentType().toLowerCase() : "";
+        boolean csv = contentType.contains("csv") || contentType.contains("text/plain");
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8))) {
+            StockAdjustmentSummaryDto summary = stockAdjustmentService.apply(reader, csv);
+            return ResponseEntity.ok(summary);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Failed to apply adjustments: " + e.getMessage()));
+        }
+    }
+    
+    private StockStatusDto toDto(StockLedger.StockCell cell) {
+        return dtoMapperService.toStockStatusDto(cell, stockLedger.getProductName(cell.getProductId()));
+    }
 }
@@ -3,18 +3,33 @@ package com.example.assignment_three_zelora.controller;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 import com.example.assignment_three_zelora.model.entitys.Orders;
 import com.example.assignment_three_zelora.model.entitys.Orderitem;
 import com.example.assignment_three_zelora.model.entitys.Customer;
-import com.example.assignment_three_zelora.model.entitys.Product;
 import com.example.assignment_three_zelora.model.repos.OrdersRepository;
 import com.example.assignment_three_zelora.model.repos.OrderItemRepository;
 import com.example.assignment_three_zelora.model.repos.CustomerRepository;
 import com.example.assignment_three_zelora.model.repos.ProductRepository;
+import com.example.assignment_three_zelora.model.service.CartCache;
+import com.example.assignment_three_zelora.model.service.InventoryService;
+import com.example.assignment_three_zelora.model.service.OrdersService;
+import com.example.assignment_three_zelora.model.service.PricingEngine;
+import com.example.assignment_three_zelora.model.service.ProductPriceCache;
+import com.example.assignment_three_zelora.dto.QuoteRequest;
+import com.example.assignment_three_zelora.dto.KeysetPage;
+import com.example.assignment_three_zelora.dto.OrderSummaryDto;
+import com.example.assignment_three_zelora.event.OrderCreatedEvent;
+import com.example.assignment_three_zelora.service.OrderStatusStreamService;
+import com.example.assignment_three_zelora.service.WaitingRoomService;
 
 import java.util.*;
 import java.math.BigDecimal;
+import java.time.LocalDate;
 
 @RestController
 @RequestMapping("")
@@ -33,36 +48,67 @@ public class OrdersController {
     @Autowired
     private ProductRepository productRepository;
     
-    // Get all orders
+    @Autowired
+    private OrdersService ordersService;
+    
+    @Autowired
+    private OrderStatusStreamService orderStatusStreamService;
+    
+    @Autowired
+    private PricingEngine pricingEngine;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private InventoryService inventoryService;
+    
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+    
+    @Autowired
+    private CartCache cartCache;
+    
+    // Get order summaries (keyset paginated, newest first)
     @GetMapping("/orders")
-    public List<Orders> getAllOrders() {
-        return ordersRepository.findAll();
+    public KeysetPage<OrderSummaryDto> getAllOrders(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ordersService.getOrderSummaries(null, status, from, to, cursor, size);
     }
     
-    // Get order by ID
+    // Get order by ID (with line items)
     @GetMapping("/orders/{id}")
     public ResponseEntity<Orders> getOrderById(@PathVariable Integer id) {
-        Optional<Orders> order = ordersRepository.findById(id);
+        Optional<Orders> order = ordersService.getFullOrder(id);
         if (order.isPresent()) {
             return ResponseEntity.ok(order.get());
         }
         return ResponseEntity.notFound().build();
     }
     
-    // Get orders by customer ID
+    // Get order summaries for a customer (keyset paginated, newest first)
     @GetMapping("/orders/customer/{customerId}")
-    public ResponseEntity<List<Orders>> getOrdersByCustomer(@PathVariable Integer customerId) {
-        Optional<Customer> customer = customerRepository.findById(customerId);
-        if (customer.isPresent()) {
-            List<Orders> orders = ordersRepository.findByCustomerId(customer.get());
-            return ResponseEntity.ok(orders);
-        }
-        return ResponseEntity.ok(new ArrayList<>());
+    public KeysetPage<OrderSummaryDto> getOrdersByCustomer(
+            @PathVariable Integer customerId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ordersService.getOrderSummaries(customerId, status, from, to, cursor, size);
     }
     
     // Create a new order
     @PostMapping("/orders")
-    public ResponseEntity<?> createOrder(@RequestBody Map<String, Object> orderData) {
+    public ResponseEntity<?> createOrder(
+            @RequestBody Map<String, Object> orderData,
+            @RequestHeader(value = WaitingRoomService.TOKEN_HEADER, required = false) String admissionTokens) {
+        WaitingRoomService.Claim admissions = null;
+        boolean placed = false;
         try {
             // Get customer
             Integer customerId = (Integer) orderData.get("customerId");
@@ -75,98 +121,123 @@ public class OrdersController {
                 return ResponseEntity.badRequest().body(Map.of("error", "Customer not found"));
             }
             
-            // Generate new order ID
-            Integer maxOrderId = ordersRepository.findMaxOrderId();
-            Integer newOrderId = maxOrderId + 1;
+            // Parse line items; only product IDs and quantities are taken from the client
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> orderItems = (List<Map<String, Object>>) orderData.get("orderItems");
+            if (orderItems == null || orderItems.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Order must contain at least one item"));
+            }
+            List<QuoteRequest.Line> lines = new ArrayList<>(orderItems.size());
+            List<Integer> productIds = new ArrayList<>(orderItems.size());
+            for (Map<String, Object> itemData : orderItems) {
+                Object productIdObj = itemData.get("productId");
+                Object qtyObj = itemData.get("quantity");
+                Integer productId = productIdObj == null ? null : productIdObj instanceof Integer ?
+                    (Integer) productIdObj : Integer.valueOf(productIdObj.toString());
+                Integer quantity = qtyObj == null ? 1 : qtyObj instanceof Integer ?
+                    (Integer) qtyObj : Integer.valueOf(qtyObj.toString());
+                lines.add(new QuoteRequest.Line(productId, quantity));
+                productIds.add(productId);
+            }
+            // Flash-sale products are only sold to buyers the waiting room has let in; their admissions are taken now
+            admissions = waitingRoomService.claimAdmissions(productIds, admissionTokens);
             
-            // Create new order
-            Orders order = new Orders();
-            order.setOrderId(newOrderId);
-            order.setCustomerId(customer.get());
-            order.setOrderDate(new Date());
-            order.setOrderStatus((String) orderData.getOrDefault("status", "Pending"));
-            order.setPaymentMethod((String) orderData.getOrDefault("paymentPreference", "card"));
-            order.setShippingMethod((String) orderData.getOrDefault("shippingMethod", "Standard"));
+            String shippingMethod = (String) orderData.getOrDefault("shippingMethod", "Standard");
             
-            // Set total amount
-            Object totalObj = orderData.get("totalAmount");
-            if (totalObj != null) {
-                if (totalObj instanceof Number) {
-                    order.setTotalAmount(BigDecimal.valueOf(((Number) totalObj).doubleValue()));
-                }
-            }
+            // Price everything server-side from the catalog
+            PricingEngine.Quote quote = pricingEngine.quote(lines, shippingMethod);
             
-            // Save the order
-            Orders savedOrder = ordersRepository.save(order);
+            // Cart changes still waiting for write-back go to the database before checkout
+            cartCache.flush(customerId);
             
-            // Create order items
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> orderItems = (List<Map<String, Object>>) orderData.get("orderItems");
-            if (orderItems != null && !orderItems.isEmpty()) {
+            // Hold the stock before anything is written; all lines or none, taking over cart holds
+            inventoryService.reserveAll(customerId, quote.productIds, quote.quantities);
+            
+            Orders savedOrder;
+            try {
+                // Generate new order ID
+                Integer maxOrderId = ordersRepository.findMaxOrderId();
+                Integer newOrderId = maxOrderId + 1;
+            
+                // Create new order
+                Orders order = new Orders();
+                order.setOrderId(newOrderId);
+                order.setCustomerId(customer.get());
+                Date now = new Date();
+                order.setOrderDate(now);
+                order.setPlacedAt(now);
+                order.setOrderStatus((String) orderData.getOrDefault("status", "Pending"));
+                order.setPaymentMethod((String) orderData.getOrDefault("paymentPreference", "card"));
+                order.setShippingMethod(shippingMethod);
+                order.setTotalAmount(ProductPriceCache.fromMinor(quote.totalMinor));
+            
+                // Save the order
+                savedOrder = ordersRepository.save(order);
+            
+                // Create order items
                 Integer maxItemId = orderItemRepository.findMaxOrderItemId();
                 int itemIdCounter = maxItemId + 1;
-                
-                for (Map<String, Object> itemData : orderItems) {
+                List<Orderitem> itemsToSave = new ArrayList<>(quote.size());
+                for (int i = 0; i < quote.size(); i++) {
                     Orderitem orderItem = new Orderitem();
                     orderItem.setOrderItemId(itemIdCounter++);
                     orderItem.setOrderId(savedOrder);
-                    
-                    // Get product
-                    Object productIdObj = itemData.get("productId");
-                    if (productIdObj != null) {
-                        Integer productId = productIdObj instanceof Integer ? 
-                            (Integer) productIdObj : Integer.valueOf(productIdObj.toString());
-                        Optional<Product> product = productRepository.findById(productId);
-                        if (product.isPresent()) {
-                            orderItem.setProductId(product.get());
-                        }
-                    }
-                    
-                    // Set quantity
-                    Object qtyObj = itemData.get("quantity");
-                    if (qtyObj != null) {
-                        orderItem.setQuantity(qtyObj instanceof Integer ? 
-                            (Integer) qtyObj : Integer.valueOf(qtyObj.toString()));
-                    } else {
-                        orderItem.setQuantity(1);
+                    // The price lookup already proved the product exists, so a reference is enough
+                    orderItem.setProductId(productRepository.getReferenceById(quote.productIds[i]));
+                    orderItem.setQuantity(quote.quantities[i]);
+                    orderItem.setItemPrice(ProductPriceCache.fromMinor(quote.unitMinor[i]));
+                    orderItem.setSubtotal(ProductPriceCache.fromMinor(quote.lineMinor[i]));
+                    // Only a measured weight is recorded; the shipping default is not a measurement
+                    if (quote.measuredGrams[i] >= 0) {
+                        orderItem.setItemWeight(BigDecimal.valueOf(quote.measuredGrams[i], 3).setScale(2, java.math.RoundingMode.HALF_UP));
                     }
-                    
-                    // Set price
-                    Object priceObj = itemData.get("price");
-                    if (priceObj != null) {
-                        if (priceObj instanceof Number) {
-                            BigDecimal price = BigDecimal.valueOf(((Number) priceObj).doubleValue());
-                            orderItem.setItemPrice(price);
-                            orderItem.setSubtotal(price.multiply(BigDecimal.valueOf(orderItem.getQuantity())));
-                        }
-                    }
-                    
-                    orderItemRepository.save(orderItem);
+                    itemsToSave.add(orderItem);
                 }
+                orderItemRepository.saveAll(itemsToSave);
+            } catch (RuntimeException e) {
+                inventoryService.releaseAll(customerId, quote.productIds, quote.quantities);
+                throw e;
             }
             
+            // The order now owns the reserved rows, so shipping or cancelling it touches the same ones
+            inventoryService.assignToOrder(customerId, savedOrder.getOrderId(), quote.productIds, quote.quantities);
+            
+            eventPublisher.publishEvent(new OrderCreatedEvent(savedOrder.getOrderId(), customerId));
+            waitingRoomService.recordCheckout(admissions);
+            placed = true;
+            
             // Return success response with order ID
             Map<String, Object> response = new HashMap<>();
             response.put("orderId", savedOrder.getOrderId());
             response.put("message", "Order created successfully");
             response.put("status", savedOrder.getOrderStatus());
+            response.put("totalAmount", savedOrder.getTotalAmount());
             
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
             
+        } catch (WaitingRoomService.AdmissionDeniedException e) {
+            throw e;
+        } catch (InventoryService.InsufficientStockException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", e.getMessage(), "productId", e.getProductId()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("error", "Failed to create order: " + e.getMessage()));
+        } finally {
+            // No order was placed, so the buyer can still use the admissions to try again
+            if (!placed) {
+                waitingRoomService.release(admissions);
+            }
         }
     }
     
-    // Update order status
+    // Update order status (re-read and re-applied if another writer got there first)
     @PutMapping("/orders/{id}")
     public ResponseEntity<Orders> updateOrder(@PathVariable Integer id, @RequestBody Map<String, Object> updates) {
-        Optional<Orders> orderOpt = ordersRepository.findById(id);
-        if (orderOpt.isPresent()) {
-            Orders order = orderOpt.get();
-            
+        Optional<Orders> savedOrder = ordersService.updateOrder(id, order -> {
             if (updates.containsKey("orderStatus")) {
                 order.setOrderStatus((String) updates.get("orderStatus"));
             }
@@ -182,32 +253,46 @@ public class OrdersController {
             if (updates.containsKey("deliveryDate")) {
                 // Handle date parsing if needed
             }
-            
-            Orders savedOrder = ordersRepository.save(order);
-            return ResponseEntity.ok(savedOrder);
-        }
-        return ResponseEntity.notFound().build();
+        });
+        return savedOrder.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
     }
     
     // Update order status (PATCH)
     @PatchMapping("/orders/{id}/status")
     public ResponseEntity<?> updateOrderStatus(@PathVariable Integer id, @RequestBody Map<String, Object> updates) {
-        Optional<Orders> orderOpt = ordersRepository.findById(id);
-        if (orderOpt.isPresent()) {
-            Orders order = orderOpt.get();
-            String newStatus = (String) updates.get("status");
-            if (newStatus != null) {
-                order.setOrderStatus(newStatus);
-                Orders savedOrder = ordersRepository.save(order);
-                return ResponseEntity.ok(Map.of(
-                    "orderId", savedOrder.getOrderId(),
-                    "status", savedOrder.getOrderStatus(),
-                    "message", "Status updated successfully"
-                ));
-            }
+        String newStatus = (String) updates.get("status");
+        if (newStatus == null) {
             return ResponseEntity.badRequest().body(Map.of("error", "Status is required"));
         }
-        return ResponseEntity.notFound().build();
+        Optional<Orders> savedOrder = ordersService.updateOrder(id, order -> order.setOrderStatus(newStatus));
+        if (savedOrder.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of(
+            "orderId", savedOrder.get().getOrderId(),
+            "status", savedOrder.get().getOrderStatus(),
+            "message", "Status updated successfully"
+        ));
+    }
+    
+    // Update the status of many orders at once
+    @PatchMapping("/orders/status/bulk")
+    public ResponseEntity<?> bulkUpdateOrderStatus(@RequestBody Map<String, Object> request) {
+        Object idsObj = request.get("orderIds");
+        if (!(idsObj instanceof List<?> rawIds)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "orderIds must be a list"));
+        }
+        List<Integer> orderIds = new ArrayList<>(rawIds.size());
+        for (Object id : rawIds) {
+            orderIds.add(id instanceof Number ? ((Number) id).intValue() : Integer.valueOf(id.toString()));
+        }
+        return ResponseEntity.ok(ordersService.bulkUpdateStatus(orderIds, (String) request.get("status")));
+    }
+    
+    // Live order status updates for a customer (Server-Sent Events)
+    @GetMapping(value = "/orders/customer/{customerId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamOrderStatus(@PathVariable Integer customerId) {
+        return orderStatusStreamService.subscribe(customerId);
     }
     
     // Delete order
@@ -230,4 +315,4 @@ public class OrdersController {
         }
         return ResponseEntity.ok(new ArrayList<>());
     }
-}
+}
\ No newline at end of file
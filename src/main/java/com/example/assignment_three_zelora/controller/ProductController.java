@@ -4,13 +4,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import com.example.assignment_three_zelora.model.entitys.Product;
-import com.example.assignment_three_zelora.model.entitys.Inventory;
-import com.example.assignment_three_zelora.model.entitys.Review;
 import com.example.assignment_three_zelora.model.repos.ProductRepository;
-import com.example.assignment_three_zelora.model.repos.InventoryRepository;
-import com.example.assignment_three_zelora.model.repos.ReviewRepository;
+import com.example.assignment_three_zelora.model.service.CartCache;
+import com.example.assignment_three_zelora.model.service.ProductPriceCache;
+import com.example.assignment_three_zelora.model.service.ReviewRatingCache;
+import com.example.assignment_three_zelora.model.service.ReviewService;
+import com.example.assignment_three_zelora.model.service.StockAvailabilityIndex;
+import com.example.assignment_three_zelora.model.service.StockLedger;
+import com.example.assignment_three_zelora.dto.KeysetPage;
 import com.example.assignment_three_zelora.dto.ProductDetailDto;
-import com.example.assignment_three_zelora.service.DtoMapperService;
+import com.example.assignment_three_zelora.dto.ReviewDto;
+import com.example.assignment_three_zelora.service.WaitingRoomService;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -24,24 +28,36 @@ public class ProductController {
     private ProductRepository productRepository;
     
     @Autowired
-    private InventoryRepository inventoryRepository;
+    private ProductPriceCache productPriceCache;
     
     @Autowired
-    private ReviewRepository reviewRepository;
+    private StockLedger stockLedger;
     
     @Autowired
-    private DtoMapperService dtoMapperService;
+    private WaitingRoomService waitingRoomService;
     
-    // Get all products
+    @Autowired
+    private StockAvailabilityIndex stockAvailabilityIndex;
+    
+    @Autowired
+    private CartCache cartCache;
+    
+    @Autowired
+    private ReviewService reviewService;
+    
+    @Autowired
+    private ReviewRatingCache reviewRatingCache;
+    
+    // Get all products (inStock=true keeps only products with stock available)
     @GetMapping("/products")
-    public List<Product> getAllProducts() {
-        return productRepository.findAll();
+    public List<Product> getAllProducts(@RequestParam(defaultValue = "false") boolean inStock) {
+        return filterInStock(productRepository.findAll(), inStock);
     }
     
     // Get all products with review counts and ratings (for product cards)
     @GetMapping("/products/with-reviews")
-    public List<java.util.Map<String, Object>> getAllProductsWithReviews() {
-        return productRepository.findAll().stream()
+    public List<java.util.Map<String, Object>> getAllProductsWithReviews(@RequestParam(defaultValue = "false") boolean inStock) {
+        return filterInStock(productRepository.findAll(), inStock).stream()
                 .map(this::enrichProductWithReviews)
                 .collect(Collectors.toList());
     }
@@ -55,7 +71,9 @@ public class ProductController {
     // Create new product
     @PostMapping("/products")
     public Product createProduct(@RequestBody Product product) {
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        productPriceCache.evict(saved.getProductId());
+        return saved;
     }
     
     // Update product
@@ -68,8 +86,13 @@ public class ProductController {
             if (productDetails.getDescription() != null) p.setDescription(productDetails.getDescription());
             if (productDetails.getPrice() != null) p.setPrice(productDetails.getPrice());
             if (productDetails.getFeatureImage() != null) p.setFeatureImage(productDetails.getFeatureImage());
+            if (productDetails.getWeight() != null) p.setWeight(productDetails.getWeight());
             if (productDetails.getCategoryId() != null) p.setCategoryId(productDetails.getCategoryId());
-            return productRepository.save(p);
+            Product saved = productRepository.save(p);
+            productPriceCache.evict(id);
+            stockLedger.updateProductName(id, saved.getProductName());
+            cartCache.evictProduct(id);
+            return saved;
         }
         return null;
     }
@@ -78,6 +101,17 @@ public class ProductController {
     @DeleteMapping("/products/{id}")
     public void deleteProduct(@PathVariable Integer id) {
         productRepository.deleteById(id);
+        productPriceCache.evict(id);
+    }
+    
+    // Drop products the availability bitmap says are out of stock; runs before any per-product enrichment
+    private List<Product> filterInStock(List<Product> products, boolean inStock) {
+        if (!inStock) {
+            return products;
+        }
+        return products.stream()
+                .filter(p -> stockAvailabilityIndex.isInStock(p.getProductId()))
+                .collect(Collectors.toList());
     }
     
     // Helper method to enrich product with review data (simplified for performance)
@@ -102,32 +136,22 @@ public class ProductController {
             productData.put("categoryName", product.getCategoryId().getCategoryName());
         }
         
-        // Get inventory
-        List<Inventory> inventories = inventoryRepository.findByProductId(product);
-        if (!inventories.isEmpty()) {
-            Inventory inv = inventories.get(0); // Take first if duplicates exist
-            int quantityInStock = inv.getQuantityInStock() != null ? inv.getQuantityInStock() : 0;
-            int quantityReserved = inv.getQuantityReserved() != null ? inv.getQuantityReserved() : 0;
-            int available = quantityInStock - quantityReserved;
-            productData.put("stockQuantity", available);
-        } else {
-            productData.put("stockQuantity", 0);
-        }
-        
-        // Get review statistics using single queries
-        Double avgRating = reviewRepository.getAverageRatingByProductId(product.getProductId());
-        productData.put("averageRating", avgRating != null ? Math.round(avgRating * 10.0) / 10.0 : 0.0);
+        // Available stock across all suppliers
+        productData.put("stockQuantity", stockLedger.getAvailable(product.getProductId()));
         
-        // Get total review count using optimized query
-        Long reviewCount = reviewRepository.getReviewCountByProductId(product.getProductId());
-        productData.put("totalReviews", reviewCount != null ? reviewCount.intValue() : 0);
+        // Review statistics, cached per product and refreshed by moderation
+        ReviewRatingCache.Aggregate rating = reviewRatingCache.get(product.getProductId());
+        productData.put("averageRating", Math.round(rating.getAverageRating() * 10.0) / 10.0);
+        productData.put("totalReviews", (int) rating.getReviewCount());
         
         return productData;
     }
 
     // Search products by query with fuzzy matching
     @GetMapping("/products/search")
-    public List<java.util.Map<String, Object>> searchProducts(@RequestParam String query) {
+    public List<java.util.Map<String, Object>> searchProducts(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "false") boolean inStock) {
         // Direct search first
         List<Product> results = productRepository.searchByNameOrDescription(query);
         
@@ -144,28 +168,37 @@ public class ProductController {
             results = results.stream().distinct().collect(Collectors.toList());
         }
         
-        return results.stream()
+        return filterInStock(results, inStock).stream()
                 .map(this::enrichProductWithReviews)
                 .collect(Collectors.toList());
     }
 
     // Get products by category
     @GetMapping("/products/category/{categoryId}")
-    public List<java.util.Map<String, Object>> getProductsByCategory(@PathVariable Integer categoryId) {
-        return productRepository.findByCategory(categoryId).stream()
+    public List<java.util.Map<String, Object>> getProductsByCategory(
+            @PathVariable Integer categoryId,
+            @RequestParam(defaultValue = "false") boolean inStock) {
+        return filterInStock(productRepository.findByCategory(categoryId), inStock).stream()
                 .map(this::enrichProductWithReviews)
                 .collect(Collectors.toList());
     }
     
     // Get random product suggestions
     @GetMapping("/products/suggestions")
-    public List<java.util.Map<String, Object>> getProductSuggestions(@RequestParam(defaultValue = "8") int limit) {
+    public List<java.util.Map<String, Object>> getProductSuggestions(
+            @RequestParam(defaultValue = "8") int limit,
+            @RequestParam(defaultValue = "false") boolean inStock) {
         List<Product> products;
-        try {
-            products = productRepository.findRandomProducts(limit);
-        } catch (Exception e) {
-            // Fallback if RAND() not supported - get first N products
-            products = productRepository.findAll().stream().limit(limit).collect(Collectors.toList());
+        if (inStock) {
+            // Sample straight from the availability bitmap so every suggestion is buyable
+            products = productRepository.findAllById(stockAvailabilityIndex.sample(limit));
+        } else {
+            try {
+                products = productRepository.findRandomProducts(limit);
+            } catch (Exception e) {
+                // Fallback if RAND() not supported - get first N products
+                products = productRepository.findAll().stream().limit(limit).collect(Collectors.toList());
+            }
         }
         return products.stream()
                 .map(this::enrichProductWithReviews)
@@ -174,26 +207,31 @@ public class ProductController {
     
     // Search products by description keyword
     @GetMapping("/products/search/description")
-    public List<java.util.Map<String, Object>> searchByDescription(@RequestParam String keyword) {
-        return productRepository.findByDescriptionContainingIgnoreCase(keyword).stream()
+    public List<java.util.Map<String, Object>> searchByDescription(
+            @RequestParam String keyword,
+            @RequestParam(defaultValue = "false") boolean inStock) {
+        return filterInStock(productRepository.findByDescriptionContainingIgnoreCase(keyword), inStock).stream()
                 .map(this::enrichProductWithReviews)
                 .collect(Collectors.toList());
     }
     
     // Get recently added products (within last 7 days)
     @GetMapping("/products/recent")
-    public List<java.util.Map<String, Object>> getRecentProducts() {
+    public List<java.util.Map<String, Object>> getRecentProducts(@RequestParam(defaultValue = "false") boolean inStock) {
         java.util.Calendar cal = java.util.Calendar.getInstance();
         cal.add(java.util.Calendar.DAY_OF_MONTH, -7);
         java.util.Date sevenDaysAgo = cal.getTime();
-        return productRepository.findRecentProducts(sevenDaysAgo).stream()
+        return filterInStock(productRepository.findRecentProducts(sevenDaysAgo), inStock).stream()
                 .map(this::enrichProductWithReviews)
                 .collect(Collectors.toList());
     }
     
-    // Get detailed product information with inventory and reviews
+    // Get detailed product information with inventory and reviews (flash-sale products need an admission)
     @GetMapping("/products/{id}/details")
-    public ResponseEntity<ProductDetailDto> getProductDetails(@PathVariable Integer id) {
+    public ResponseEntity<ProductDetailDto> getProductDetails(
+            @PathVariable Integer id,
+            @RequestHeader(value = WaitingRoomService.TOKEN_HEADER, required = false) String admissionToken) {
+        waitingRoomService.checkAdmission(id, admissionToken);
         Optional<Product> productOpt = productRepository.findById(id);
         
         if (!productOpt.isPresent()) {
@@ -202,18 +240,14 @@ public class ProductController {
         
         Product product = productOpt.get();
         
-        // Get inventory information
-        List<Inventory> inventories = inventoryRepository.findByProductId(product);
-        Inventory inventory = !inventories.isEmpty() ? inventories.get(0) : null;
+        // Get inventory information, summed across suppliers
+        StockLedger.ProductStock inventory = stockLedger.getProduct(id);
         
-        // Get reviews with rating >= 3 (as per assignment requirement)
-        List<Review> reviews = reviewRepository.findByProductIdAndRatingGreaterThanEqual(product, 3)
-                .stream()
-                .filter(r -> !Boolean.TRUE.equals(r.getFlaggedAsSpam()))
-                .collect(Collectors.toList());
+        // First page of reviews with rating >= 3, newest first; the rest via /reviews/product/{id}
+        KeysetPage<ReviewDto> reviews = reviewService.getProductReviews(id, null, null, null);
         
-        // Get average rating from repository
-        Double avgRating = reviewRepository.getAverageRatingByProductId(id);
+        // Get average rating, cached per product
+        double avgRating = reviewRatingCache.get(id).getAverageRating();
         
         // Build ProductDetailDto
         ProductDetailDto dto = new ProductDetailDto();
@@ -238,8 +272,8 @@ public class ProductController {
         
         // Inventory logic: available = quantity_in_stock - quantity_reserved
         if (inventory != null) {
-            int quantityInStock = inventory.getQuantityInStock() != null ? inventory.getQuantityInStock() : 0;
-            int quantityReserved = inventory.getQuantityReserved() != null ? inventory.getQuantityReserved() : 0;
+            int quantityInStock = inventory.getQuantityInStock();
+            int quantityReserved = inventory.getQuantityReserved();
             int reorderPoint = inventory.getReorderPoint() != null ? inventory.getReorderPoint() : 0;
             int available = quantityInStock - quantityReserved;
             
@@ -271,14 +305,14 @@ public class ProductController {
         }
         
         // Reviews with customer first name and city
-        List<com.example.assignment_three_zelora.dto.ReviewDto> reviewDtos = reviews.stream()
-                .map(dtoMapperService::toReviewDto)
-                .collect(Collectors.toList());
-        dto.setReviews(reviewDtos);
-        dto.setTotalReviews(reviews.size());
+        dto.setReviews(reviews.getItems());
+        dto.setReviewsNextCursor(reviews.getNextCursor());
+        dto.setTotalReviews(reviews.isHasMore()
+                ? (int) reviewService.countProductReviews(id)
+                : reviews.getItems().size());
         
         // Average rating
-        dto.setAverageRating(avgRating != null ? Math.round(avgRating * 10.0) / 10.0 : 0.0);
+        dto.setAverageRating(Math.round(avgRating * 10.0) / 10.0);
         
         return ResponseEntity.ok(dto);
     }
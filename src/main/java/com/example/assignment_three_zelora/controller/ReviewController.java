@@ -1,6 +1,7 @@
 package com.example.assignment_three_zelora.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
@@ -10,10 +11,18 @@ import com.example.assignment_three_zelora.model.entitys.Product;
 import com.example.assignment_three_zelora.model.repos.ReviewRepository;
 import com.example.assignment_three_zelora.model.repos.CustomerRepository;
 import com.example.assignment_three_zelora.model.repos.ProductRepository;
+import com.example.assignment_three_zelora.dto.KeysetPage;
 import com.example.assignment_three_zelora.dto.ReviewDto;
+import com.example.assignment_three_zelora.model.service.ReviewModerationService;
+import com.example.assignment_three_zelora.model.service.ReviewRatingCache;
+import com.example.assignment_three_zelora.model.service.ReviewSearchIndex;
+import com.example.assignment_three_zelora.model.service.ReviewService;
 import com.example.assignment_three_zelora.service.DtoMapperService;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @RestController
@@ -21,6 +30,14 @@ import java.util.stream.Collectors;
 @CrossOrigin(origins = "http://localhost:3000")
 public class ReviewController {
     
+    private static final String ALREADY_REVIEWED = "You have already reviewed this product";
+    
+    // Times to take the next review id before giving up when concurrent reviews keep claiming it
+    private static final int MAX_ID_ATTEMPTS = 5;
+    
+    // Highest review id this instance has handed out
+    private final AtomicInteger lastReviewId = new AtomicInteger();
+    
     @Autowired
     private ReviewRepository reviewRepository;
     
@@ -33,6 +50,18 @@ public class ReviewController {
     @Autowired
     private DtoMapperService dtoMapperService;
     
+    @Autowired
+    private ReviewService reviewService;
+    
+    @Autowired
+    private ReviewModerationService reviewModerationService;
+    
+    @Autowired
+    private ReviewRatingCache reviewRatingCache;
+    
+    @Autowired
+    private ReviewSearchIndex reviewSearchIndex;
+    
     // Get all reviews
     @GetMapping("/reviews")
     public List<ReviewDto> getAllReviews() {
@@ -41,6 +70,16 @@ public class ReviewController {
                 .collect(Collectors.toList());
     }
     
+    // Search review text: every word must appear, "quoted phrases" must appear as written
+    @GetMapping("/reviews/search")
+    public Map<String, Object> searchReviews(
+            @RequestParam String q,
+            @RequestParam(required = false) Integer productId,
+            @RequestParam(defaultValue = "false") boolean includeSpam,
+            @RequestParam(required = false) Integer limit) {
+        return reviewSearchIndex.search(q, productId, includeSpam, limit);
+    }
+    
     // Get review by ID
     @GetMapping("/reviews/{id}")
     public ResponseEntity<ReviewDto> getReviewById(@PathVariable Integer id) {
@@ -49,20 +88,14 @@ public class ReviewController {
                 .orElse(ResponseEntity.notFound().build());
     }
     
-    // Get reviews for a product (filtered by rating >= 3 and not spam)
+    // Get reviews for a product (rating >= 3, not spam; keyset paginated, sort by date, rating or helpful)
     @GetMapping("/reviews/product/{productId}")
-    public ResponseEntity<List<ReviewDto>> getReviewsByProduct(@PathVariable Integer productId) {
-        Optional<Product> product = productRepository.findById(productId);
-        if (product.isPresent()) {
-            // Filter reviews with rating >= 3 (as per assignment requirement)
-            List<Review> reviews = reviewRepository.findByProductIdAndRatingGreaterThanEqual(product.get(), 3);
-            List<ReviewDto> dtos = reviews.stream()
-                    .filter(r -> !Boolean.TRUE.equals(r.getFlaggedAsSpam()))
-                    .map(dtoMapperService::toReviewDto)
-                    .collect(Collectors.toList());
-            return ResponseEntity.ok(dtos);
-        }
-        return ResponseEntity.ok(new ArrayList<>());
+    public KeysetPage<ReviewDto> getReviewsByProduct(
+            @PathVariable Integer productId,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return reviewService.getProductReviews(productId, sort, cursor, size);
     }
     
     // Get reviews by customer
@@ -82,22 +115,12 @@ public class ReviewController {
     // Get average rating for a product
     @GetMapping("/reviews/product/{productId}/rating")
     public ResponseEntity<?> getProductAverageRating(@PathVariable Integer productId) {
-        Optional<Product> product = productRepository.findById(productId);
-        if (product.isPresent()) {
-            List<Review> reviews = reviewRepository.findByProductId(product.get());
-            List<Review> validReviews = reviews.stream()
-                    .filter(r -> !Boolean.TRUE.equals(r.getFlaggedAsSpam()) && r.getRating() != null)
-                    .collect(Collectors.toList());
-            
-            double avgRating = validReviews.stream()
-                    .mapToInt(Review::getRating)
-                    .average()
-                    .orElse(0.0);
-            
+        if (productRepository.existsById(productId)) {
+            ReviewRatingCache.Aggregate rating = reviewRatingCache.get(productId);
             return ResponseEntity.ok(Map.of(
                 "productId", productId,
-                "averageRating", Math.round(avgRating * 10.0) / 10.0,
-                "totalReviews", validReviews.size()
+                "averageRating", Math.round(rating.getAverageRating() * 10.0) / 10.0,
+                "totalReviews", rating.getReviewCount()
             ));
         }
         return ResponseEntity.notFound().build();
@@ -122,28 +145,40 @@ public class ReviewController {
                 return ResponseEntity.badRequest().body(Map.of("error", "Customer not found"));
             }
             
-            // Check if customer already reviewed this product
-            boolean alreadyReviewed = reviewRepository.findByProductId(product.get()).stream()
-                    .anyMatch(r -> r.getCustomerId() != null && 
-                             r.getCustomerId().getCustomerId().equals(customer.get().getCustomerId()));
-            
-            if (alreadyReviewed) {
-                return ResponseEntity.badRequest().body(Map.of("error", "You have already reviewed this product"));
+            // Check if customer already reviewed this product (indexed probe; the unique key catches races)
+            if (reviewRepository.existsByProductAndCustomer(productId, customerId)) {
+                return ResponseEntity.badRequest().body(Map.of("error", ALREADY_REVIEWED));
             }
             
-            // Get next ID
-            Integer maxId = reviewRepository.findMaxReviewId();
-            
-            Review review = new Review();
-            review.setReviewId(maxId + 1);
-            review.setProductId(product.get());
-            review.setCustomerId(customer.get());
-            review.setRating(rating);
-            review.setReviewText(reviewText);
-            review.setReviewDate(new Date());
-            review.setFlaggedAsSpam(false);
+            Review saved = null;
+            for (int attempt = 1; saved == null; attempt++) {
+                Review review = new Review();
+                review.setReviewId(nextReviewId());
+                review.setProductId(product.get());
+                review.setCustomerId(customer.get());
+                review.setRating(rating);
+                review.setReviewText(reviewText);
+                review.setReviewDate(new Date());
+                review.setFlaggedAsSpam(false);
+                
+                try {
+                    saved = reviewRepository.save(review);
+                } catch (DataIntegrityViolationException e) {
+                    // A concurrent request won the race on uk_reviews_product_customer
+                    if (reviewRepository.existsByProductAndCustomer(productId, customerId)) {
+                        return ResponseEntity.badRequest().body(Map.of("error", ALREADY_REVIEWED));
+                    }
+                    // Otherwise another instance took the same id first, so read the new maximum and try again
+                    if (attempt >= MAX_ID_ATTEMPTS) {
+                        throw e;
+                    }
+                }
+            }
+            reviewRatingCache.invalidate(productId);
+            reviewSearchIndex.add(saved);
             
-            Review saved = reviewRepository.save(review);
+            // Spam checks run in the background so they never slow down submitting
+            reviewModerationService.submit(saved);
             
             return ResponseEntity.status(HttpStatus.CREATED).body(dtoMapperService.toReviewDto(saved));
             
@@ -154,16 +189,37 @@ public class ReviewController {
         }
     }
     
+    // Next review id: past both the stored maximum and every id already handed out here,
+    // so concurrent requests on this instance never pick the same one
+    private int nextReviewId() {
+        int storedMax = reviewRepository.findMaxReviewId();
+        return lastReviewId.accumulateAndGet(storedMax, (last, max) -> Math.max(last, max) + 1);
+    }
+    
     // Delete review
     @DeleteMapping("/reviews/{id}")
     public ResponseEntity<Void> deleteReview(@PathVariable Integer id) {
-        if (reviewRepository.existsById(id)) {
+        Optional<Review> review = reviewRepository.findById(id);
+        if (review.isPresent()) {
             reviewRepository.deleteById(id);
+            reviewSearchIndex.remove(id);
+            if (review.get().getProductId() != null) {
+                reviewRatingCache.invalidate(review.get().getProductId().getProductId());
+            }
             return ResponseEntity.ok().build();
         }
         return ResponseEntity.notFound().build();
     }
     
+    // Vote a review as helpful
+    @PutMapping("/reviews/{id}/helpful")
+    public ResponseEntity<?> markReviewHelpful(@PathVariable Integer id) {
+        if (reviewService.markHelpful(id)) {
+            return ResponseEntity.ok(Map.of("success", true, "message", "Review marked as helpful"));
+        }
+        return ResponseEntity.notFound().build();
+    }
+    
     // Flag review as spam (admin)
     @PutMapping("/reviews/{id}/flag")
     public ResponseEntity<?> flagReview(@PathVariable Integer id) {
@@ -172,8 +228,44 @@ public class ReviewController {
             Review r = review.get();
             r.setFlaggedAsSpam(true);
             reviewRepository.save(r);
+            reviewSearchIndex.markFlagged(List.of(id));
+            if (r.getProductId() != null) {
+                reviewRatingCache.invalidate(r.getProductId().getProductId());
+            }
             return ResponseEntity.ok(Map.of("success", true, "message", "Review flagged as spam"));
         }
         return ResponseEntity.notFound().build();
     }
+    
+    // Flag or delete many reviews at once (admin): {"action", "reviewIds"} or {"action", "customerId", "from", "to", "textPattern"}
+    @PostMapping("/reviews/moderation/bulk")
+    public ResponseEntity<?> bulkModerateReviews(@RequestBody Map<String, Object> request) {
+        List<Integer> reviewIds = null;
+        Object idsObj = request.get("reviewIds");
+        if (idsObj != null) {
+            if (!(idsObj instanceof List<?> rawIds)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "reviewIds must be a list"));
+            }
+            reviewIds = new ArrayList<>(rawIds.size());
+            for (Object id : rawIds) {
+                reviewIds.add(id instanceof Number ? ((Number) id).intValue() : Integer.valueOf(id.toString()));
+            }
+        }
+        Object customerObj = request.get("customerId");
+        Integer customerId = null;
+        if (customerObj != null) {
+            customerId = customerObj instanceof Number ? ((Number) customerObj).intValue() : Integer.valueOf(customerObj.toString());
+        }
+        LocalDate from;
+        LocalDate to;
+        try {
+            from = request.get("from") != null ? LocalDate.parse(request.get("from").toString()) : null;
+            to = request.get("to") != null ? LocalDate.parse(request.get("to").toString()) : null;
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "from and to must be dates (yyyy-MM-dd)"));
+        }
+        Object pattern = request.get("textPattern");
+        return ResponseEntity.ok(reviewService.bulkModerate((String) request.get("action"), reviewIds, customerId,
+                from, to, pattern != null ? pattern.toString() : null));
+    }
 }
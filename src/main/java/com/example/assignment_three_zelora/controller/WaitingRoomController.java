@@ -0,0 +1,72 @@
+package com.example.assignment_three_zelora.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import com.example.assignment_three_zelora.dto.WaitingRoomStatusDto;
+import com.example.assignment_three_zelora.service.WaitingRoomService;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("")
+@CrossOrigin(origins = "http://localhost:3000")
+public class WaitingRoomController {
+    
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+    
+    // All open waiting rooms with queue and admission stats
+    @GetMapping("/waiting-room")
+    public List<Map<String, Object>> getRooms() {
+        return waitingRoomService.getRooms();
+    }
+    
+    // Put a product behind a waiting room (optional minRatePerSecond and maxActive)
+    @PutMapping("/waiting-room/{productId}")
+    public ResponseEntity<Map<String, Object>> openRoom(
+            @PathVariable Integer productId,
+            @RequestBody(required = false) Map<String, Object> settings) {
+        Double minRate = null;
+        Integer maxActive = null;
+        if (settings != null) {
+            if (settings.get("minRatePerSecond") != null) {
+                minRate = Double.valueOf(settings.get("minRatePerSecond").toString());
+            }
+            if (settings.get("maxActive") != null) {
+                maxActive = Integer.valueOf(settings.get("maxActive").toString());
+            }
+        }
+        return ResponseEntity.ok(waitingRoomService.open(productId, minRate, maxActive));
+    }
+    
+    // Take a product out of the waiting room; everyone is let straight through again
+    @DeleteMapping("/waiting-room/{productId}")
+    public ResponseEntity<Void> closeRoom(@PathVariable Integer productId) {
+        if (waitingRoomService.close(productId)) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.notFound().build();
+    }
+    
+    // Join the queue; the returned token goes in the X-Waiting-Room-Token header
+    @PostMapping("/waiting-room/{productId}/join")
+    public ResponseEntity<WaitingRoomStatusDto> join(@PathVariable Integer productId) {
+        WaitingRoomStatusDto status = waitingRoomService.join(productId);
+        if (WaitingRoomStatusDto.SOLD_OUT.equals(status.getStatus())) {
+            return ResponseEntity.status(HttpStatus.GONE).body(status);
+        }
+        return ResponseEntity.ok(status);
+    }
+    
+    // Queue position and estimated wait for a token
+    @GetMapping("/waiting-room/{productId}/status")
+    public WaitingRoomStatusDto getStatus(
+            @PathVariable Integer productId,
+            @RequestHeader(value = WaitingRoomService.TOKEN_HEADER, required = false) String tokenHeader,
+            @RequestParam(required = false) String token) {
+        return waitingRoomService.getStatus(productId, token != null ? token : tokenHeader);
+    }
+}
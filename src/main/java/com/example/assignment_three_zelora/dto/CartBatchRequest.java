@@ -0,0 +1,76 @@
+package com.example.assignment_three_zelora.dto;
+
+import java.util.List;
+
+/**
+ * Request body for /cart/{userId}/batch.
+ * Operations are applied in order: "add" needs productId and quantity, "update" sets the
+ * quantity of a line (by cartItemId or productId, 0 removes it), "remove" drops a line.
+ */
+public class CartBatchRequest {
+
+    private List<Operation> operations;
+
+    public CartBatchRequest() {}
+
+    public CartBatchRequest(List<Operation> operations) {
+        this.operations = operations;
+    }
+
+    public List<Operation> getOperations() {
+        return operations;
+    }
+
+    public void setOperations(List<Operation> operations) {
+        this.operations = operations;
+    }
+
+    // One add, update or remove
+    public static class Operation {
+        private String op;
+        private Integer cartItemId;
+        private Integer productId;
+        private Integer quantity;
+
+        public Operation() {}
+
+        public Operation(String op, Integer cartItemId, Integer productId, Integer quantity) {
+            this.op = op;
+            this.cartItemId = cartItemId;
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+
+        public String getOp() {
+            return op;
+        }
+
+        public void setOp(String op) {
+            this.op = op;
+        }
+
+        public Integer getCartItemId() {
+            return cartItemId;
+        }
+
+        public void setCartItemId(Integer cartItemId) {
+            this.cartItemId = cartItemId;
+        }
+
+        public Integer getProductId() {
+            return productId;
+        }
+
+        public void setProductId(Integer productId) {
+            this.productId = productId;
+        }
+
+        public Integer getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(Integer quantity) {
+            this.quantity = quantity;
+        }
+    }
+}
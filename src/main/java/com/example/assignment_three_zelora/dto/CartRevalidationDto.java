@@ -0,0 +1,188 @@
+package com.example.assignment_three_zelora.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Result of re-checking a cart against current prices and stock before checkout.
+ * Lines whose price moved have already been updated to the current price.
+ */
+public class CartRevalidationDto {
+
+    private Integer userId;
+    private List<Line> lines;
+    private Integer priceChanges;
+    private Integer outOfStock;
+    private BigDecimal previousTotal;
+    private BigDecimal total;
+    private Boolean valid;
+    private Long elapsedMicros;
+
+    public CartRevalidationDto() {}
+
+    public CartRevalidationDto(Integer userId, List<Line> lines, Integer priceChanges, Integer outOfStock,
+                               BigDecimal previousTotal, BigDecimal total, Boolean valid, Long elapsedMicros) {
+        this.userId = userId;
+        this.lines = lines;
+        this.priceChanges = priceChanges;
+        this.outOfStock = outOfStock;
+        this.previousTotal = previousTotal;
+        this.total = total;
+        this.valid = valid;
+        this.elapsedMicros = elapsedMicros;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Integer userId) {
+        this.userId = userId;
+    }
+
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<Line> lines) {
+        this.lines = lines;
+    }
+
+    public Integer getPriceChanges() {
+        return priceChanges;
+    }
+
+    public void setPriceChanges(Integer priceChanges) {
+        this.priceChanges = priceChanges;
+    }
+
+    public Integer getOutOfStock() {
+        return outOfStock;
+    }
+
+    public void setOutOfStock(Integer outOfStock) {
+        this.outOfStock = outOfStock;
+    }
+
+    public BigDecimal getPreviousTotal() {
+        return previousTotal;
+    }
+
+    public void setPreviousTotal(BigDecimal previousTotal) {
+        this.previousTotal = previousTotal;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public void setTotal(BigDecimal total) {
+        this.total = total;
+    }
+
+    public Boolean getValid() {
+        return valid;
+    }
+
+    public void setValid(Boolean valid) {
+        this.valid = valid;
+    }
+
+    public Long getElapsedMicros() {
+        return elapsedMicros;
+    }
+
+    public void setElapsedMicros(Long elapsedMicros) {
+        this.elapsedMicros = elapsedMicros;
+    }
+
+    // One cart line; previousPrice is what the cart held before this check, currentPrice is null for a deleted product
+    public static class Line {
+        private Integer cartItemId;
+        private Integer productId;
+        private Integer quantity;
+        private BigDecimal previousPrice;
+        private BigDecimal currentPrice;
+        private Boolean priceChanged;
+        private Integer availableQuantity;
+        private Boolean outOfStock;
+
+        public Line() {}
+
+        public Line(Integer cartItemId, Integer productId, Integer quantity, BigDecimal previousPrice,
+                    BigDecimal currentPrice, Boolean priceChanged, Integer availableQuantity, Boolean outOfStock) {
+            this.cartItemId = cartItemId;
+            this.productId = productId;
+            this.quantity = quantity;
+            this.previousPrice = previousPrice;
+            this.currentPrice = currentPrice;
+            this.priceChanged = priceChanged;
+            this.availableQuantity = availableQuantity;
+            this.outOfStock = outOfStock;
+        }
+
+        public Integer getCartItemId() {
+            return cartItemId;
+        }
+
+        public void setCartItemId(Integer cartItemId) {
+            this.cartItemId = cartItemId;
+        }
+
+        public Integer getProductId() {
+            return productId;
+        }
+
+        public void setProductId(Integer productId) {
+            this.productId = productId;
+        }
+
+        public Integer getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(Integer quantity) {
+            this.quantity = quantity;
+        }
+
+        public BigDecimal getPreviousPrice() {
+            return previousPrice;
+        }
+
+        public void setPreviousPrice(BigDecimal previousPrice) {
+            this.previousPrice = previousPrice;
+        }
+
+        public BigDecimal getCurrentPrice() {
+            return currentPrice;
+        }
+
+        public void setCurrentPrice(BigDecimal currentPrice) {
+            this.currentPrice = currentPrice;
+        }
+
+        public Boolean getPriceChanged() {
+            return priceChanged;
+        }
+
+        public void setPriceChanged(Boolean priceChanged) {
+            this.priceChanged = priceChanged;
+        }
+
+        public Integer getAvailableQuantity() {
+            return availableQuantity;
+        }
+
+        public void setAvailableQuantity(Integer availableQuantity) {
+            this.availableQuantity = availableQuantity;
+        }
+
+        public Boolean getOutOfStock() {
+            return outOfStock;
+        }
+
+        public void setOutOfStock(Boolean outOfStock) {
+            this.outOfStock = outOfStock;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.assignment_three_zelora.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * DTO for the cart summary view.
+ * Lines, counts and total taken from one consistent read of the cart.
+ */
+public class CartSummaryDto {
+
+    private Integer userId;
+    private List<CartItemResponse> lines;
+    private Integer lineCount;
+    private Integer itemCount;
+    private BigDecimal total;
+
+    // Default constructor
+    public CartSummaryDto() {
+    }
+
+    // Full constructor
+    public CartSummaryDto(Integer userId, List<CartItemResponse> lines, Integer lineCount,
+                          Integer itemCount, BigDecimal total) {
+        this.userId = userId;
+        this.lines = lines;
+        this.lineCount = lineCount;
+        this.itemCount = itemCount;
+        this.total = total;
+    }
+
+    // Getters and Setters
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Integer userId) {
+        this.userId = userId;
+    }
+
+    public List<CartItemResponse> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<CartItemResponse> lines) {
+        this.lines = lines;
+    }
+
+    public Integer getLineCount() {
+        return lineCount;
+    }
+
+    public void setLineCount(Integer lineCount) {
+        this.lineCount = lineCount;
+    }
+
+    public Integer getItemCount() {
+        return itemCount;
+    }
+
+    public void setItemCount(Integer itemCount) {
+        this.itemCount = itemCount;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public void setTotal(BigDecimal total) {
+        this.total = total;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.assignment_three_zelora.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Server-computed prices for a basket.
+ * Amounts are converted from integer cents only when the quote is returned.
+ */
+public class CheckoutQuoteDto {
+    
+    private List<Line> lines;
+    private BigDecimal subtotal;
+    private BigDecimal shipping;
+    private BigDecimal total;
+    private Long totalWeightGrams;
+    private String shippingMethod;
+    
+    public CheckoutQuoteDto() {}
+    
+    public CheckoutQuoteDto(List<Line> lines, BigDecimal subtotal, BigDecimal shipping, BigDecimal total,
+                           Long totalWeightGrams, String shippingMethod) {
+        this.lines = lines;
+        this.subtotal = subtotal;
+        this.shipping = shipping;
+        this.total = total;
+        this.totalWeightGrams = totalWeightGrams;
+        this.shippingMethod = shippingMethod;
+    }
+
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<Line> lines) {
+        this.lines = lines;
+    }
+
+    public BigDecimal getSubtotal() {
+        return subtotal;
+    }
+
+    public void setSubtotal(BigDecimal subtotal) {
+        this.subtotal = subtotal;
+    }
+
+    public BigDecimal getShipping() {
+        return shipping;
+    }
+
+    public void setShipping(BigDecimal shipping) {
+        this.shipping = shipping;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public void setTotal(BigDecimal total) {
+        this.total = total;
+    }
+
+    public Long getTotalWeightGrams() {
+        return totalWeightGrams;
+    }
+
+    public void setTotalWeightGrams(Long totalWeightGrams) {
+        this.totalWeightGrams = totalWeightGrams;
+    }
+
+    public String getShippingMethod() {
+        return shippingMethod;
+    }
+
+    public void setShippingMethod(String shippingMethod) {
+        this.shippingMethod = shippingMethod;
+    }
+
+    // One priced basket line
+    public static class Line {
+        private Integer productId;
+        private Integer quantity;
+        private BigDecimal unitPrice;
+        private BigDecimal lineTotal;
+        private Integer weightGrams;
+
+        public Line() {}
+
+        public Line(Integer productId, Integer quantity, BigDecimal unitPrice, BigDecimal lineTotal, Integer weightGrams) {
+            this.productId = productId;
+            this.quantity = quantity;
+            this.unitPrice = unitPrice;
+            this.lineTotal = lineTotal;
+            this.weightGrams = weightGrams;
+        }
+
+        public Integer getProductId() {
+            return productId;
+        }
+
+        public void setProductId(Integer productId) {
+            this.productId = productId;
+        }
+
+        public Integer getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(Integer quantity) {
+            this.quantity = quantity;
+        }
+
+        public BigDecimal getUnitPrice() {
+            return unitPrice;
+        }
+
+        public void setUnitPrice(BigDecimal unitPrice) {
+            this.unitPrice = unitPrice;
+        }
+
+        public BigDecimal getLineTotal() {
+            return lineTotal;
+        }
+
+        public void setLineTotal(BigDecimal lineTotal) {
+            this.lineTotal = lineTotal;
+        }
+
+        public Integer getWeightGrams() {
+            return weightGrams;
+        }
+
+        public void setWeightGrams(Integer weightGrams) {
+            this.weightGrams = weightGrams;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.assignment_three_zelora.dto;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing.
+ * Pass nextCursor back as the cursor parameter to fetch the following page.
+ */
+public class KeysetPage<T> {
+    
+    private List<T> items;
+    private String nextCursor;
+    private boolean hasMore;
+    
+    // Default constructor
+    public KeysetPage() {
+    }
+    
+    // Full constructor
+    public KeysetPage(List<T> items, String nextCursor, boolean hasMore) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    // Getters and Setters
+    public List<T> getItems() {
+        return items;
+    }
+
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.assignment_three_zelora.dto;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * DTO for order list views.
+ * Projected straight from the query so line items are never loaded.
+ */
+public class OrderSummaryDto {
+    
+    private Integer orderId;
+    private Date orderDate;
+    private String orderStatus;
+    private BigDecimal totalAmount;
+    private Integer customerId;
+    private String customerName;
+    private Long itemCount;
+    
+    // Default constructor
+    public OrderSummaryDto() {
+    }
+    
+    // Constructor used by the JPQL projection
+    public OrderSummaryDto(Integer orderId, Date orderDate, String orderStatus, BigDecimal totalAmount,
+                          Integer customerId, String firstName, String lastName, Long itemCount) {
+        this.orderId = orderId;
+        this.orderDate = orderDate;
+        this.orderStatus = orderStatus;
+        this.totalAmount = totalAmount;
+        this.customerId = customerId;
+        if (customerId != null) {
+            this.customerName = (firstName != null ? firstName : "") + " " + (lastName != null ? lastName : "");
+        }
+        this.itemCount = itemCount;
+    }
+
+    // Getters and Setters
+    public Integer getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(Integer orderId) {
+        this.orderId = orderId;
+    }
+
+    public Date getOrderDate() {
+        return orderDate;
+    }
+
+    public void setOrderDate(Date orderDate) {
+        this.orderDate = orderDate;
+    }
+
+    public String getOrderStatus() {
+        return orderStatus;
+    }
+
+    public void setOrderStatus(String orderStatus) {
+        this.orderStatus = orderStatus;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public void setTotalAmount(BigDecimal totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+
+    public Integer getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(Integer customerId) {
+        this.customerId = customerId;
+    }
+
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    public void setCustomerName(String customerName) {
+        this.customerName = customerName;
+    }
+
+    public Long getItemCount() {
+        return itemCount;
+    }
+
+    public void setItemCount(Long itemCount) {
+        this.itemCount = itemCount;
+    }
+}
@@ -33,6 +33,7 @@ public class ProductDetailDto {
     private List<ReviewDto> reviews;
     private Double averageRating;
     private Integer totalReviews;
+    private String reviewsNextCursor;
     
     // Default constructor
     public ProductDetailDto() {
@@ -220,6 +221,14 @@ public class ProductDetailDto {
         this.totalReviews = totalReviews;
     }
 
+    public String getReviewsNextCursor() {
+        return reviewsNextCursor;
+    }
+
+    public void setReviewsNextCursor(String reviewsNextCursor) {
+        this.reviewsNextCursor = reviewsNextCursor;
+    }
+
     public Integer getQuantityReserved() {
         return quantityReserved;
     }
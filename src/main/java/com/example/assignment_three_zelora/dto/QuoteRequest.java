@@ -0,0 +1,65 @@
+package com.example.assignment_three_zelora.dto;
+
+import java.util.List;
+
+/**
+ * Basket sent to /checkout/quote. Only product IDs and quantities are
+ * trusted; prices always come from the catalog.
+ */
+public class QuoteRequest {
+    
+    private List<Line> items;
+    private String shippingMethod;
+    
+    public QuoteRequest() {}
+    
+    public QuoteRequest(List<Line> items, String shippingMethod) {
+        this.items = items;
+        this.shippingMethod = shippingMethod;
+    }
+
+    public List<Line> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Line> items) {
+        this.items = items;
+    }
+
+    public String getShippingMethod() {
+        return shippingMethod;
+    }
+
+    public void setShippingMethod(String shippingMethod) {
+        this.shippingMethod = shippingMethod;
+    }
+
+    // One basket line
+    public static class Line {
+        private Integer productId;
+        private Integer quantity;
+
+        public Line() {}
+
+        public Line(Integer productId, Integer quantity) {
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+
+        public Integer getProductId() {
+            return productId;
+        }
+
+        public void setProductId(Integer productId) {
+            this.productId = productId;
+        }
+
+        public Integer getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(Integer quantity) {
+            this.quantity = quantity;
+        }
+    }
+}
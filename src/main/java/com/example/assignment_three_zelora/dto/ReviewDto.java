@@ -18,6 +18,7 @@ public class ReviewDto {
     private String reviewText;
     private Date reviewDate;
     private Boolean flaggedAsSpam;
+    private Integer helpfulCount;
     
     // Default constructor
     public ReviewDto() {
@@ -26,7 +27,7 @@ public class ReviewDto {
     // Full constructor
     public ReviewDto(Integer reviewId, Integer productId, String productName,
                     Integer customerId, String customerName, String customerCity, Integer rating,
-                    String reviewText, Date reviewDate, Boolean flaggedAsSpam) {
+                    String reviewText, Date reviewDate, Boolean flaggedAsSpam, Integer helpfulCount) {
         this.reviewId = reviewId;
         this.productId = productId;
         this.productName = productName;
@@ -37,6 +38,7 @@ public class ReviewDto {
         this.reviewText = reviewText;
         this.reviewDate = reviewDate;
         this.flaggedAsSpam = flaggedAsSpam;
+        this.helpfulCount = helpfulCount;
     }
 
     // Getters and Setters
@@ -119,4 +121,12 @@ public class ReviewDto {
     public void setFlaggedAsSpam(Boolean flaggedAsSpam) {
         this.flaggedAsSpam = flaggedAsSpam;
     }
+
+    public Integer getHelpfulCount() {
+        return helpfulCount;
+    }
+
+    public void setHelpfulCount(Integer helpfulCount) {
+        this.helpfulCount = helpfulCount;
+    }
 }
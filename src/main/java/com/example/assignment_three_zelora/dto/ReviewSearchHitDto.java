@@ -0,0 +1,91 @@
+package com.example.assignment_three_zelora.dto;
+
+import java.util.List;
+
+/**
+ * One review matching a /reviews/search query.
+ * highlights are [start, end) character offsets of the matches inside snippet.
+ */
+public class ReviewSearchHitDto {
+
+    private Integer reviewId;
+    private Integer productId;
+    private Integer rating;
+    private Boolean flaggedAsSpam;
+    private Integer score;
+    private String snippet;
+    private List<int[]> highlights;
+
+    // Default constructor
+    public ReviewSearchHitDto() {
+    }
+
+    // Full constructor
+    public ReviewSearchHitDto(Integer reviewId, Integer productId, Integer rating, Boolean flaggedAsSpam,
+                              Integer score, String snippet, List<int[]> highlights) {
+        this.reviewId = reviewId;
+        this.productId = productId;
+        this.rating = rating;
+        this.flaggedAsSpam = flaggedAsSpam;
+        this.score = score;
+        this.snippet = snippet;
+        this.highlights = highlights;
+    }
+
+    // Getters and Setters
+    public Integer getReviewId() {
+        return reviewId;
+    }
+
+    public void setReviewId(Integer reviewId) {
+        this.reviewId = reviewId;
+    }
+
+    public Integer getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Integer productId) {
+        this.productId = productId;
+    }
+
+    public Integer getRating() {
+        return rating;
+    }
+
+    public void setRating(Integer rating) {
+        this.rating = rating;
+    }
+
+    public Boolean getFlaggedAsSpam() {
+        return flaggedAsSpam;
+    }
+
+    public void setFlaggedAsSpam(Boolean flaggedAsSpam) {
+        this.flaggedAsSpam = flaggedAsSpam;
+    }
+
+    public Integer getScore() {
+        return score;
+    }
+
+    public void setScore(Integer score) {
+        this.score = score;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public void setSnippet(String snippet) {
+        this.snippet = snippet;
+    }
+
+    public List<int[]> getHighlights() {
+        return highlights;
+    }
+
+    public void setHighlights(List<int[]> highlights) {
+        this.highlights = highlights;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.assignment_three_zelora.dto;
+
+import java.util.List;
+
+/**
+ * DTO summarising a bulk stock adjustment upload.
+ * Errors refer to 1-based line numbers in the uploaded body.
+ */
+public class StockAdjustmentSummaryDto {
+    
+    private int received;
+    private int applied;
+    private int failed;
+    private int rowsUpdated;
+    private int chunks;
+    private long elapsedMs;
+    private List<RecordError> errors;
+    private boolean errorsTruncated;
+    
+    /**
+     * One rejected record.
+     */
+    public static class RecordError {
+        private int line;
+        private String error;
+        
+        public RecordError() {
+        }
+        
+        public RecordError(int line, String error) {
+            this.line = line;
+            this.error = error;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public void setLine(int line) {
+            this.line = line;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
+    }
+    
+    // Default constructor
+    public StockAdjustmentSummaryDto() {
+    }
+    
+    // Full constructor
+    public StockAdjustmentSummaryDto(int received, int applied, int failed, int rowsUpdated, int chunks,
+                                     long elapsedMs, List<RecordError> errors, boolean errorsTruncated) {
+        this.received = received;
+        this.applied = applied;
+        this.failed = failed;
+        this.rowsUpdated = rowsUpdated;
+        this.chunks = chunks;
+        this.elapsedMs = elapsedMs;
+        this.errors = errors;
+        this.errorsTruncated = errorsTruncated;
+    }
+
+    // Getters and Setters
+    public int getReceived() {
+        return received;
+    }
+
+    public void setReceived(int received) {
+        this.received = received;
+    }
+
+    public int getApplied() {
+        return applied;
+    }
+
+    public void setApplied(int applied) {
+        this.applied = applied;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public int getRowsUpdated() {
+        return rowsUpdated;
+    }
+
+    public void setRowsUpdated(int rowsUpdated) {
+        this.rowsUpdated = rowsUpdated;
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+
+    public void setChunks(int chunks) {
+        this.chunks = chunks;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public void setElapsedMs(long elapsedMs) {
+        this.elapsedMs = elapsedMs;
+    }
+
+    public List<RecordError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<RecordError> errors) {
+        this.errors = errors;
+    }
+
+    public boolean isErrorsTruncated() {
+        return errorsTruncated;
+    }
+
+    public void setErrorsTruncated(boolean errorsTruncated) {
+        this.errorsTruncated = errorsTruncated;
+    }
+}
@@ -1,5 +1,9 @@
 package com.example.assignment_three_zelora.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
 /**
  * DTO for stock/inventory status information.
  * Used for inventory management and stock checks.
@@ -16,6 +20,10 @@ public class StockStatusDto {
     private boolean lowStock;
     private String stockStatus; // "IN_STOCK", "LOW_STOCK", "OUT_OF_STOCK", "RESERVED"
     
+    // Per-supplier breakdown; only set on the per-product view
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<SupplierStockDto> suppliers;
+    
     // Default constructor
     public StockStatusDto() {
     }
@@ -108,6 +116,14 @@ public class StockStatusDto {
     public void setStockStatus(String stockStatus) {
         this.stockStatus = stockStatus;
     }
+
+    public List<SupplierStockDto> getSuppliers() {
+        return suppliers;
+    }
+
+    public void setSuppliers(List<SupplierStockDto> suppliers) {
+        this.suppliers = suppliers;
+    }
     
     /**
      * Calculate stock status based on quantities and reorder point.
@@ -0,0 +1,79 @@
+package com.example.assignment_three_zelora.dto;
+
+/**
+ * DTO for one supplier's share of a product's stock.
+ * Used in the per-supplier breakdown of StockStatusDto.
+ */
+public class SupplierStockDto {
+    
+    private Integer inventoryId;
+    private Integer supplierId;
+    private Integer quantityInStock;
+    private Integer quantityReserved;
+    private Integer availableQuantity;
+    private Integer reorderPoint;
+    
+    // Default constructor
+    public SupplierStockDto() {
+    }
+    
+    // Full constructor
+    public SupplierStockDto(Integer inventoryId, Integer supplierId, Integer quantityInStock,
+                            Integer quantityReserved, Integer availableQuantity, Integer reorderPoint) {
+        this.inventoryId = inventoryId;
+        this.supplierId = supplierId;
+        this.quantityInStock = quantityInStock;
+        this.quantityReserved = quantityReserved;
+        this.availableQuantity = availableQuantity;
+        this.reorderPoint = reorderPoint;
+    }
+
+    // Getters and Setters
+    public Integer getInventoryId() {
+        return inventoryId;
+    }
+
+    public void setInventoryId(Integer inventoryId) {
+        this.inventoryId = inventoryId;
+    }
+
+    public Integer getSupplierId() {
+        return supplierId;
+    }
+
+    public void setSupplierId(Integer supplierId) {
+        this.supplierId = supplierId;
+    }
+
+    public Integer getQuantityInStock() {
+        return quantityInStock;
+    }
+
+    public void setQuantityInStock(Integer quantityInStock) {
+        this.quantityInStock = quantityInStock;
+    }
+
+    public Integer getQuantityReserved() {
+        return quantityReserved;
+    }
+
+    public void setQuantityReserved(Integer quantityReserved) {
+        this.quantityReserved = quantityReserved;
+    }
+
+    public Integer getAvailableQuantity() {
+        return availableQuantity;
+    }
+
+    public void setAvailableQuantity(Integer availableQuantity) {
+        this.availableQuantity = availableQuantity;
+    }
+
+    public Integer getReorderPoint() {
+        return reorderPoint;
+    }
+
+    public void setReorderPoint(Integer reorderPoint) {
+        this.reorderPoint = reorderPoint;
+    }
+}
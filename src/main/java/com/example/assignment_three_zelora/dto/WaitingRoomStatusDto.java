@@ -0,0 +1,100 @@
+package com.example.assignment_three_zelora.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Date;
+
+/**
+ * DTO for a buyer's place in a product's flash-sale waiting room.
+ * status is OPEN (no waiting room), WAITING, ADMITTED, EXPIRED or SOLD_OUT.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WaitingRoomStatusDto {
+    
+    public static final String OPEN = "OPEN";
+    public static final String WAITING = "WAITING";
+    public static final String ADMITTED = "ADMITTED";
+    public static final String EXPIRED = "EXPIRED";
+    public static final String SOLD_OUT = "SOLD_OUT";
+    
+    private Integer productId;
+    private String status;
+    private String token;
+    private Long position;
+    private Long estimatedWaitSeconds;
+    private Date admittedUntil;
+    private String message;
+    
+    // Default constructor
+    public WaitingRoomStatusDto() {
+    }
+    
+    // Full constructor
+    public WaitingRoomStatusDto(Integer productId, String status, String token, Long position,
+                                Long estimatedWaitSeconds, Date admittedUntil, String message) {
+        this.productId = productId;
+        this.status = status;
+        this.token = token;
+        this.position = position;
+        this.estimatedWaitSeconds = estimatedWaitSeconds;
+        this.admittedUntil = admittedUntil;
+        this.message = message;
+    }
+    
+    // Getters and Setters
+    public Integer getProductId() {
+        return productId;
+    }
+    
+    public void setProductId(Integer productId) {
+        this.productId = productId;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public String getToken() {
+        return token;
+    }
+    
+    public void setToken(String token) {
+        this.token = token;
+    }
+    
+    public Long getPosition() {
+        return position;
+    }
+    
+    public void setPosition(Long position) {
+        this.position = position;
+    }
+    
+    public Long getEstimatedWaitSeconds() {
+        return estimatedWaitSeconds;
+    }
+    
+    public void setEstimatedWaitSeconds(Long estimatedWaitSeconds) {
+        this.estimatedWaitSeconds = estimatedWaitSeconds;
+    }
+    
+    public Date getAdmittedUntil() {
+        return admittedUntil;
+    }
+    
+    public void setAdmittedUntil(Date admittedUntil) {
+        this.admittedUntil = admittedUntil;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+    
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.assignment_three_zelora.event;
+
+/**
+ * Published once an order and all of its line items have been saved.
+ */
+public class OrderCreatedEvent {
+    
+    private final Integer orderId;
+    private final Integer customerId;
+    
+    public OrderCreatedEvent(Integer orderId, Integer customerId) {
+        this.orderId = orderId;
+        this.customerId = customerId;
+    }
+
+    public Integer getOrderId() {
+        return orderId;
+    }
+
+    public Integer getCustomerId() {
+        return customerId;
+    }
+
+    public String toString() {
+        return "OrderCreatedEvent(orderId=" + orderId + ", customerId=" + customerId + ")";
+    }
+}
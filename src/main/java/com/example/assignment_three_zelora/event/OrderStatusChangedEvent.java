@@ -0,0 +1,49 @@
+package com.example.assignment_three_zelora.event;
+
+import java.util.Date;
+
+/**
+ * Published in-process whenever an order's status changes.
+ * Listeners that touch the database should use @TransactionalEventListener
+ * so they only see committed changes.
+ */
+public class OrderStatusChangedEvent {
+    
+    private final Integer orderId;
+    private final Integer customerId;
+    private final String previousStatus;
+    private final String newStatus;
+    private final Date changedAt;
+    
+    public OrderStatusChangedEvent(Integer orderId, Integer customerId, String previousStatus, String newStatus) {
+        this.orderId = orderId;
+        this.customerId = customerId;
+        this.previousStatus = previousStatus;
+        this.newStatus = newStatus;
+        this.changedAt = new Date();
+    }
+
+    public Integer getOrderId() {
+        return orderId;
+    }
+
+    public Integer getCustomerId() {
+        return customerId;
+    }
+
+    public String getPreviousStatus() {
+        return previousStatus;
+    }
+
+    public String getNewStatus() {
+        return newStatus;
+    }
+
+    public Date getChangedAt() {
+        return changedAt;
+    }
+
+    public String toString() {
+        return "OrderStatusChangedEvent(orderId=" + orderId + ", customerId=" + customerId + ", previousStatus=" + previousStatus + ", newStatus=" + newStatus + ")";
+    }
+}
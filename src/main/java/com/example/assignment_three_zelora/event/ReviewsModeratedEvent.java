@@ -0,0 +1,45 @@
+package com.example.assignment_three_zelora.event;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Published after a batch of moderation verdicts or an admin bulk action has been written.
+ * productIds are the products whose visible reviews changed, so their rating
+ * aggregates are stale.
+ */
+public class ReviewsModeratedEvent {
+
+    private final Set<Integer> productIds;
+    private final List<Integer> flaggedReviewIds;
+    private final List<Integer> deletedReviewIds;
+    private final int moderatedCount;
+
+    public ReviewsModeratedEvent(Set<Integer> productIds, List<Integer> flaggedReviewIds,
+                                 List<Integer> deletedReviewIds, int moderatedCount) {
+        this.productIds = productIds;
+        this.flaggedReviewIds = flaggedReviewIds;
+        this.deletedReviewIds = deletedReviewIds;
+        this.moderatedCount = moderatedCount;
+    }
+
+    public Set<Integer> getProductIds() {
+        return productIds;
+    }
+
+    public List<Integer> getFlaggedReviewIds() {
+        return flaggedReviewIds;
+    }
+
+    public List<Integer> getDeletedReviewIds() {
+        return deletedReviewIds;
+    }
+
+    public int getModeratedCount() {
+        return moderatedCount;
+    }
+
+    public String toString() {
+        return "ReviewsModeratedEvent(productIds=" + productIds + ", flaggedReviewIds=" + flaggedReviewIds + ", deletedReviewIds=" + deletedReviewIds + ", moderatedCount=" + moderatedCount + ")";
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.assignment_three_zelora.event;
+
+import java.util.Date;
+
+/**
+ * Published in-process when a product, totalled across its suppliers, moves between
+ * IN_STOCK, LOW_STOCK and OUT_OF_STOCK. Statuses use the same names as StockStatusDto.
+ */
+public class StockStatusChangedEvent {
+    
+    private final Integer productId;
+    private final String previousStatus;
+    private final String newStatus;
+    private final Integer availableQuantity;
+    private final Date changedAt;
+    
+    public StockStatusChangedEvent(Integer productId, String previousStatus,
+                                   String newStatus, Integer availableQuantity) {
+        this.productId = productId;
+        this.previousStatus = previousStatus;
+        this.newStatus = newStatus;
+        this.availableQuantity = availableQuantity;
+        this.changedAt = new Date();
+    }
+
+    public Integer getProductId() {
+        return productId;
+    }
+
+    public String getPreviousStatus() {
+        return previousStatus;
+    }
+
+    public String getNewStatus() {
+        return newStatus;
+    }
+
+    public Integer getAvailableQuantity() {
+        return availableQuantity;
+    }
+
+    public Date getChangedAt() {
+        return changedAt;
+    }
+
+    public String toString() {
+        return "StockStatusChangedEvent(productId=" + productId + ", previousStatus=" + previousStatus + ", newStatus=" + newStatus + ", availableQuantity=" + availableQuantity + ")";
+    }
+}
@@ -1,5 +1,8 @@
 package com.example.assignment_three_zelora.exception;
 
+import com.example.assignment_three_zelora.dto.WaitingRoomStatusDto;
+import com.example.assignment_three_zelora.service.WaitingRoomService;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -33,6 +36,47 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
     }
 
+    /**
+     * Handle optimistic-lock conflicts that were still failing after retries
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String, Object>> handleOptimisticLockingFailure(
+            OptimisticLockingFailureException ex, WebRequest request) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("timestamp", new Date());
+        error.put("status", HttpStatus.CONFLICT.value());
+        error.put("error", "Conflict");
+        error.put("message", "The record was changed by someone else. Please reload and try again.");
+        error.put("path", request.getDescription(false).replace("uri=", ""));
+        
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+
+    /**
+     * Handle requests for a waiting-room product without a current admission
+     */
+    @ExceptionHandler(WaitingRoomService.AdmissionDeniedException.class)
+    public ResponseEntity<Map<String, Object>> handleAdmissionDenied(
+            WaitingRoomService.AdmissionDeniedException ex, WebRequest request) {
+        WaitingRoomStatusDto status = ex.getStatus();
+        boolean soldOut = WaitingRoomStatusDto.SOLD_OUT.equals(status.getStatus());
+        HttpStatus httpStatus = soldOut ? HttpStatus.GONE : HttpStatus.TOO_MANY_REQUESTS;
+        Map<String, Object> error = new HashMap<>();
+        error.put("timestamp", new Date());
+        error.put("status", httpStatus.value());
+        error.put("error", httpStatus.getReasonPhrase());
+        error.put("message", ex.getMessage());
+        error.put("path", request.getDescription(false).replace("uri=", ""));
+        error.put("waitingRoom", status);
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(httpStatus);
+        if (!soldOut) {
+            long retryAfter = status.getEstimatedWaitSeconds() != null ? status.getEstimatedWaitSeconds() : 1;
+            response.header("Retry-After", String.valueOf(Math.max(1, Math.min(retryAfter, 30))));
+        }
+        return response.body(error);
+    }
+
     /**
      * Handle null pointer exceptions
      */
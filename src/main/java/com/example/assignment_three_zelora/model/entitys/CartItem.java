@@ -5,9 +5,12 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.util.Date;
 
 @Entity
-@Table(name = "cart_items")
+@Table(name = "cart_items",
+       uniqueConstraints = @UniqueConstraint(name = "unique_cart_item", columnNames = {"user_id", "product_id"}),
+       indexes = @Index(name = "idx_cart_items_last_modified", columnList = "last_modified, user_id"))
 public class CartItem implements Serializable {
 
     @Id
@@ -29,6 +32,19 @@ public class CartItem implements Serializable {
     @Column(name = "price")
     private BigDecimal price;
 
+    // Units currently held against stock for this line, and when the hold lapses
+    @Column(name = "reserved_quantity")
+    private Integer reservedQuantity;
+
+    @Column(name = "reserved_until")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date reservedUntil;
+
+    // Last time the shopper changed this line; the abandoned-cart sweeper ranges over it
+    @Column(name = "last_modified")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date lastModified;
+
     public CartItem() {
     }
 
@@ -80,6 +96,30 @@ public class CartItem implements Serializable {
         this.price = price;
     }
 
+    public Integer getReservedQuantity() {
+        return reservedQuantity;
+    }
+
+    public void setReservedQuantity(Integer reservedQuantity) {
+        this.reservedQuantity = reservedQuantity;
+    }
+
+    public Date getReservedUntil() {
+        return reservedUntil;
+    }
+
+    public void setReservedUntil(Date reservedUntil) {
+        this.reservedUntil = reservedUntil;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Date lastModified) {
+        this.lastModified = lastModified;
+    }
+
     public BigDecimal getSubtotal() {
         if (price != null && quantity != null) {
             return price.multiply(new BigDecimal(quantity));
@@ -1,6 +1,7 @@
 package com.example.assignment_three_zelora.model.entitys;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.io.Serializable;
 
@@ -30,6 +31,12 @@ public class Inventory implements Serializable {
     @JoinColumn(name = "supplier_id", referencedColumnName = "supplier_id")
     @ManyToOne
     private Supplier supplierId;
+    
+    // Optimistic lock; bulk SQL writers bump it too, so a stale JPA save always fails
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Integer version;
 
 
     public Inventory(Integer inventoryId, Integer quantityInStock, Integer quantityReserved, Integer reorderPoint, Product productId, Supplier supplierId) {
@@ -92,7 +99,15 @@ public class Inventory implements Serializable {
         this.supplierId = supplierId;
     }
 
+    public Integer getVersion() {
+        return this.version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     public String toString() {
-        return "Inventory(inventoryId=" + this.getInventoryId() + ", quantityInStock=" + this.getQuantityInStock() + ", quantityReserved=" + this.getQuantityReserved() + ", reorderPoint=" + this.getReorderPoint() + ")";
+        return "Inventory(inventoryId=" + this.getInventoryId() + ", quantityInStock=" + this.getQuantityInStock() + ", quantityReserved=" + this.getQuantityReserved() + ", reorderPoint=" + this.getReorderPoint() + ", version=" + this.getVersion() + ")";
     }
 }
\ No newline at end of file
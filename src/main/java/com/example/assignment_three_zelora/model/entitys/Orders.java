@@ -1,6 +1,7 @@
 package com.example.assignment_three_zelora.model.entitys;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -12,6 +13,14 @@ import java.util.List;
 
 @Entity
 @Table(name = "orders")
+@NamedEntityGraph(
+    name = "Orders.full",
+    attributeNodes = {
+        @NamedAttributeNode("customerId"),
+        @NamedAttributeNode(value = "orderitemList", subgraph = "items")
+    },
+    subgraphs = @NamedSubgraph(name = "items", attributeNodes = @NamedAttributeNode("productId"))
+)
 public class Orders implements Serializable {
 
     @Id
@@ -40,7 +49,19 @@ public class Orders implements Serializable {
     @Temporal(TemporalType.DATE)
     private Date deliveryDate;
     
-    @OneToMany(mappedBy = "orderId", fetch = FetchType.EAGER)
+    // Exact time the order was placed (order_date only keeps the day)
+    @Column(name = "placed_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date placedAt;
+    
+    // Optimistic lock; existing rows start at 0 when the column is added
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Integer version;
+    
+    // Loaded on demand; use the "Orders.full" entity graph when line items are needed
+    @OneToMany(mappedBy = "orderId", fetch = FetchType.LAZY)
     private List<Orderitem> orderitemList;
     
     @JoinColumn(name = "customer_id", referencedColumnName = "customer_id")
@@ -117,6 +138,10 @@ public class Orders implements Serializable {
         return this.deliveryDate;
     }
 
+    public Date getPlacedAt() {
+        return this.placedAt;
+    }
+
     public List<Orderitem> getOrderitemList() {
         return this.orderitemList;
     }
@@ -153,6 +178,10 @@ public class Orders implements Serializable {
         this.deliveryDate = deliveryDate;
     }
 
+    public void setPlacedAt(Date placedAt) {
+        this.placedAt = placedAt;
+    }
+
     public void setOrderitemList(List<Orderitem> orderitemList) {
         this.orderitemList = orderitemList;
     }
@@ -161,7 +190,15 @@ public class Orders implements Serializable {
         this.customerId = customerId;
     }
 
+    public Integer getVersion() {
+        return this.version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     public String toString() {
-        return "Orders(orderId=" + this.getOrderId() + ", orderDate=" + this.getOrderDate() + ", totalAmount=" + this.getTotalAmount() + ", orderStatus=" + this.getOrderStatus() + ", paymentMethod=" + this.getPaymentMethod() + ", shippingMethod=" + this.getShippingMethod() + ", deliveryDate=" + this.getDeliveryDate() + ")";
+        return "Orders(orderId=" + this.getOrderId() + ", orderDate=" + this.getOrderDate() + ", totalAmount=" + this.getTotalAmount() + ", orderStatus=" + this.getOrderStatus() + ", paymentMethod=" + this.getPaymentMethod() + ", shippingMethod=" + this.getShippingMethod() + ", deliveryDate=" + this.getDeliveryDate() + ", version=" + this.getVersion() + ")";
     }
 }
\ No newline at end of file
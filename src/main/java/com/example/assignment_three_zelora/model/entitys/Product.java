@@ -52,6 +52,10 @@ public class Product implements Serializable {
     @Column(name = "discounted_price")
     private BigDecimal discountedPrice;
     
+    // Shipping weight of one unit in kg; null until it has been measured
+    @Column(name = "weight", precision = 38, scale = 2)
+    private BigDecimal weight;
+    
     @Basic(optional = false)
     @Column(name = "feature_image")
     private String featureImage;
@@ -148,6 +152,10 @@ public class Product implements Serializable {
         return this.discountedPrice;
     }
 
+    public BigDecimal getWeight() {
+        return this.weight;
+    }
+
     public String getFeatureImage() {
         return this.featureImage;
     }
@@ -220,6 +228,10 @@ public class Product implements Serializable {
         this.discountedPrice = discountedPrice;
     }
 
+    public void setWeight(BigDecimal weight) {
+        this.weight = weight;
+    }
+
     public void setFeatureImage(String featureImage) {
         this.featureImage = featureImage;
     }
@@ -1,14 +1,22 @@
 package com.example.assignment_three_zelora.model.entitys;
 
 import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
 
 import java.io.Serializable;
 import java.util.Date;
 
 
 @Entity
-@Table(name = "reviews")
-public class Review implements Serializable {
+@Table(name = "reviews",
+       uniqueConstraints = @UniqueConstraint(name = "uk_reviews_product_customer", columnNames = {"product_id", "customer_id"}),
+       indexes = {
+           @Index(name = "idx_reviews_product_date", columnList = "product_id, review_date, review_id"),
+           @Index(name = "idx_reviews_product_rating", columnList = "product_id, rating, review_id"),
+           @Index(name = "idx_reviews_product_helpful", columnList = "product_id, helpful_count, review_id"),
+           @Index(name = "idx_reviews_moderated_at", columnList = "moderated_at, review_id")
+       })
+public class Review implements Serializable, Persistable<Integer> {
 
     @Id
     @Basic(optional = false)
@@ -29,6 +37,14 @@ public class Review implements Serializable {
     @Column(name = "flagged_as_spam")
     private Boolean flaggedAsSpam;
     
+    @Column(name = "helpful_count", nullable = false, columnDefinition = "INT NOT NULL DEFAULT 0")
+    private Integer helpfulCount = 0;
+    
+    // Set once automatic moderation has looked at the review; null means still queued
+    @Column(name = "moderated_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date moderatedAt;
+    
     @JoinColumn(name = "customer_id", referencedColumnName = "customer_id")
     @ManyToOne
     private Customer customerId;
@@ -36,6 +52,11 @@ public class Review implements Serializable {
     @JoinColumn(name = "product_id", referencedColumnName = "product_id")
     @ManyToOne
     private Product productId;
+    
+    // Ids are assigned by the application, so a review that was never stored must be inserted;
+    // merging it would silently overwrite whichever review already holds that id
+    @Transient
+    private boolean isNew = true;
 
     public Review(Integer reviewId, Integer rating, String reviewText, Date reviewDate, Boolean flaggedAsSpam, Customer customerId, Product productId) {
         this.reviewId = reviewId;
@@ -50,6 +71,22 @@ public class Review implements Serializable {
     public Review() {
     }
 
+    @Override
+    public Integer getId() {
+        return this.reviewId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return this.isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markStored() {
+        this.isNew = false;
+    }
+
     public Integer getReviewId() {
         return this.reviewId;
     }
@@ -70,6 +107,14 @@ public class Review implements Serializable {
         return this.flaggedAsSpam;
     }
 
+    public Integer getHelpfulCount() {
+        return this.helpfulCount;
+    }
+
+    public Date getModeratedAt() {
+        return this.moderatedAt;
+    }
+
     public Customer getCustomerId() {
         return this.customerId;
     }
@@ -98,6 +143,14 @@ public class Review implements Serializable {
         this.flaggedAsSpam = flaggedAsSpam;
     }
 
+    public void setHelpfulCount(Integer helpfulCount) {
+        this.helpfulCount = helpfulCount;
+    }
+
+    public void setModeratedAt(Date moderatedAt) {
+        this.moderatedAt = moderatedAt;
+    }
+
     public void setCustomerId(Customer customerId) {
         this.customerId = customerId;
     }
@@ -107,6 +160,6 @@ public class Review implements Serializable {
     }
 
     public String toString() {
-        return "Review(reviewId=" + this.getReviewId() + ", rating=" + this.getRating() + ", reviewText=" + this.getReviewText() + ", reviewDate=" + this.getReviewDate() + ", flaggedAsSpam=" + this.getFlaggedAsSpam() + ")";
+        return "Review(reviewId=" + this.getReviewId() + ", rating=" + this.getRating() + ", reviewText=" + this.getReviewText() + ", reviewDate=" + this.getReviewDate() + ", flaggedAsSpam=" + this.getFlaggedAsSpam() + ", helpfulCount=" + this.getHelpfulCount() + ")";
     }
 }
\ No newline at end of file
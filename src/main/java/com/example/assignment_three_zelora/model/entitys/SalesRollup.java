@@ -0,0 +1,124 @@
+package com.example.assignment_three_zelora.model.entitys;
+
+import jakarta.persistence.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Pre-aggregated sales totals for one time bucket.
+ * granularity is HOUR or DAY; dimension is ALL (dimensionId 0), PRODUCT or CATEGORY.
+ */
+@Entity
+@Table(name = "sales_rollups",
+       uniqueConstraints = @UniqueConstraint(name = "uk_sales_rollup_bucket",
+               columnNames = {"granularity", "dimension", "dimension_id", "bucket_start"}))
+public class SalesRollup implements Serializable {
+
+    public static final String HOUR = "HOUR";
+    public static final String DAY = "DAY";
+
+    public static final String ALL = "ALL";
+    public static final String PRODUCT = "PRODUCT";
+    public static final String CATEGORY = "CATEGORY";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "rollup_id")
+    @JsonIgnore
+    private Long rollupId;
+
+    @Column(name = "granularity", nullable = false, length = 8)
+    private String granularity;
+
+    @Column(name = "dimension", nullable = false, length = 16)
+    private String dimension;
+
+    @Column(name = "dimension_id", nullable = false)
+    private Integer dimensionId;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "revenue", precision = 38, scale = 2)
+    private BigDecimal revenue;
+
+    @Column(name = "order_count")
+    private Long orderCount;
+
+    @Column(name = "units")
+    private Long units;
+
+    public SalesRollup() {
+    }
+
+    public Long getRollupId() {
+        return rollupId;
+    }
+
+    public String getGranularity() {
+        return granularity;
+    }
+
+    public String getDimension() {
+        return dimension;
+    }
+
+    public Integer getDimensionId() {
+        return dimensionId;
+    }
+
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    public BigDecimal getRevenue() {
+        return revenue;
+    }
+
+    public Long getOrderCount() {
+        return orderCount;
+    }
+
+    public Long getUnits() {
+        return units;
+    }
+
+    public void setRollupId(Long rollupId) {
+        this.rollupId = rollupId;
+    }
+
+    public void setGranularity(String granularity) {
+        this.granularity = granularity;
+    }
+
+    public void setDimension(String dimension) {
+        this.dimension = dimension;
+    }
+
+    public void setDimensionId(Integer dimensionId) {
+        this.dimensionId = dimensionId;
+    }
+
+    public void setBucketStart(LocalDateTime bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public void setRevenue(BigDecimal revenue) {
+        this.revenue = revenue;
+    }
+
+    public void setOrderCount(Long orderCount) {
+        this.orderCount = orderCount;
+    }
+
+    public void setUnits(Long units) {
+        this.units = units;
+    }
+
+    public String toString() {
+        return "SalesRollup(granularity=" + granularity + ", dimension=" + dimension + ", dimensionId=" + dimensionId + ", bucketStart=" + bucketStart + ", revenue=" + revenue + ", orderCount=" + orderCount + ", units=" + units + ")";
+    }
+}
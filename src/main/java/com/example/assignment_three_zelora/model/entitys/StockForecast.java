@@ -0,0 +1,123 @@
+package com.example.assignment_three_zelora.model.entitys;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Latest sales-velocity forecast for one product, written by the forecasting job.
+ * dailyVelocity and dailyDeviation are exponentially weighted over daily unit sales;
+ * daysToStockout is null when the product is not selling.
+ */
+@Entity
+@Table(name = "stock_forecasts")
+public class StockForecast implements Serializable {
+
+    @Id
+    @Column(name = "product_id")
+    private Integer productId;
+
+    @Column(name = "daily_velocity")
+    private Double dailyVelocity;
+
+    @Column(name = "daily_deviation")
+    private Double dailyDeviation;
+
+    @Column(name = "units_in_window")
+    private Long unitsInWindow;
+
+    @Column(name = "available_quantity")
+    private Integer availableQuantity;
+
+    @Column(name = "current_reorder_point")
+    private Integer currentReorderPoint;
+
+    @Column(name = "suggested_reorder_point")
+    private Integer suggestedReorderPoint;
+
+    @Column(name = "days_to_stockout")
+    private Double daysToStockout;
+
+    @Column(name = "computed_at", nullable = false)
+    private LocalDateTime computedAt;
+
+    public StockForecast() {
+    }
+
+    public Integer getProductId() {
+        return productId;
+    }
+
+    public Double getDailyVelocity() {
+        return dailyVelocity;
+    }
+
+    public Double getDailyDeviation() {
+        return dailyDeviation;
+    }
+
+    public Long getUnitsInWindow() {
+        return unitsInWindow;
+    }
+
+    public Integer getAvailableQuantity() {
+        return availableQuantity;
+    }
+
+    public Integer getCurrentReorderPoint() {
+        return currentReorderPoint;
+    }
+
+    public Integer getSuggestedReorderPoint() {
+        return suggestedReorderPoint;
+    }
+
+    public Double getDaysToStockout() {
+        return daysToStockout;
+    }
+
+    public LocalDateTime getComputedAt() {
+        return computedAt;
+    }
+
+    public void setProductId(Integer productId) {
+        this.productId = productId;
+    }
+
+    public void setDailyVelocity(Double dailyVelocity) {
+        this.dailyVelocity = dailyVelocity;
+    }
+
+    public void setDailyDeviation(Double dailyDeviation) {
+        this.dailyDeviation = dailyDeviation;
+    }
+
+    public void setUnitsInWindow(Long unitsInWindow) {
+        this.unitsInWindow = unitsInWindow;
+    }
+
+    public void setAvailableQuantity(Integer availableQuantity) {
+        this.availableQuantity = availableQuantity;
+    }
+
+    public void setCurrentReorderPoint(Integer currentReorderPoint) {
+        this.currentReorderPoint = currentReorderPoint;
+    }
+
+    public void setSuggestedReorderPoint(Integer suggestedReorderPoint) {
+        this.suggestedReorderPoint = suggestedReorderPoint;
+    }
+
+    public void setDaysToStockout(Double daysToStockout) {
+        this.daysToStockout = daysToStockout;
+    }
+
+    public void setComputedAt(LocalDateTime computedAt) {
+        this.computedAt = computedAt;
+    }
+
+    public String toString() {
+        return "StockForecast(productId=" + productId + ", dailyVelocity=" + dailyVelocity + ", dailyDeviation=" + dailyDeviation + ", unitsInWindow=" + unitsInWindow + ", availableQuantity=" + availableQuantity + ", currentReorderPoint=" + currentReorderPoint + ", suggestedReorderPoint=" + suggestedReorderPoint + ", daysToStockout=" + daysToStockout + ", computedAt=" + computedAt + ")";
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.assignment_three_zelora.model.entitys;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+
+/**
+ * Highest stock journal sequence number whose delta is already in the inventory table.
+ * Written in the same transaction as each write-behind batch, so replay after a crash
+ * applies every journaled reservation exactly once.
+ */
+@Entity
+@Table(name = "stock_journal_checkpoint")
+public class StockJournalCheckpoint implements Serializable {
+
+    public static final int SINGLETON_ID = 1;
+
+    @Id
+    @Column(name = "checkpoint_id")
+    private Integer checkpointId;
+
+    @Column(name = "last_seq", nullable = false)
+    private Long lastSeq;
+
+    public StockJournalCheckpoint(Integer checkpointId, Long lastSeq) {
+        this.checkpointId = checkpointId;
+        this.lastSeq = lastSeq;
+    }
+
+    public StockJournalCheckpoint() {
+    }
+
+    public Integer getCheckpointId() {
+        return this.checkpointId;
+    }
+
+    public Long getLastSeq() {
+        return this.lastSeq;
+    }
+
+    public void setCheckpointId(Integer checkpointId) {
+        this.checkpointId = checkpointId;
+    }
+
+    public void setLastSeq(Long lastSeq) {
+        this.lastSeq = lastSeq;
+    }
+
+    public String toString() {
+        return "StockJournalCheckpoint(checkpointId=" + this.getCheckpointId() + ", lastSeq=" + this.getLastSeq() + ")";
+    }
+}
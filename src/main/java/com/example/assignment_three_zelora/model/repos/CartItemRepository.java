@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,6 +21,22 @@ public interface CartItemRepository extends JpaRepository<CartItem, Integer> {
     @Query("SELECT c FROM CartItem c WHERE c.userId = :userId AND c.productId.productId = :productId")
     Optional<CartItem> findByUserIdAndProductId(@Param("userId") Integer userId, @Param("productId") Integer productId);
     
+    // cartItemId, productId, quantity, price, reservedQuantity, reservedUntil, productName, description, featureImage
+    // for every line of a cart, product columns joined in so nothing is lazy-loaded afterwards
+    @Query("SELECT c.cartItemId, p.productId, c.quantity, c.price, c.reservedQuantity, c.reservedUntil, " +
+           "p.productName, p.description, p.featureImage FROM CartItem c JOIN c.productId p " +
+           "WHERE c.userId = :userId ORDER BY c.cartItemId")
+    List<Object[]> findCartRows(@Param("userId") Integer userId);
+    
+    // Cart total computed by the database
+    @Query("SELECT COALESCE(SUM(c.price * c.quantity), 0) FROM CartItem c WHERE c.userId = :userId")
+    BigDecimal sumCartTotal(@Param("userId") Integer userId);
+    
+    // cartItemId, productId, reservedQuantity, reservedUntil, userId for every line holding stock
+    @Query("SELECT c.cartItemId, c.productId.productId, c.reservedQuantity, c.reservedUntil, c.userId FROM CartItem c " +
+           "WHERE c.reservedQuantity > 0")
+    List<Object[]> findActiveHolds();
+    
     // Delete a specific item from user's cart
     @Transactional
     @Modifying
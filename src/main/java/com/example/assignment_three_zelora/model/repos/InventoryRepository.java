@@ -1,7 +1,10 @@
 package com.example.assignment_three_zelora.model.repos;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import com.example.assignment_three_zelora.model.entitys.Inventory;
 import com.example.assignment_three_zelora.model.entitys.Product;
 
@@ -12,11 +15,24 @@ public interface InventoryRepository extends JpaRepository<Inventory, Integer> {
     // Find inventory by product (returns list to handle potential duplicates)
     List<Inventory> findByProductId(Product productId);
     
-    // Find all low stock items (quantity <= reorder point)
-    @Query("SELECT i FROM Inventory i WHERE i.quantityInStock <= i.reorderPoint")
+    // Find all low stock items (0 < available <= reorder point, available = in stock - reserved)
+    @Query("SELECT i FROM Inventory i WHERE COALESCE(i.quantityInStock, 0) - COALESCE(i.quantityReserved, 0) > 0 " +
+           "AND COALESCE(i.quantityInStock, 0) - COALESCE(i.quantityReserved, 0) <= i.reorderPoint")
     List<Inventory> findLowStockItems();
     
-    // Find out of stock items
-    @Query("SELECT i FROM Inventory i WHERE i.quantityInStock <= 0")
+    // Find out of stock items (nothing available once reservations are taken out)
+    @Query("SELECT i FROM Inventory i WHERE COALESCE(i.quantityInStock, 0) - COALESCE(i.quantityReserved, 0) <= 0")
     List<Inventory> findOutOfStockItems();
+    
+    // Flat rows for loading the stock ledger:
+    // inventoryId, productId, productName, supplierId, quantityInStock, quantityReserved, reorderPoint
+    @Query("SELECT i.inventoryId, p.productId, p.productName, s.supplierId, i.quantityInStock, i.quantityReserved, i.reorderPoint " +
+           "FROM Inventory i LEFT JOIN i.productId p LEFT JOIN i.supplierId s ORDER BY i.inventoryId")
+    List<Object[]> findLedgerRows();
+    
+    // Change only the reorder point, leaving quantities to the stock ledger
+    @Transactional
+    @Modifying
+    @Query("UPDATE Inventory i SET i.reorderPoint = :reorderPoint, i.version = i.version + 1 WHERE i.inventoryId = :inventoryId")
+    int updateReorderPoint(@Param("inventoryId") Integer inventoryId, @Param("reorderPoint") Integer reorderPoint);
 }
@@ -2,6 +2,7 @@ package com.example.assignment_three_zelora.model.repos;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import com.example.assignment_three_zelora.model.entitys.Orderitem;
 import com.example.assignment_three_zelora.model.entitys.Orders;
 import java.util.List;
@@ -11,4 +12,8 @@ public interface OrderItemRepository extends JpaRepository<Orderitem, Integer> {
     
     @Query("SELECT COALESCE(MAX(o.orderItemId), 0) FROM Orderitem o")
     Integer findMaxOrderItemId();
+    
+    // productId, quantity for each line of an order
+    @Query("SELECT o.productId.productId, o.quantity FROM Orderitem o WHERE o.orderId.orderId = :orderId")
+    List<Object[]> findQuantitiesByOrderId(@Param("orderId") Integer orderId);
 }
@@ -1,14 +1,84 @@
 package com.example.assignment_three_zelora.model.repos;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import com.example.assignment_three_zelora.model.entitys.Orders;
 import com.example.assignment_three_zelora.model.entitys.Customer;
+import com.example.assignment_three_zelora.dto.OrderSummaryDto;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
 public interface OrdersRepository extends JpaRepository<Orders, Integer> {
     List<Orders> findByCustomerId(Customer customer);
     
     @Query("SELECT COALESCE(MAX(o.orderId), 0) FROM Orders o")
     Integer findMaxOrderId();
+    
+    // Load a single order with its customer, line items and their products in one query
+    @EntityGraph("Orders.full")
+    @Query("SELECT o FROM Orders o WHERE o.orderId = :orderId")
+    Optional<Orders> findFullById(@Param("orderId") Integer orderId);
+    
+    // Keyset page of order summaries, newest first (status filter uses idx_order_status)
+    @Query("SELECT new com.example.assignment_three_zelora.dto.OrderSummaryDto(" +
+           "o.orderId, o.orderDate, o.orderStatus, o.totalAmount, c.customerId, c.firstName, c.lastName, " +
+           "(SELECT COUNT(i) FROM Orderitem i WHERE i.orderId = o)) " +
+           "FROM Orders o LEFT JOIN o.customerId c " +
+           "WHERE (:status IS NULL OR o.orderStatus = :status) " +
+           "AND (:fromDate IS NULL OR o.orderDate >= :fromDate) " +
+           "AND (:toDate IS NULL OR o.orderDate <= :toDate) " +
+           "AND (:beforeId IS NULL OR o.orderId < :beforeId) " +
+           "ORDER BY o.orderId DESC")
+    List<OrderSummaryDto> findSummaries(@Param("status") String status,
+                                        @Param("fromDate") Date fromDate,
+                                        @Param("toDate") Date toDate,
+                                        @Param("beforeId") Integer beforeId,
+                                        Limit limit);
+    
+    // Keyset page of one customer's order summaries, newest first (uses idx_customer_id_orders)
+    @Query("SELECT new com.example.assignment_three_zelora.dto.OrderSummaryDto(" +
+           "o.orderId, o.orderDate, o.orderStatus, o.totalAmount, c.customerId, c.firstName, c.lastName, " +
+           "(SELECT COUNT(i) FROM Orderitem i WHERE i.orderId = o)) " +
+           "FROM Orders o JOIN o.customerId c " +
+           "WHERE c.customerId = :customerId " +
+           "AND (:status IS NULL OR o.orderStatus = :status) " +
+           "AND (:fromDate IS NULL OR o.orderDate >= :fromDate) " +
+           "AND (:toDate IS NULL OR o.orderDate <= :toDate) " +
+           "AND (:beforeId IS NULL OR o.orderId < :beforeId) " +
+           "ORDER BY o.orderId DESC")
+    List<OrderSummaryDto> findSummariesByCustomer(@Param("customerId") Integer customerId,
+                                                  @Param("status") String status,
+                                                  @Param("fromDate") Date fromDate,
+                                                  @Param("toDate") Date toDate,
+                                                  @Param("beforeId") Integer beforeId,
+                                                  Limit limit);
+    
+    // Flat sales lines for one order: orderId, placedAt, orderDate, orderStatus, totalAmount, productId, categoryId, subtotal, quantity
+    @Query("SELECT o.orderId, o.placedAt, o.orderDate, o.orderStatus, o.totalAmount, p.productId, c.categoryId, i.subtotal, i.quantity " +
+           "FROM Orders o LEFT JOIN o.orderitemList i LEFT JOIN i.productId p LEFT JOIN p.categoryId c " +
+           "WHERE o.orderId = :orderId")
+    List<Object[]> findSalesLinesByOrderId(@Param("orderId") Integer orderId);
+    
+    // Same columns for every order placed on one day, grouped by order
+    @Query("SELECT o.orderId, o.placedAt, o.orderDate, o.orderStatus, o.totalAmount, p.productId, c.categoryId, i.subtotal, i.quantity " +
+           "FROM Orders o LEFT JOIN o.orderitemList i LEFT JOIN i.productId p LEFT JOIN p.categoryId c " +
+           "WHERE o.orderDate = :day ORDER BY o.orderId")
+    List<Object[]> findSalesLinesByOrderDate(@Param("day") Date day);
+    
+    // Lock a chunk of orders and read their current status: orderId, customerId, orderStatus
+    @Query(value = "SELECT order_id, customer_id, order_status FROM orders WHERE order_id IN (:ids) FOR UPDATE", nativeQuery = true)
+    List<Object[]> lockStatusesByIds(@Param("ids") Collection<Integer> ids);
+    
+    // Set-based status change, only for orders whose current status allows the transition
+    @Modifying
+    @Query("UPDATE Orders o SET o.orderStatus = :status, o.version = o.version + 1 WHERE o.orderId IN :ids AND o.orderStatus IN :fromStatuses")
+    int updateStatusWhereAllowed(@Param("ids") Collection<Integer> ids,
+                                 @Param("status") String status,
+                                 @Param("fromStatuses") Collection<String> fromStatuses);
 }
@@ -2,9 +2,12 @@ package com.example.assignment_three_zelora.model.repos;
 
 import com.example.assignment_three_zelora.model.entitys.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -35,4 +38,18 @@ public interface ProductRepository extends JpaRepository<Product, Integer> {
     // Get random products for suggestions (limited)
     @Query(value = "SELECT * FROM products ORDER BY RAND() LIMIT :limit", nativeQuery = true)
     List<Product> findRandomProducts(@Param("limit") int limit);
-}
\ No newline at end of file
+    
+    // Price table rows in one batch: productId, price, discountedPrice, unit weight (kg, null if unknown)
+    @Query("SELECT p.productId, p.price, p.discountedPrice, p.weight FROM Product p WHERE p.productId IN :ids")
+    List<Object[]> findPriceRows(@Param("ids") Collection<Integer> ids);
+    
+    // Seed unknown product weights from the weights recorded on past order items. Rows of exactly
+    // 0.50 kg are skipped: checkout used to store its 500 g fallback there as if it were measured.
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE products p SET weight = (SELECT AVG(i.item_weight) FROM orderitems i " +
+                   "WHERE i.product_id = p.product_id AND i.item_weight IS NOT NULL AND i.item_weight <> 0.50) " +
+                   "WHERE p.weight IS NULL AND p.product_id IN (SELECT i.product_id FROM orderitems i " +
+                   "WHERE i.item_weight IS NOT NULL AND i.item_weight <> 0.50)", nativeQuery = true)
+    int backfillWeightsFromOrderHistory();
+}
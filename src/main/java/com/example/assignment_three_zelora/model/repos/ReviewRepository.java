@@ -1,16 +1,27 @@
 package com.example.assignment_three_zelora.model.repos;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import com.example.assignment_three_zelora.model.entitys.Review;
 import com.example.assignment_three_zelora.model.entitys.Product;
 import com.example.assignment_three_zelora.model.entitys.Customer;
+import com.example.assignment_three_zelora.dto.ReviewDto;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 public interface ReviewRepository extends JpaRepository<Review, Integer> {
     
+    String VISIBLE_REVIEW_DTO = "SELECT new com.example.assignment_three_zelora.dto.ReviewDto(" +
+            "r.reviewId, p.productId, p.productName, c.customerId, c.firstName, c.city, " +
+            "r.rating, r.reviewText, r.reviewDate, r.flaggedAsSpam, r.helpfulCount) " +
+            "FROM Review r JOIN r.productId p LEFT JOIN r.customerId c " +
+            "WHERE p.productId = :productId AND r.rating >= :minRating AND COALESCE(r.flaggedAsSpam, false) = false ";
+    
     // Find reviews by product
     List<Review> findByProductId(Product productId);
     
@@ -20,6 +31,10 @@ public interface ReviewRepository extends JpaRepository<Review, Integer> {
     // Find reviews by product with rating greater than or equal to minimum rating
     List<Review> findByProductIdAndRatingGreaterThanEqual(Product productId, Integer minRating);
     
+    // Whether a customer has already reviewed a product; a single probe of uk_reviews_product_customer
+    @Query("SELECT COUNT(r) > 0 FROM Review r WHERE r.productId.productId = :productId AND r.customerId.customerId = :customerId")
+    boolean existsByProductAndCustomer(@Param("productId") Integer productId, @Param("customerId") Integer customerId);
+    
     // Get average rating for a product
     @Query("SELECT AVG(r.rating) FROM Review r WHERE r.productId.productId = :productId AND COALESCE(r.flaggedAsSpam, false) = false AND r.rating IS NOT NULL")
     Double getAverageRatingByProductId(@Param("productId") Integer productId);
@@ -28,6 +43,77 @@ public interface ReviewRepository extends JpaRepository<Review, Integer> {
     @Query("SELECT COUNT(r) FROM Review r WHERE r.productId.productId = :productId AND COALESCE(r.flaggedAsSpam, false) = false")
     Long getReviewCountByProductId(@Param("productId") Integer productId);
     
+    // Keyset page of a product's visible reviews, newest first; undated reviews come last (uses idx_reviews_product_date)
+    @Query(VISIBLE_REVIEW_DTO +
+           "AND (:afterId IS NULL " +
+           "OR (:afterDate IS NOT NULL AND (r.reviewDate < :afterDate OR r.reviewDate IS NULL " +
+           "OR (r.reviewDate = :afterDate AND r.reviewId < :afterId))) " +
+           "OR (:afterDate IS NULL AND r.reviewDate IS NULL AND r.reviewId < :afterId)) " +
+           "ORDER BY r.reviewDate DESC NULLS LAST, r.reviewId DESC")
+    List<ReviewDto> findVisibleByProductNewest(@Param("productId") Integer productId,
+                                               @Param("minRating") Integer minRating,
+                                               @Param("afterDate") Date afterDate,
+                                               @Param("afterId") Integer afterId,
+                                               Limit limit);
+    
+    // Keyset page of a product's visible reviews, highest rating first (uses idx_reviews_product_rating)
+    @Query(VISIBLE_REVIEW_DTO +
+           "AND (:afterId IS NULL OR r.rating < :afterRating OR (r.rating = :afterRating AND r.reviewId < :afterId)) " +
+           "ORDER BY r.rating DESC, r.reviewId DESC")
+    List<ReviewDto> findVisibleByProductTopRated(@Param("productId") Integer productId,
+                                                 @Param("minRating") Integer minRating,
+                                                 @Param("afterRating") Integer afterRating,
+                                                 @Param("afterId") Integer afterId,
+                                                 Limit limit);
+    
+    // Keyset page of a product's visible reviews, most helpful first (uses idx_reviews_product_helpful)
+    @Query(VISIBLE_REVIEW_DTO +
+           "AND (:afterId IS NULL OR r.helpfulCount < :afterHelpful OR (r.helpfulCount = :afterHelpful AND r.reviewId < :afterId)) " +
+           "ORDER BY r.helpfulCount DESC, r.reviewId DESC")
+    List<ReviewDto> findVisibleByProductMostHelpful(@Param("productId") Integer productId,
+                                                    @Param("minRating") Integer minRating,
+                                                    @Param("afterHelpful") Integer afterHelpful,
+                                                    @Param("afterId") Integer afterId,
+                                                    Limit limit);
+    
+    // Count of the reviews the paged queries above can return
+    @Query("SELECT COUNT(r) FROM Review r WHERE r.productId.productId = :productId AND r.rating >= :minRating AND COALESCE(r.flaggedAsSpam, false) = false")
+    long countVisibleByProduct(@Param("productId") Integer productId, @Param("minRating") Integer minRating);
+    
+    // Record one "helpful" vote without loading the review
+    @Modifying
+    @Query("UPDATE Review r SET r.helpfulCount = r.helpfulCount + 1 WHERE r.reviewId = :reviewId")
+    int incrementHelpfulCount(@Param("reviewId") Integer reviewId);
+    
+    // Rating sum, rated review count and review count for a product's non-spam reviews, as one row
+    @Query("SELECT COALESCE(SUM(r.rating), 0), COUNT(r.rating), COUNT(r) FROM Review r WHERE r.productId.productId = :productId AND COALESCE(r.flaggedAsSpam, false) = false")
+    List<Object[]> getRatingAggregateByProductId(@Param("productId") Integer productId);
+    
+    // Ids of reviews by a customer and/or within a review date range, for bulk moderation
+    @Query("SELECT r.reviewId FROM Review r " +
+           "WHERE (:customerId IS NULL OR r.customerId.customerId = :customerId) " +
+           "AND (:fromDate IS NULL OR r.reviewDate >= :fromDate) " +
+           "AND (:toDate IS NULL OR r.reviewDate <= :toDate) " +
+           "ORDER BY r.reviewId")
+    List<Integer> findIdsForModeration(@Param("customerId") Integer customerId,
+                                       @Param("fromDate") Date fromDate,
+                                       @Param("toDate") Date toDate,
+                                       Limit limit);
+    
+    // Lock a chunk of reviews and read what bulk moderation needs: reviewId, productId, flaggedAsSpam
+    @Query(value = "SELECT review_id, product_id, flagged_as_spam FROM reviews WHERE review_id IN (:ids) FOR UPDATE", nativeQuery = true)
+    List<Object[]> lockModerationStateByIds(@Param("ids") Collection<Integer> ids);
+    
+    // Set-based spam flag, skipping reviews that are already flagged
+    @Modifying
+    @Query("UPDATE Review r SET r.flaggedAsSpam = true WHERE r.reviewId IN :ids AND COALESCE(r.flaggedAsSpam, false) = false")
+    int flagAsSpamByIds(@Param("ids") Collection<Integer> ids);
+    
+    // Set-based delete of a chunk of reviews
+    @Modifying
+    @Query("DELETE FROM Review r WHERE r.reviewId IN :ids")
+    int deleteAllByIds(@Param("ids") Collection<Integer> ids);
+    
     // Get max review ID for auto-increment
     @Query("SELECT COALESCE(MAX(r.reviewId), 0) FROM Review r")
     Integer findMaxReviewId();
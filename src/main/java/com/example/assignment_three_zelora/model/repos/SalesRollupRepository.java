@@ -0,0 +1,28 @@
+package com.example.assignment_three_zelora.model.repos;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import com.example.assignment_three_zelora.model.entitys.SalesRollup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface SalesRollupRepository extends JpaRepository<SalesRollup, Long> {
+    
+    // Range read served by the uk_sales_rollup_bucket index
+    @Query("SELECT r FROM SalesRollup r WHERE r.granularity = :granularity AND r.dimension = :dimension " +
+           "AND r.dimensionId = :dimensionId AND r.bucketStart >= :fromTime AND r.bucketStart < :toTime " +
+           "ORDER BY r.bucketStart")
+    List<SalesRollup> findSeries(@Param("granularity") String granularity,
+                                 @Param("dimension") String dimension,
+                                 @Param("dimensionId") Integer dimensionId,
+                                 @Param("fromTime") LocalDateTime fromTime,
+                                 @Param("toTime") LocalDateTime toTime);
+    
+    // Clear every rollup bucket inside a time range (used before a backfill)
+    @Modifying
+    @Query("DELETE FROM SalesRollup r WHERE r.bucketStart >= :fromTime AND r.bucketStart < :toTime")
+    int deleteRange(@Param("fromTime") LocalDateTime fromTime, @Param("toTime") LocalDateTime toTime);
+}
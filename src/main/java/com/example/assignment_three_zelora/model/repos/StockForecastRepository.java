@@ -0,0 +1,23 @@
+package com.example.assignment_three_zelora.model.repos;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import com.example.assignment_three_zelora.model.entitys.StockForecast;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface StockForecastRepository extends JpaRepository<StockForecast, Integer> {
+    
+    // Soonest stockouts first; products that are not selling go last
+    @Query("SELECT f FROM StockForecast f ORDER BY CASE WHEN f.daysToStockout IS NULL THEN 1 ELSE 0 END, " +
+           "f.daysToStockout, f.productId")
+    List<StockForecast> findAllByUrgency();
+    
+    // Drop forecasts a newer run did not rewrite (product no longer stocked)
+    @Modifying
+    @Query("DELETE FROM StockForecast f WHERE f.computedAt < :runStartedAt")
+    int deleteOlderThan(@Param("runStartedAt") LocalDateTime runStartedAt);
+}
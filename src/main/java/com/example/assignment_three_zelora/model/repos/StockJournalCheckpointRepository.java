@@ -0,0 +1,15 @@
+package com.example.assignment_three_zelora.model.repos;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import com.example.assignment_three_zelora.model.entitys.StockJournalCheckpoint;
+
+public interface StockJournalCheckpointRepository extends JpaRepository<StockJournalCheckpoint, Integer> {
+    
+    // Advance the checkpoint (called inside the write-behind transaction)
+    @Modifying
+    @Query("UPDATE StockJournalCheckpoint c SET c.lastSeq = :lastSeq WHERE c.checkpointId = :checkpointId")
+    int updateLastSeq(@Param("checkpointId") Integer checkpointId, @Param("lastSeq") Long lastSeq);
+}
@@ -0,0 +1,303 @@
+package com.example.assignment_three_zelora.model.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Deletes carts nobody has touched for ttl-days.
+ * Candidates come from a keyset range scan over the (last_modified, user_id) index, a
+ * page of chunk-size rows at a time. Each page is deleted in its own short transaction,
+ * under the cart cache's per-user locks, with pause-ms between pages so the sweep never
+ * holds locks for long. A cart counts as abandoned only when every line is older than
+ * the cutoff and none of them holds stock. When export-dir is set, deleted lines are
+ * first appended to a gzipped CSV file for marketing.
+ * Sweeps run on their own thread so the pauses never delay the cart write-back.
+ */
+@Service
+public class AbandonedCartSweeper {
+
+    private static final String BACKFILL_SQL =
+            "UPDATE cart_items SET last_modified = ? WHERE last_modified IS NULL LIMIT ?";
+
+    // Range scan in index order, resuming after the last (last_modified, user_id) seen
+    private static final String CANDIDATES_SQL =
+            "SELECT user_id, last_modified FROM cart_items WHERE last_modified < ? " +
+            "AND (last_modified > ? OR (last_modified = ? AND user_id > ?)) " +
+            "ORDER BY last_modified, user_id LIMIT ?";
+
+    private final CartCache cartCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long ttlMs;
+    private final int chunkSize;
+    private final long pauseMs;
+    private final String exportDir;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "abandoned-cart-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder totalCartsDeleted = new LongAdder();
+    private final LongAdder totalRowsDeleted = new LongAdder();
+    private final LongAdder totalRowsExported = new LongAdder();
+    private volatile Progress current;
+    private volatile Progress lastRun;
+
+    /**
+     * Counters for one sweep, readable while it runs.
+     */
+    private static final class Progress {
+        final long startedAt = System.currentTimeMillis();
+        volatile long finishedAt;
+        volatile long backfilled;
+        volatile long rowsScanned;
+        volatile long usersConsidered;
+        volatile long usersSkipped;
+        volatile long cartsDeleted;
+        volatile long rowsDeleted;
+        volatile long rowsExported;
+        volatile int chunks;
+        volatile String exportFile;
+        volatile String error;
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("startedAt", new Date(startedAt));
+            map.put("finishedAt", finishedAt > 0 ? new Date(finishedAt) : null);
+            map.put("durationMs", (finishedAt > 0 ? finishedAt : System.currentTimeMillis()) - startedAt);
+            map.put("backfilled", backfilled);
+            map.put("rowsScanned", rowsScanned);
+            map.put("usersConsidered", usersConsidered);
+            map.put("usersSkipped", usersSkipped);
+            map.put("cartsDeleted", cartsDeleted);
+            map.put("rowsDeleted", rowsDeleted);
+            map.put("rowsExported", rowsExported);
+            map.put("chunks", chunks);
+            map.put("exportFile", exportFile);
+            map.put("error", error);
+            return map;
+        }
+    }
+
+    public AbandonedCartSweeper(CartCache cartCache,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${zelora.cart.sweeper.ttl-days:30}") int ttlDays,
+                                @Value("${zelora.cart.sweeper.chunk-size:100}") int chunkSize,
+                                @Value("${zelora.cart.sweeper.pause-ms:200}") long pauseMs,
+                                @Value("${zelora.cart.sweeper.export-dir:}") String exportDir) {
+        if (ttlDays < 1 || chunkSize < 1 || chunkSize > 1000) {
+            throw new IllegalArgumentException("Cart sweeper needs ttl-days >= 1 and 1 <= chunk-size <= 1000");
+        }
+        this.cartCache = cartCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttlMs = ttlDays * 86_400_000L;
+        this.chunkSize = chunkSize;
+        this.pauseMs = Math.max(0, pauseMs);
+        this.exportDir = exportDir != null && !exportDir.isBlank() ? exportDir : null;
+    }
+
+    @Scheduled(cron = "${zelora.cart.sweeper.cron:0 15 4 * * *}")
+    public void scheduledRun() {
+        start();
+    }
+
+    // Start a sweep in the background; false if one is already running
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Progress progress = new Progress();
+        current = progress;
+        executor.execute(() -> {
+            try {
+                sweep(progress);
+            } catch (Exception e) {
+                failures.increment();
+                progress.error = e.getMessage();
+                System.err.println("Abandoned cart sweep failed: " + e.getMessage());
+            } finally {
+                progress.finishedAt = System.currentTimeMillis();
+                lastRun = progress;
+                current = null;
+                runs.increment();
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", running.get());
+        stats.put("ttlDays", ttlMs / 86_400_000L);
+        stats.put("chunkSize", chunkSize);
+        stats.put("pauseMs", pauseMs);
+        stats.put("exportEnabled", exportDir != null);
+        stats.put("runs", runs.sum());
+        stats.put("failures", failures.sum());
+        stats.put("totalCartsDeleted", totalCartsDeleted.sum());
+        stats.put("totalRowsDeleted", totalRowsDeleted.sum());
+        stats.put("totalRowsExported", totalRowsExported.sum());
+        Progress now = current;
+        Progress last = lastRun;
+        stats.put("current", now != null ? now.toMap() : null);
+        stats.put("lastRun", last != null ? last.toMap() : null);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void sweep(Progress progress) throws IOException, InterruptedException {
+        long cutoffMs = System.currentTimeMillis() - ttlMs;
+        Timestamp cutoff = new Timestamp(cutoffMs);
+
+        // Lines written before last_modified existed start their TTL now
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        int touched;
+        do {
+            touched = jdbcTemplate.update(BACKFILL_SQL, now, chunkSize);
+            progress.backfilled += touched;
+            pause();
+        } while (touched >= chunkSize);
+
+        Writer export = null;
+        try {
+            Timestamp afterTime = new Timestamp(0);
+            int afterUser = Integer.MIN_VALUE;
+            Set<Integer> considered = new HashSet<>();
+            while (true) {
+                List<Object[]> page = new ArrayList<>(chunkSize);
+                jdbcTemplate.query(CANDIDATES_SQL, rs -> {
+                    page.add(new Object[]{rs.getInt(1), rs.getTimestamp(2)});
+                }, cutoff, afterTime, afterTime, afterUser, chunkSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+                progress.rowsScanned += page.size();
+                Object[] last = page.get(page.size() - 1);
+                afterUser = (Integer) last[0];
+                afterTime = (Timestamp) last[1];
+
+                List<Integer> users = new ArrayList<>();
+                for (Object[] row : page) {
+                    if (considered.add((Integer) row[0])) {
+                        users.add((Integer) row[0]);
+                    }
+                }
+                if (users.isEmpty()) {
+                    continue;
+                }
+                if (exportDir != null && export == null) {
+                    export = openExport(progress);
+                }
+                Writer out = export;
+                long[] rows = {0};
+                Collection<Integer> deleted = cartCache.discard(users, cutoffMs,
+                        idle -> transactionTemplate.execute(tx -> deleteAbandoned(idle, cutoff, out, progress, rows)));
+                progress.chunks++;
+                progress.usersConsidered += users.size();
+                progress.usersSkipped += users.size() - deleted.size();
+                progress.cartsDeleted += deleted.size();
+                progress.rowsDeleted += rows[0];
+                totalCartsDeleted.add(deleted.size());
+                totalRowsDeleted.add(rows[0]);
+                pause();
+            }
+        } finally {
+            if (export != null) {
+                export.close();
+            }
+        }
+    }
+
+    // Runs with the carts locked: drop users with any recent or holding line, export and delete the rest
+    private Collection<Integer> deleteAbandoned(List<Integer> users, Timestamp cutoff, Writer export,
+                                               Progress progress, long[] rows) {
+        String in = placeholders(users.size());
+        List<Object> args = new ArrayList<>(users.size() + 1);
+        args.addAll(users);
+        args.add(cutoff);
+        Set<Integer> abandoned = new TreeSet<>(users);
+        abandoned.removeAll(jdbcTemplate.queryForList(
+                "SELECT DISTINCT user_id FROM cart_items WHERE user_id IN " + in +
+                " AND (last_modified >= ? OR last_modified IS NULL OR reserved_quantity > 0)",
+                Integer.class, args.toArray()));
+        if (abandoned.isEmpty()) {
+            return abandoned;
+        }
+        Object[] ids = abandoned.toArray();
+        String idList = placeholders(ids.length);
+        if (export != null) {
+            long[] exported = {0};
+            jdbcTemplate.query("SELECT user_id, product_id, quantity, price, last_modified FROM cart_items " +
+                    "WHERE user_id IN " + idList + " ORDER BY user_id, cart_item_id", rs -> {
+                try {
+                    export.write(rs.getInt(1) + "," + rs.getInt(2) + "," + rs.getInt(3) + ","
+                            + rs.getBigDecimal(4) + "," + rs.getTimestamp(5) + "\n");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                exported[0]++;
+            }, ids);
+            progress.rowsExported += exported[0];
+            totalRowsExported.add(exported[0]);
+        }
+        rows[0] = jdbcTemplate.update("DELETE FROM cart_items WHERE user_id IN " + idList, ids);
+        return abandoned;
+    }
+
+    private Writer openExport(Progress progress) throws IOException {
+        Path dir = Paths.get(exportDir);
+        Files.createDirectories(dir);
+        String name = "abandoned-carts-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(progress.startedAt)) + ".csv.gz";
+        Path file = dir.resolve(name);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(file)), StandardCharsets.UTF_8));
+        writer.write("user_id,product_id,quantity,price,last_modified\n");
+        progress.exportFile = file.toString();
+        return writer;
+    }
+
+    private void pause() throws InterruptedException {
+        if (pauseMs > 0) {
+            Thread.sleep(pauseMs);
+        }
+    }
+
+    private static String placeholders(int n) {
+        StringJoiner joiner = new StringJoiner(", ", "(", ")");
+        for (int i = 0; i < n; i++) {
+            joiner.add("?");
+        }
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,797 @@
+package com.example.assignment_three_zelora.model.service;
+
+import com.example.assignment_three_zelora.dto.CartItemResponse;
+import com.example.assignment_three_zelora.model.entitys.CartItem;
+import com.example.assignment_three_zelora.model.entitys.Product;
+import com.example.assignment_three_zelora.model.repos.CartItemRepository;
+import com.example.assignment_three_zelora.model.repos.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Per-user carts held in memory, so cart reads never touch the database.
+ * Quantity and hold changes are marked dirty and written back by a flusher that
+ * coalesces everything a user did since the last pass into one row write per line;
+ * checkout flushes the buyer's cart synchronously first. New lines are still inserted
+ * straight away, with a single upsert, because they need their generated id.
+ * Stock freed by a smaller hold or a removed line goes back to the ledger only after
+ * the row change is flushed, so a crash leaves stock over-reserved rather than oversold.
+ * Carts idle longer than idle-minutes, or the least recently used ones beyond
+ * max-carts, are dropped once they have nothing left to flush.
+ */
+@Service
+public class CartCache {
+
+    private static final String UPDATE_SQL =
+            "UPDATE cart_items SET quantity = ?, price = ?, reserved_quantity = ?, reserved_until = ?, last_modified = ? WHERE cart_item_id = ?";
+    private static final String DELETE_SQL = "DELETE FROM cart_items WHERE cart_item_id = ?";
+    // One round trip against unique_cart_item (user_id, product_id); LAST_INSERT_ID(expr) reports the id of a merged row too
+    private static final String UPSERT_SQL =
+            "INSERT INTO cart_items (user_id, product_id, quantity, price, reserved_quantity, reserved_until, last_modified) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE cart_item_id = LAST_INSERT_ID(cart_item_id), quantity = quantity + VALUES(quantity), " +
+            "reserved_quantity = VALUES(reserved_quantity), reserved_until = VALUES(reserved_until), " +
+            "last_modified = VALUES(last_modified)";
+
+    private final CartItemRepository cartItemRepository;
+    private final ProductRepository productRepository;
+    private final StockLedger stockLedger;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxCarts;
+    private final long idleMs;
+
+    private final Map<Integer, UserCart> carts = new ConcurrentHashMap<>();
+    // cartItemId -> userId for every cached line
+    private final Map<Integer, Integer> owners = new ConcurrentHashMap<>();
+    private final Set<Integer> dirtyUsers = ConcurrentHashMap.newKeySet();
+    // Product name, description and image shared by every cart holding the product
+    private final Map<Integer, CartItemResponse.ProductSummary> summaries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder mutations = new LongAdder();
+    private final LongAdder rowsUpdated = new LongAdder();
+    private final LongAdder rowsDeleted = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicLong lastFlushLagMs = new AtomicLong();
+    private final AtomicLong maxFlushLagMs = new AtomicLong();
+    // Bumped when an abandoned-cart sweep starts and ends, so a load that raced it is thrown away
+    private final AtomicLong discardEpoch = new AtomicLong();
+
+    /**
+     * One cart line, kept as plain numbers. reservedUntil is epoch millis, 0 when nothing is held.
+     */
+    public static final class Line {
+        private final int cartItemId;
+        private final int productId;
+        private int quantity;
+        private long priceMinor;
+        private int reservedQuantity;
+        private long reservedUntil;
+
+        Line(int cartItemId, int productId, int quantity, long priceMinor, int reservedQuantity, long reservedUntil) {
+            this.cartItemId = cartItemId;
+            this.productId = productId;
+            this.quantity = quantity;
+            this.priceMinor = priceMinor;
+            this.reservedQuantity = reservedQuantity;
+            this.reservedUntil = reservedUntil;
+        }
+
+        public int getCartItemId() {
+            return cartItemId;
+        }
+
+        public int getProductId() {
+            return productId;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public long getPriceMinor() {
+            return priceMinor;
+        }
+
+        public int getReservedQuantity() {
+            return reservedQuantity;
+        }
+
+        public long getReservedUntil() {
+            return reservedUntil;
+        }
+    }
+
+    /**
+     * A user's cart plus whatever has not been written back yet. Guarded by its own monitor.
+     */
+    public final class UserCart {
+        private final int userId;
+        private final List<Line> lines = new ArrayList<>();
+        private final Set<Line> dirty = new LinkedHashSet<>();
+        private final List<Line> removed = new ArrayList<>();
+        // Removed lines whose DELETE is being written back right now
+        private final List<Line> deleting = new ArrayList<>();
+        // {productId, quantity} to release once the pending changes are on disk
+        private final List<int[]> releases = new ArrayList<>();
+        private long dirtySince;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private boolean evicted;
+        // Empty stand-in installed by a sweep for a user who was not cached
+        private boolean placeholder;
+
+        UserCart(int userId) {
+            this.userId = userId;
+        }
+
+        public int getUserId() {
+            return userId;
+        }
+
+        public List<Line> getLines() {
+            return lines;
+        }
+
+        public Line findByProduct(int productId) {
+            for (Line line : lines) {
+                if (line.productId == productId) {
+                    return line;
+                }
+            }
+            return null;
+        }
+
+        public Line findById(int cartItemId) {
+            for (Line line : lines) {
+                if (line.cartItemId == cartItemId) {
+                    return line;
+                }
+            }
+            return null;
+        }
+
+        // Bring back a line removed since the last flush, so remove-then-add is a single update
+        public Line restore(int productId) {
+            for (Iterator<Line> it = removed.iterator(); it.hasNext(); ) {
+                Line line = it.next();
+                if (line.productId == productId) {
+                    it.remove();
+                    lines.add(line);
+                    return line;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Wait until no write-back is deleting this product's row. Until then an insert
+         * for the product would merge into a row that is about to disappear.
+         */
+        public void awaitDelete(int productId) {
+            awaitDeletes(List.of(productId));
+        }
+
+        public void awaitDeletes(Collection<Integer> productIds) {
+            while (isDeleting(productIds)) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted waiting for cart write-back");
+                }
+            }
+        }
+
+        private boolean isDeleting(Collection<Integer> productIds) {
+            for (Line line : deleting) {
+                if (productIds.contains(line.productId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public void setQuantity(Line line, int quantity) {
+            line.quantity = quantity;
+            markDirty(line);
+        }
+
+        // Reprice a line to the current catalog price
+        public void setPrice(Line line, long priceMinor) {
+            line.priceMinor = priceMinor;
+            markDirty(line);
+        }
+
+        public void setHold(Line line, int reservedQuantity, long reservedUntil) {
+            line.reservedQuantity = reservedQuantity;
+            line.reservedUntil = reservedQuantity > 0 ? reservedUntil : 0;
+            markDirty(line);
+        }
+
+        public void remove(Line line) {
+            if (lines.remove(line)) {
+                dirty.remove(line);
+                removed.add(line);
+                touch();
+            }
+        }
+
+        // Hand units back to the ledger after the next successful flush of this cart
+        public void releaseAfterFlush(int productId, int quantity) {
+            if (quantity > 0) {
+                releases.add(new int[]{productId, quantity});
+                touch();
+            }
+        }
+
+        private void markDirty(Line line) {
+            dirty.add(line);
+            touch();
+        }
+
+        private void touch() {
+            mutations.increment();
+            if (dirtySince == 0) {
+                dirtySince = System.currentTimeMillis();
+            }
+            dirtyUsers.add(userId);
+        }
+
+        private boolean isClean() {
+            return dirty.isEmpty() && removed.isEmpty() && releases.isEmpty() && deleting.isEmpty();
+        }
+    }
+
+    /**
+     * What one flush pass took from a cart, kept so it can be put back if the write fails.
+     */
+    private static final class Pending {
+        final UserCart cart;
+        final List<Line> updated;
+        final List<Line> removed;
+        final List<int[]> releases;
+        final long dirtySince;
+
+        Pending(UserCart cart) {
+            this.cart = cart;
+            this.updated = new ArrayList<>(cart.dirty);
+            this.removed = new ArrayList<>(cart.removed);
+            this.releases = new ArrayList<>(cart.releases);
+            this.dirtySince = cart.dirtySince;
+            cart.deleting.addAll(cart.removed);
+        }
+    }
+
+    public CartCache(CartItemRepository cartItemRepository,
+                     ProductRepository productRepository,
+                     StockLedger stockLedger,
+                     JdbcTemplate jdbcTemplate,
+                     PlatformTransactionManager transactionManager,
+                     @Value("${zelora.cart.cache.max-carts:100000}") int maxCarts,
+                     @Value("${zelora.cart.cache.idle-minutes:30}") long idleMinutes) {
+        this.cartItemRepository = cartItemRepository;
+        this.productRepository = productRepository;
+        this.stockLedger = stockLedger;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxCarts = Math.max(1, maxCarts);
+        this.idleMs = idleMinutes * 60_000L;
+    }
+
+    // Read a user's cart under its lock
+    public <T> T read(Integer userId, Function<UserCart, T> reader) {
+        return update(userId, reader);
+    }
+
+    // Change a user's cart under its lock, loading it on first use
+    public <T> T update(Integer userId, Function<UserCart, T> work) {
+        while (true) {
+            UserCart cart = acquire(userId);
+            synchronized (cart) {
+                if (cart.evicted) {
+                    continue;
+                }
+                cart.lastAccess = System.currentTimeMillis();
+                return work.apply(cart);
+            }
+        }
+    }
+
+    /**
+     * Insert a new line for a product the cart does not hold, under the cart's lock and
+     * after {@link UserCart#awaitDelete}. Should the row exist after all (written outside this cache) the quantities are
+     * added together and the hold columns replaced; the returned line then carries the
+     * merged quantity and the row's own price.
+     */
+    public Line insert(UserCart cart, int productId, int quantity, long priceMinor,
+                       int reservedQuantity, long reservedUntil) {
+        Timestamp until = reservedQuantity > 0 ? new Timestamp(reservedUntil) : null;
+        Line line = transactionTemplate.execute(tx -> {
+            int rows = jdbcTemplate.update(UPSERT_SQL, cart.userId, productId, quantity,
+                    ProductPriceCache.fromMinor(priceMinor), reservedQuantity, until, new Timestamp(System.currentTimeMillis()));
+            Integer id = jdbcTemplate.queryForObject("SELECT LAST_INSERT_ID()", Integer.class);
+            if (id == null) {
+                throw new IllegalStateException("Cart upsert returned no id");
+            }
+            if (rows > 1) {
+                return jdbcTemplate.queryForObject("SELECT quantity, price FROM cart_items WHERE cart_item_id = ?",
+                        (rs, n) -> new Line(id, productId, rs.getInt(1), ProductPriceCache.toMinor(rs.getBigDecimal(2)),
+                                reservedQuantity, reservedQuantity > 0 ? reservedUntil : 0), id);
+            }
+            return new Line(id, productId, quantity, priceMinor, reservedQuantity, reservedQuantity > 0 ? reservedUntil : 0);
+        });
+        cart.lines.add(line);
+        owners.put(line.cartItemId, cart.userId);
+        return line;
+    }
+
+    /**
+     * Batch form of {@link #insert}: every draft line (cartItemId 0) is upserted in one
+     * JDBC batch, and the ids and resulting quantities are read back with one query,
+     * all in one transaction. Lines come back in draft order.
+     */
+    public List<Line> insertAll(UserCart cart, List<Line> drafts) {
+        if (drafts.isEmpty()) {
+            return List.of();
+        }
+        List<Object[]> args = new ArrayList<>(drafts.size());
+        StringJoiner in = new StringJoiner(", ", "(", ")");
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object> selectArgs = new ArrayList<>(drafts.size() + 1);
+        selectArgs.add(cart.userId);
+        for (Line draft : drafts) {
+            args.add(new Object[]{cart.userId, draft.productId, draft.quantity, ProductPriceCache.fromMinor(draft.priceMinor),
+                    draft.reservedQuantity, draft.reservedQuantity > 0 ? new Timestamp(draft.reservedUntil) : null, now});
+            in.add("?");
+            selectArgs.add(draft.productId);
+        }
+        Map<Integer, Line> byProduct = transactionTemplate.execute(tx -> {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, args);
+            Map<Integer, Line> rows = new HashMap<>();
+            jdbcTemplate.query("SELECT cart_item_id, product_id, quantity, price FROM cart_items " +
+                            "WHERE user_id = ? AND product_id IN " + in, rs -> {
+                        rows.put(rs.getInt(2), new Line(rs.getInt(1), rs.getInt(2), rs.getInt(3),
+                                ProductPriceCache.toMinor(rs.getBigDecimal(4)), 0, 0));
+                    }, selectArgs.toArray());
+            return rows;
+        });
+        List<Line> lines = new ArrayList<>(drafts.size());
+        for (Line draft : drafts) {
+            Line row = byProduct.get(draft.productId);
+            if (row == null) {
+                throw new IllegalStateException("Cart upsert lost the line for product " + draft.productId);
+            }
+            Line line = new Line(row.cartItemId, row.productId, row.quantity, row.priceMinor,
+                    draft.reservedQuantity, draft.reservedQuantity > 0 ? draft.reservedUntil : 0);
+            cart.lines.add(line);
+            owners.put(line.cartItemId, cart.userId);
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    /**
+     * Delete abandoned carts. Every user's cart is locked first, in user id order; a user
+     * who is not cached gets an empty placeholder so nobody can load and add to the cart
+     * mid-delete. Cached carts with unsaved changes, live holds or use since idleSince are
+     * left out. delete runs for the rest with all locks held and returns the users whose
+     * rows it removed, which then leave the cache.
+     */
+    public Collection<Integer> discard(Collection<Integer> userIds, long idleSince,
+                                       Function<List<Integer>, Collection<Integer>> delete) {
+        List<Integer> sorted = new ArrayList<>(new TreeSet<>(userIds));
+        discardEpoch.incrementAndGet();
+        try {
+            return discardFrom(sorted, 0, new ArrayList<>(sorted.size()), idleSince, delete);
+        } finally {
+            discardEpoch.incrementAndGet();
+        }
+    }
+
+    private Collection<Integer> discardFrom(List<Integer> userIds, int index, List<UserCart> held, long idleSince,
+                                            Function<List<Integer>, Collection<Integer>> delete) {
+        if (index == userIds.size()) {
+            return deleteHeld(held, idleSince, delete);
+        }
+        Integer userId = userIds.get(index);
+        UserCart placeholder = new UserCart(userId);
+        placeholder.placeholder = true;
+        UserCart cart;
+        synchronized (placeholder) {
+            cart = carts.putIfAbsent(userId, placeholder);
+            if (cart == null) {
+                held.add(placeholder);
+                try {
+                    return discardFrom(userIds, index + 1, held, idleSince, delete);
+                } finally {
+                    placeholder.evicted = true;
+                    carts.remove(userId, placeholder);
+                }
+            }
+        }
+        synchronized (cart) {
+            if (!cart.evicted) {
+                held.add(cart);
+            }
+            return discardFrom(userIds, index + 1, held, idleSince, delete);
+        }
+    }
+
+    private Collection<Integer> deleteHeld(List<UserCart> held, long idleSince,
+                                           Function<List<Integer>, Collection<Integer>> delete) {
+        List<Integer> idle = new ArrayList<>(held.size());
+        for (UserCart cart : held) {
+            if (cart.placeholder || (cart.isClean() && cart.lastAccess < idleSince && !holdsStock(cart))) {
+                idle.add(cart.userId);
+            }
+        }
+        if (idle.isEmpty()) {
+            return List.of();
+        }
+        Collection<Integer> deleted = delete.apply(idle);
+        for (UserCart cart : held) {
+            if (!cart.placeholder && deleted.contains(cart.userId)) {
+                cart.evicted = true;
+                carts.remove(cart.userId, cart);
+                for (Line line : cart.lines) {
+                    owners.remove(line.cartItemId, cart.userId);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    // A lapsed hold does not pin the cart; expiry clears the row whether or not it is cached
+    private static boolean holdsStock(UserCart cart) {
+        long now = System.currentTimeMillis();
+        for (Line line : cart.lines) {
+            if (line.reservedQuantity > 0 && line.reservedUntil > now) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Read a user's cart only if it is already cached; null otherwise
+    public <T> T peek(Integer userId, Function<UserCart, T> reader) {
+        UserCart cart = carts.get(userId);
+        if (cart == null) {
+            return null;
+        }
+        synchronized (cart) {
+            if (cart.evicted) {
+                return null;
+            }
+            hits.increment();
+            return reader.apply(cart);
+        }
+    }
+
+    // The user a cart line belongs to, or null if there is no such line
+    public Integer ownerOf(Integer cartItemId) {
+        if (cartItemId == null) {
+            return null;
+        }
+        Integer userId = owners.get(cartItemId);
+        if (userId != null) {
+            return userId;
+        }
+        return cartItemRepository.findById(cartItemId).map(CartItem::getUserId).orElse(null);
+    }
+
+    public CartItemResponse toResponse(int userId, Line line) {
+        CartItemResponse.ProductSummary product = summaries.get(line.productId);
+        if (product == null) {
+            loadSummaries(List.of(line.productId));
+            product = summaries.getOrDefault(line.productId,
+                    new CartItemResponse.ProductSummary(line.productId, null, null, null));
+        }
+        return new CartItemResponse(line.cartItemId, userId, product, line.quantity,
+                ProductPriceCache.fromMinor(line.priceMinor),
+                ProductPriceCache.fromMinor(line.priceMinor * line.quantity));
+    }
+
+    // Drop the shared product summary after a product edit
+    public void evictProduct(Integer productId) {
+        if (productId != null) {
+            summaries.remove(productId);
+        }
+    }
+
+    /**
+     * Run a direct write to cart rows while no flush is in flight, so a flush that
+     * snapshotted a line earlier cannot land on top of it.
+     */
+    public synchronized void runExclusive(Runnable write) {
+        write.run();
+    }
+
+    // Write back everything dirty
+    @Scheduled(fixedDelayString = "${zelora.cart.cache.write-back-ms:500}")
+    public void flush() {
+        if (!dirtyUsers.isEmpty()) {
+            flushUsers(new ArrayList<>(dirtyUsers));
+        }
+        evictIdle();
+    }
+
+    // Write back one user's cart now (before checkout)
+    public void flush(Integer userId) {
+        if (userId != null && dirtyUsers.contains(userId)) {
+            flushUsers(List.of(userId));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!dirtyUsers.isEmpty()) {
+            flushUsers(new ArrayList<>(dirtyUsers));
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        long written = rowsUpdated.sum() + rowsDeleted.sum();
+        long oldestDirty = 0;
+        for (Integer userId : dirtyUsers) {
+            UserCart cart = carts.get(userId);
+            if (cart != null) {
+                long since = cart.dirtySince;
+                if (since > 0 && (oldestDirty == 0 || since < oldestDirty)) {
+                    oldestDirty = since;
+                }
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("carts", carts.size());
+        stats.put("maxCarts", maxCarts);
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRatio", h + m == 0 ? 0.0 : Math.round(h * 10000.0 / (h + m)) / 10000.0);
+        stats.put("evictions", evictions.sum());
+        stats.put("mutations", mutations.sum());
+        stats.put("rowsUpdated", rowsUpdated.sum());
+        stats.put("rowsDeleted", rowsDeleted.sum());
+        stats.put("writesCoalesced", Math.max(0, mutations.sum() - written));
+        stats.put("flushes", flushes.sum());
+        stats.put("flushFailures", flushFailures.sum());
+        stats.put("pendingCarts", dirtyUsers.size());
+        stats.put("currentFlushLagMs", oldestDirty == 0 ? 0 : System.currentTimeMillis() - oldestDirty);
+        stats.put("lastFlushLagMs", lastFlushLagMs.get());
+        stats.put("maxFlushLagMs", maxFlushLagMs.get());
+        return stats;
+    }
+
+    private UserCart acquire(Integer userId) {
+        while (true) {
+            UserCart cart = carts.get(userId);
+            if (cart != null) {
+                hits.increment();
+                return cart;
+            }
+            misses.increment();
+            long epoch = discardEpoch.get();
+            UserCart loaded = load(userId);
+            synchronized (loaded) {
+                UserCart raced = carts.putIfAbsent(userId, loaded);
+                if (raced != null) {
+                    return raced;
+                }
+                if (discardEpoch.get() != epoch) {
+                    // A sweep may have deleted rows this load still saw
+                    loaded.evicted = true;
+                    carts.remove(userId, loaded);
+                    continue;
+                }
+                for (Line line : loaded.lines) {
+                    owners.put(line.cartItemId, userId);
+                }
+            }
+            return loaded;
+        }
+    }
+
+    // One query brings back the lines and the product fields the responses need
+    private UserCart load(Integer userId) {
+        UserCart cart = new UserCart(userId);
+        long now = System.currentTimeMillis();
+        for (Object[] row : cartItemRepository.findCartRows(userId)) {
+            Line line = toLine(row, now);
+            cart.lines.add(line);
+            summaries.putIfAbsent(line.productId, new CartItemResponse.ProductSummary(
+                    line.productId, (String) row[6], (String) row[7], (String) row[8]));
+        }
+        return cart;
+    }
+
+    // A hold that has already lapsed is being released by the expiry wheel; never write it back
+    private Line toLine(Object[] row, long now) {
+        Date reservedUntil = (Date) row[5];
+        long until = reservedUntil != null ? reservedUntil.getTime() : 0;
+        int reserved = row[4] != null && until > now ? (Integer) row[4] : 0;
+        return new Line((Integer) row[0],
+                (Integer) row[1],
+                row[2] != null ? (Integer) row[2] : 0,
+                ProductPriceCache.toMinor((BigDecimal) row[3]),
+                reserved,
+                reserved > 0 ? until : 0);
+    }
+
+    private void loadSummaries(Collection<Integer> productIds) {
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : productIds) {
+            if (!summaries.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        for (Product p : productRepository.findAllById(missing)) {
+            summaries.put(p.getProductId(), new CartItemResponse.ProductSummary(
+                    p.getProductId(), p.getProductName(), p.getDescription(), p.getFeatureImage()));
+        }
+    }
+
+    private synchronized void flushUsers(Collection<Integer> userIds) {
+        List<Pending> pending = new ArrayList<>();
+        for (Integer userId : userIds) {
+            dirtyUsers.remove(userId);
+            UserCart cart = carts.get(userId);
+            if (cart == null) {
+                continue;
+            }
+            synchronized (cart) {
+                if (cart.isClean()) {
+                    continue;
+                }
+                pending.add(new Pending(cart));
+                cart.dirty.clear();
+                cart.removed.clear();
+                cart.releases.clear();
+                cart.dirtySince = 0;
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        for (Pending p : pending) {
+            synchronized (p.cart) {
+                for (Line line : p.updated) {
+                    boolean held = line.reservedQuantity > 0 && line.reservedUntil > now;
+                    updates.add(new Object[]{line.quantity, ProductPriceCache.fromMinor(line.priceMinor),
+                            held ? line.reservedQuantity : 0,
+                            held ? new Timestamp(line.reservedUntil) : null, new Timestamp(now), line.cartItemId});
+                }
+            }
+            for (Line line : p.removed) {
+                deletes.add(new Object[]{line.cartItemId});
+            }
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(tx -> {
+                if (!updates.isEmpty()) {
+                    jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+                }
+                if (!deletes.isEmpty()) {
+                    jdbcTemplate.batchUpdate(DELETE_SQL, deletes);
+                }
+            });
+        } catch (RuntimeException e) {
+            flushFailures.increment();
+            System.err.println("Cart write-back failed for " + pending.size() + " carts, will retry: " + e.getMessage());
+            requeue(pending);
+            return;
+        }
+
+        long oldest = now;
+        for (Pending p : pending) {
+            for (Line line : p.removed) {
+                owners.remove(line.cartItemId, p.cart.userId);
+            }
+            finishDeletes(p);
+            for (int[] release : p.releases) {
+                stockLedger.release(release[0], release[1], StockLedger.cartHolder(p.cart.userId));
+            }
+            oldest = Math.min(oldest, p.dirtySince);
+        }
+        rowsUpdated.add(updates.size());
+        rowsDeleted.add(deletes.size());
+        flushes.increment();
+        long lag = now - oldest;
+        lastFlushLagMs.set(lag);
+        maxFlushLagMs.accumulateAndGet(lag, Math::max);
+    }
+
+    private void requeue(List<Pending> pending) {
+        for (Pending p : pending) {
+            synchronized (p.cart) {
+                for (Line line : p.updated) {
+                    if (p.cart.lines.contains(line)) {
+                        p.cart.dirty.add(line);
+                    }
+                }
+                for (Line line : p.removed) {
+                    if (!p.cart.lines.contains(line)) {
+                        p.cart.removed.add(line);
+                    }
+                }
+                p.cart.releases.addAll(0, p.releases);
+                finishDeletes(p);
+                if (p.cart.dirtySince == 0 || p.dirtySince < p.cart.dirtySince) {
+                    p.cart.dirtySince = p.dirtySince;
+                }
+                dirtyUsers.add(p.cart.userId);
+            }
+        }
+    }
+
+    // Let adds that were waiting on these deletes go ahead
+    private void finishDeletes(Pending p) {
+        if (p.removed.isEmpty()) {
+            return;
+        }
+        synchronized (p.cart) {
+            p.cart.deleting.removeAll(p.removed);
+            p.cart.notifyAll();
+        }
+    }
+
+    // Drop clean carts that have gone idle, then the least recently used ones if still over capacity
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleMs;
+        for (UserCart cart : carts.values()) {
+            if (cart.lastAccess < cutoff) {
+                evict(cart);
+            }
+        }
+        int over = carts.size() - maxCarts;
+        if (over > 0) {
+            List<UserCart> byAge = new ArrayList<>(carts.values());
+            byAge.sort(Comparator.comparingLong(c -> c.lastAccess));
+            for (int i = 0; i < byAge.size() && over > 0; i++) {
+                if (evict(byAge.get(i))) {
+                    over--;
+                }
+            }
+        }
+    }
+
+    private boolean evict(UserCart cart) {
+        synchronized (cart) {
+            if (cart.evicted || !cart.isClean()) {
+                return false;
+            }
+            cart.evicted = true;
+            carts.remove(cart.userId, cart);
+            for (Line line : cart.lines) {
+                owners.remove(line.cartItemId, cart.userId);
+            }
+        }
+        evictions.increment();
+        return true;
+    }
+}
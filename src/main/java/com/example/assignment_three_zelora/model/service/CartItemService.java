@@ -1,106 +1,441 @@
 package com.example.assignment_three_zelora.model.service;
 
-import com.example.assignment_three_zelora.model.entitys.CartItem;
-import com.example.assignment_three_zelora.model.entitys.Product;
-import com.example.assignment_three_zelora.model.repos.CartItemRepository;
-import com.example.assignment_three_zelora.model.repos.ProductRepository;
+import com.example.assignment_three_zelora.dto.CartBatchRequest;
 import com.example.assignment_three_zelora.dto.CartItemResponse;
+import com.example.assignment_three_zelora.dto.CartRevalidationDto;
+import com.example.assignment_three_zelora.dto.CartSummaryDto;
+import com.example.assignment_three_zelora.model.repos.CartItemRepository;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
-import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.function.Consumer;
 
 @Service
 public class CartItemService {
 
+    public static final int MAX_BATCH_OPERATIONS = 100;
+
     private final CartItemRepository cartItemRepository;
-    private final ProductRepository productRepository;
+    private final ProductPriceCache productPriceCache;
+    private final StockLedger stockLedger;
+    private final CartReservationService cartReservationService;
+    private final CartCache cartCache;
 
-    public CartItemService(CartItemRepository cartItemRepository, ProductRepository productRepository) {
+    public CartItemService(CartItemRepository cartItemRepository, ProductPriceCache productPriceCache,
+                           StockLedger stockLedger, CartReservationService cartReservationService,
+                           CartCache cartCache) {
         this.cartItemRepository = cartItemRepository;
-        this.productRepository = productRepository;
-    }
-
-    private CartItemResponse convertToResponse(CartItem item) {
-        CartItemResponse.ProductSummary productSummary = new CartItemResponse.ProductSummary(
-            item.getProductId().getProductId(),
-            item.getProductId().getProductName(),
-            item.getProductId().getDescription(),
-            item.getProductId().getFeatureImage()
-        );
-        
-        return new CartItemResponse(
-            item.getCartItemId(),
-            item.getUserId(),
-            productSummary,
-            item.getQuantity(),
-            item.getPrice(),
-            item.getSubtotal()
-        );
+        this.productPriceCache = productPriceCache;
+        this.stockLedger = stockLedger;
+        this.cartReservationService = cartReservationService;
+        this.cartCache = cartCache;
     }
 
     // Add item to cart or update quantity if already exists
     public CartItemResponse addToCart(Integer userId, Integer productId, Integer quantity) {
-        Optional<CartItem> existingItem = cartItemRepository.findByUserIdAndProductId(userId, productId);
-        
-        if (existingItem.isPresent()) {
-            CartItem item = existingItem.get();
-            item.setQuantity(item.getQuantity() + quantity);
-            cartItemRepository.save(item);
-            return convertToResponse(item);
-        }
-        
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
-        
-        CartItem newItem = new CartItem();
-        newItem.setUserId(userId);
-        newItem.setProductId(product);
-        newItem.setQuantity(quantity);
-        newItem.setPrice(product.getPrice());
-        
-        cartItemRepository.save(newItem);
-        return convertToResponse(newItem);
-    }
-
-    // Update quantity of an item in cart
-    public CartItemResponse updateQuantity(Integer cartItemId, Integer newQuantity) {
-        Optional<CartItem> item = cartItemRepository.findById(cartItemId);
-        if (item.isPresent()) {
-            CartItem cartItem = item.get();
-            cartItem.setQuantity(newQuantity);
-            cartItemRepository.save(cartItem);
-            return convertToResponse(cartItem);
+        return cartCache.update(userId, cart -> {
+            cart.awaitDelete(productId);
+            CartCache.Line line = cart.findByProduct(productId);
+            boolean restored = false;
+            if (line == null) {
+                // Removed since the last flush: reuse the row instead of deleting and re-inserting it
+                line = cart.restore(productId);
+                restored = line != null;
+            }
+            
+            // Without soft holds this is only a lock-free availability check against the stock ledger
+            int wanted = quantity + (line != null && !restored ? line.getQuantity() : 0);
+            if (!cartReservationService.isEnabled() && stockLedger.getAvailable(productId) < wanted) {
+                if (restored) {
+                    cart.remove(line);
+                }
+                throw new RuntimeException("Insufficient stock");
+            }
+            
+            if (line != null) {
+                try {
+                    changeQuantity(cart, line, wanted);
+                } catch (RuntimeException e) {
+                    if (restored) {
+                        cart.remove(line);
+                    }
+                    throw e;
+                }
+                return cartCache.toResponse(userId, line);
+            }
+            
+            ProductPriceCache.PriceEntry price = productPriceCache.getPrice(productId);
+            if (price == null) {
+                throw new RuntimeException("Product not found");
+            }
+            CartReservationService.HoldChange hold = holdStock(userId, null, productId, quantity);
+            
+            // New lines are written straight away with one upsert so they have an id; a failed write hands the held units back
+            CartCache.Line added;
+            try {
+                added = cartCache.insert(cart, productId, quantity, price.effectiveMinor(),
+                        hold != null ? hold.quantity : 0, hold != null ? hold.expiresAt : 0);
+            } catch (RuntimeException e) {
+                if (hold != null && hold.quantity > 0) {
+                    stockLedger.release(productId, hold.quantity, StockLedger.cartHolder(userId));
+                }
+                throw e;
+            }
+            if (hold != null) {
+                // A merged row's old hold was replaced by this one
+                cart.releaseAfterFlush(productId, cartReservationService.takeHold(added.getCartItemId()));
+                cartReservationService.track(userId, added.getCartItemId(), productId, hold.quantity, hold.expiresAt);
+            }
+            return cartCache.toResponse(userId, added);
+        });
+    }
+
+    // Update quantity of an item in cart; admitGrowth sees the product first if the line grows and may throw to refuse
+    public CartItemResponse updateQuantity(Integer cartItemId, Integer newQuantity, Consumer<Integer> admitGrowth) {
+        Integer userId = cartCache.ownerOf(cartItemId);
+        if (userId == null) {
+            throw new RuntimeException("Cart item not found");
         }
-        throw new RuntimeException("Cart item not found");
+        return cartCache.update(userId, cart -> {
+            CartCache.Line line = cart.findById(cartItemId);
+            if (line == null) {
+                throw new RuntimeException("Cart item not found");
+            }
+            if (newQuantity != null && newQuantity > line.getQuantity()) {
+                admitGrowth.accept(line.getProductId());
+            }
+            changeQuantity(cart, line, newQuantity);
+            return cartCache.toResponse(userId, line);
+        });
     }
 
     // Remove item from cart
     public void removeFromCart(Integer cartItemId, Integer userId) {
-        cartItemRepository.deleteByCartItemIdAndUserId(cartItemId, userId);
+        cartCache.update(userId, cart -> {
+            CartCache.Line line = cart.findById(cartItemId);
+            if (line != null) {
+                removeLine(cart, line);
+            }
+            return null;
+        });
     }
 
     // Get all items in user's cart
     public List<CartItemResponse> getCartByUserId(Integer userId) {
-        return cartItemRepository.findByUserId(userId)
-            .stream()
-            .map(this::convertToResponse)
-            .collect(Collectors.toList());
+        return cartCache.read(userId, cart -> {
+            List<CartItemResponse> items = new ArrayList<>(cart.getLines().size());
+            for (CartCache.Line line : cart.getLines()) {
+                items.add(cartCache.toResponse(userId, line));
+            }
+            return items;
+        });
     }
 
-    // Calculate total price for entire cart
+    // Calculate total price for entire cart: from the cache when the cart is loaded, otherwise one SUM query
     public BigDecimal getCartTotal(Integer userId) {
-        List<CartItem> items = cartItemRepository.findByUserId(userId);
-        BigDecimal total = BigDecimal.ZERO;
-        for (CartItem item : items) {
-            total = total.add(item.getSubtotal());
+        Long totalMinor = cartCache.peek(userId, CartItemService::totalMinor);
+        if (totalMinor != null) {
+            return ProductPriceCache.fromMinor(totalMinor);
         }
-        return total;
+        // An uncached cart has nothing waiting to be written back, so the table is current
+        return cartItemRepository.sumCartTotal(userId).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    // Lines, counts and total in one read
+    public CartSummaryDto getCartSummary(Integer userId) {
+        return cartCache.read(userId, cart -> summarize(userId, cart));
+    }
+
+    /**
+     * Apply a list of add/update/remove operations as one change and return the final cart.
+     * Operations are folded into a target quantity per product and checked up front; stock
+     * is then taken for everything that grows, and a shortfall anywhere undoes the lot.
+     * New lines go to the database in one batched upsert; the remaining changes are
+     * coalesced into the cart's next write-back like any other edit. admitGrowth is called
+     * for every product whose net quantity grows, however the operations got there, before
+     * any stock is held; it throws to refuse the batch (e.g. no waiting-room admission).
+     */
+    public CartSummaryDto applyBatch(Integer userId, List<CartBatchRequest.Operation> operations,
+                                     Consumer<Integer> admitGrowth) {
+        if (operations == null || operations.isEmpty()) {
+            throw new IllegalArgumentException("operations must not be empty");
+        }
+        if (operations.size() > MAX_BATCH_OPERATIONS) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_OPERATIONS + " operations per batch");
+        }
+        Set<Integer> named = new HashSet<>();
+        for (int i = 0; i < operations.size(); i++) {
+            validate(i + 1, operations.get(i));
+            if (operations.get(i).getProductId() != null) {
+                named.add(operations.get(i).getProductId());
+            }
+        }
+
+        return cartCache.update(userId, cart -> {
+            cart.awaitDeletes(named);
+
+            // Net quantity per product once every operation has been applied
+            Map<Integer, Integer> target = new LinkedHashMap<>();
+            for (int i = 0; i < operations.size(); i++) {
+                CartBatchRequest.Operation op = operations.get(i);
+                Integer productId = op.getProductId();
+                if (op.getCartItemId() != null) {
+                    CartCache.Line line = cart.findById(op.getCartItemId());
+                    if (line == null) {
+                        throw new IllegalArgumentException("Operation " + (i + 1) + ": cart item " + op.getCartItemId() + " not found");
+                    }
+                    productId = line.getProductId();
+                }
+                Integer current = target.get(productId);
+                if (current == null) {
+                    CartCache.Line line = cart.findByProduct(productId);
+                    current = line != null ? line.getQuantity() : 0;
+                }
+                switch (op.getOp().toLowerCase()) {
+                    case "add" -> target.put(productId, Math.addExact(current, op.getQuantity()));
+                    case "update" -> target.put(productId, op.getQuantity());
+                    default -> target.put(productId, 0);
+                }
+            }
+
+            for (Map.Entry<Integer, Integer> e : target.entrySet()) {
+                CartCache.Line line = cart.findByProduct(e.getKey());
+                if (e.getValue() > (line != null ? line.getQuantity() : 0)) {
+                    admitGrowth.accept(e.getKey());
+                }
+            }
+
+            // One price lookup for every product that needs a new line
+            List<Integer> fresh = new ArrayList<>();
+            for (Map.Entry<Integer, Integer> e : target.entrySet()) {
+                if (e.getValue() > 0 && cart.findByProduct(e.getKey()) == null) {
+                    fresh.add(e.getKey());
+                }
+            }
+            Map<Integer, ProductPriceCache.PriceEntry> prices = productPriceCache.getPrices(fresh);
+            for (Integer productId : fresh) {
+                if (!prices.containsKey(productId)) {
+                    throw new IllegalArgumentException("Product not found: " + productId);
+                }
+            }
+            if (!cartReservationService.isEnabled()) {
+                for (Map.Entry<Integer, Integer> e : target.entrySet()) {
+                    CartCache.Line line = cart.findByProduct(e.getKey());
+                    int before = line != null ? line.getQuantity() : 0;
+                    if (e.getValue() > before && stockLedger.getAvailable(e.getKey()) < e.getValue()) {
+                        throw new RuntimeException("Insufficient stock for product " + e.getKey());
+                    }
+                }
+            }
+
+            // Grow first, remembering how to undo each step; nothing below can fail once this succeeds
+            List<Runnable> undo = new ArrayList<>();
+            List<CartCache.Line> drafts = new ArrayList<>();
+            List<CartReservationService.HoldChange> draftHolds = new ArrayList<>();
+            List<CartCache.Line> added;
+            Integer failing = null;
+            try {
+                for (Map.Entry<Integer, Integer> e : target.entrySet()) {
+                    int productId = e.getKey();
+                    int quantity = e.getValue();
+                    failing = productId;
+                    CartCache.Line line = cart.findByProduct(productId);
+                    if (line != null) {
+                        int before = line.getQuantity();
+                        if (quantity > before) {
+                            changeQuantity(cart, line, quantity);
+                            undo.add(() -> changeQuantity(cart, line, before));
+                        }
+                    } else if (quantity > 0) {
+                        CartCache.Line restored = cart.restore(productId);
+                        if (restored != null) {
+                            undo.add(() -> removeLine(cart, restored));
+                            changeQuantity(cart, restored, quantity);
+                        } else {
+                            CartReservationService.HoldChange hold = holdStock(userId, null, productId, quantity);
+                            if (hold != null && hold.quantity > 0) {
+                                undo.add(() -> stockLedger.release(productId, hold.quantity, StockLedger.cartHolder(userId)));
+                            }
+                            drafts.add(new CartCache.Line(0, productId, quantity, prices.get(productId).effectiveMinor(),
+                                    hold != null ? hold.quantity : 0, hold != null ? hold.expiresAt : 0));
+                            draftHolds.add(hold);
+                        }
+                    }
+                }
+                failing = null;
+                added = cartCache.insertAll(cart, drafts);
+            } catch (RuntimeException e) {
+                for (int i = undo.size() - 1; i >= 0; i--) {
+                    undo.get(i).run();
+                }
+                if (failing != null) {
+                    throw new RuntimeException(e.getMessage() + " for product " + failing, e);
+                }
+                throw e;
+            }
+
+            Set<Integer> inserted = new HashSet<>();
+            for (int i = 0; i < added.size(); i++) {
+                CartCache.Line line = added.get(i);
+                CartReservationService.HoldChange hold = draftHolds.get(i);
+                inserted.add(line.getProductId());
+                if (hold != null) {
+                    cart.releaseAfterFlush(line.getProductId(), cartReservationService.takeHold(line.getCartItemId()));
+                    cartReservationService.track(cart.getUserId(), line.getCartItemId(), line.getProductId(), hold.quantity, hold.expiresAt);
+                }
+            }
+
+            // Shrinks and removals only hand stock back
+            for (Map.Entry<Integer, Integer> e : target.entrySet()) {
+                CartCache.Line line = cart.findByProduct(e.getKey());
+                if (line == null || inserted.contains(e.getKey()) || e.getValue() >= line.getQuantity()) {
+                    continue;
+                }
+                if (e.getValue() == 0) {
+                    removeLine(cart, line);
+                } else {
+                    changeQuantity(cart, line, e.getValue());
+                }
+            }
+            return summarize(userId, cart);
+        });
     }
 
     // Clear entire cart for a user
     public void clearCart(Integer userId) {
-        cartItemRepository.deleteByUserId(userId);
+        cartCache.update(userId, cart -> {
+            for (CartCache.Line line : new ArrayList<>(cart.getLines())) {
+                removeLine(cart, line);
+            }
+            return null;
+        });
+    }
+
+    // Set a line's quantity, moving its hold along with it; a shrinking hold is released after write-back
+    private void changeQuantity(CartCache.UserCart cart, CartCache.Line line, int quantity) {
+        CartReservationService.HoldChange hold = holdStock(cart.getUserId(), line.getCartItemId(), line.getProductId(), quantity);
+        cart.setQuantity(line, quantity);
+        if (hold != null) {
+            cart.setHold(line, hold.quantity, hold.expiresAt);
+            cart.releaseAfterFlush(line.getProductId(), hold.surplus);
+            cartReservationService.track(cart.getUserId(), line.getCartItemId(), line.getProductId(), hold.quantity, hold.expiresAt);
+        }
+    }
+
+    /**
+     * Re-check every line against current effective prices and stock before checkout, with
+     * one batch price lookup and in-memory stock reads. Lines whose price moved are
+     * repriced in the cart, and the cart is written back at once so all of them land in
+     * one batched UPDATE. A line is out of stock when the units free in the ledger plus the
+     * line's own unexpired hold no longer cover its quantity.
+     */
+    public CartRevalidationDto revalidate(Integer userId) {
+        long started = System.nanoTime();
+        CartRevalidationDto result = cartCache.update(userId, cart -> {
+            List<CartCache.Line> lines = cart.getLines();
+            List<Integer> ids = new ArrayList<>(lines.size());
+            for (CartCache.Line line : lines) {
+                ids.add(line.getProductId());
+            }
+            Map<Integer, ProductPriceCache.PriceEntry> prices = productPriceCache.getPrices(ids);
+
+            List<CartRevalidationDto.Line> checked = new ArrayList<>(lines.size());
+            int priceChanges = 0;
+            int outOfStock = 0;
+            long previousTotal = 0;
+            long total = 0;
+            long now = System.currentTimeMillis();
+            for (CartCache.Line line : lines) {
+                long before = line.getPriceMinor();
+                previousTotal += before * line.getQuantity();
+                ProductPriceCache.PriceEntry price = prices.get(line.getProductId());
+                boolean changed = price != null && price.effectiveMinor() != before;
+                if (changed) {
+                    cart.setPrice(line, price.effectiveMinor());
+                    priceChanges++;
+                }
+                // A lapsed hold is already (or about to be) back in the ledger, so only a live one counts
+                int held = line.getReservedUntil() > now ? line.getReservedQuantity() : 0;
+                int available = price != null
+                        ? Math.max(0, stockLedger.getAvailable(line.getProductId())) + held : 0;
+                boolean missing = available < line.getQuantity();
+                if (missing) {
+                    outOfStock++;
+                }
+                total += line.getPriceMinor() * line.getQuantity();
+                checked.add(new CartRevalidationDto.Line(line.getCartItemId(), line.getProductId(), line.getQuantity(),
+                        ProductPriceCache.fromMinor(before),
+                        price != null ? ProductPriceCache.fromMinor(price.effectiveMinor()) : null,
+                        changed, available, missing));
+            }
+            return new CartRevalidationDto(userId, checked, priceChanges, outOfStock,
+                    ProductPriceCache.fromMinor(previousTotal), ProductPriceCache.fromMinor(total),
+                    priceChanges == 0 && outOfStock == 0, null);
+        });
+        if (result.getPriceChanges() > 0) {
+            cartCache.flush(userId);
+        }
+        result.setElapsedMicros((System.nanoTime() - started) / 1000);
+        return result;
+    }
+
+    private static void validate(int index, CartBatchRequest.Operation op) {
+        String kind = op != null && op.getOp() != null ? op.getOp().toLowerCase() : "";
+        switch (kind) {
+            case "add" -> {
+                if (op.getProductId() == null || op.getQuantity() == null || op.getQuantity() < 1) {
+                    throw new IllegalArgumentException("Operation " + index + ": add needs productId and a quantity of at least 1");
+                }
+            }
+            case "update" -> {
+                if ((op.getCartItemId() == null && op.getProductId() == null) || op.getQuantity() == null || op.getQuantity() < 0) {
+                    throw new IllegalArgumentException("Operation " + index + ": update needs cartItemId or productId and a quantity of at least 0");
+                }
+            }
+            case "remove" -> {
+                if (op.getCartItemId() == null && op.getProductId() == null) {
+                    throw new IllegalArgumentException("Operation " + index + ": remove needs cartItemId or productId");
+                }
+            }
+            default -> throw new IllegalArgumentException("Operation " + index + ": op must be add, update or remove");
+        }
+    }
+
+    private CartSummaryDto summarize(Integer userId, CartCache.UserCart cart) {
+        List<CartItemResponse> lines = new ArrayList<>(cart.getLines().size());
+        int itemCount = 0;
+        for (CartCache.Line line : cart.getLines()) {
+            lines.add(cartCache.toResponse(userId, line));
+            itemCount += line.getQuantity();
+        }
+        return new CartSummaryDto(userId, lines, lines.size(), itemCount, ProductPriceCache.fromMinor(totalMinor(cart)));
+    }
+
+    private static long totalMinor(CartCache.UserCart cart) {
+        long sum = 0;
+        for (CartCache.Line line : cart.getLines()) {
+            sum += line.getPriceMinor() * line.getQuantity();
+        }
+        return sum;
+    }
+
+    private void removeLine(CartCache.UserCart cart, CartCache.Line line) {
+        int held = cartReservationService.takeHold(line.getCartItemId());
+        cart.setHold(line, 0, 0);
+        cart.remove(line);
+        cart.releaseAfterFlush(line.getProductId(), held);
+    }
+
+    // Soft-hold the line's stock for the reservation TTL when holds are enabled; null when they are off
+    private CartReservationService.HoldChange holdStock(Integer userId, Integer cartItemId, Integer productId, int quantity) {
+        if (!cartReservationService.isEnabled()) {
+            return null;
+        }
+        CartReservationService.HoldChange hold = cartReservationService.adjust(userId, cartItemId, productId, quantity);
+        if (hold == null) {
+            throw new RuntimeException("Insufficient stock");
+        }
+        return hold;
     }
 }
@@ -0,0 +1,269 @@
+package com.example.assignment_three_zelora.model.service;
+
+import com.example.assignment_three_zelora.model.repos.CartItemRepository;
+import com.example.assignment_three_zelora.service.HierarchicalTimingWheel;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Soft stock holds for cart lines. Adding to the cart reserves the units in the
+ * StockLedger for a limited time; checkout takes the hold over, and anything left
+ * when the TTL runs out is handed back. Expiry is driven by a hierarchical timing
+ * wheel, so millions of holds cost O(1) each to create or cancel and nothing scans them.
+ * The hold columns of cached carts are written back by CartCache; the direct writes
+ * here (expiry, checkout) go through CartCache.runExclusive so they cannot be overwritten
+ * by a flush that was already in flight.
+ */
+@Service
+public class CartReservationService {
+
+    private static final long TICK_MS = 100;
+    private static final int WHEEL_LEVELS = 4;
+    private static final int CLEAR_CHUNK_SIZE = 1000;
+
+    // Only clear the columns if the line hasn't been re-held since
+    private static final String CLEAR_SQL =
+            "UPDATE cart_items SET reserved_quantity = 0, reserved_until = NULL " +
+            "WHERE cart_item_id = ? AND reserved_until <= ?";
+
+    private final StockLedger stockLedger;
+    private final CartItemRepository cartItemRepository;
+    private final CartCache cartCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final long ttlMs;
+
+    private final HierarchicalTimingWheel<Hold> wheel = new HierarchicalTimingWheel<>(TICK_MS, WHEEL_LEVELS);
+    private final Map<Integer, Hold> holds = new ConcurrentHashMap<>();
+
+    /**
+     * Units held for one cart line.
+     */
+    private static final class Hold {
+        final Integer userId;
+        final int cartItemId;
+        final int productId;
+        final int quantity;
+        final long expiresAt;
+        HierarchicalTimingWheel<Hold>.Timeout timeout;
+
+        Hold(Integer userId, int cartItemId, int productId, int quantity, long expiresAt) {
+            this.userId = userId;
+            this.cartItemId = cartItemId;
+            this.productId = productId;
+            this.quantity = quantity;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Outcome of adjust(): the hold now in place, and any units it no longer needs,
+     * which the caller releases once the line change is persisted.
+     */
+    public static final class HoldChange {
+        public final int quantity;
+        public final long expiresAt;
+        public final int surplus;
+
+        HoldChange(int quantity, long expiresAt, int surplus) {
+            this.quantity = quantity;
+            this.expiresAt = expiresAt;
+            this.surplus = surplus;
+        }
+    }
+
+    public CartReservationService(StockLedger stockLedger,
+                                  CartItemRepository cartItemRepository,
+                                  CartCache cartCache,
+                                  JdbcTemplate jdbcTemplate,
+                                  @Value("${zelora.cart.reservations.enabled:true}") boolean enabled,
+                                  @Value("${zelora.cart.reservations.ttl-minutes:15}") long ttlMinutes) {
+        this.stockLedger = stockLedger;
+        this.cartItemRepository = cartItemRepository;
+        this.cartCache = cartCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.ttlMs = ttlMinutes * 60_000L;
+    }
+
+    // Re-arm holds that survived a restart and hand back the ones that lapsed while we were down
+    @PostConstruct
+    public void start() {
+        long now = System.currentTimeMillis();
+        List<Hold> lapsed = new ArrayList<>();
+        for (Object[] row : cartItemRepository.findActiveHolds()) {
+            if (row[1] == null) {
+                continue;
+            }
+            long until = row[3] != null ? ((Date) row[3]).getTime() : 0;
+            Hold hold = new Hold((Integer) row[4], (Integer) row[0], (Integer) row[1], (Integer) row[2], until);
+            if (until <= now) {
+                lapsed.add(hold);
+            } else {
+                schedule(hold);
+            }
+        }
+        if (!lapsed.isEmpty()) {
+            releaseBatch(lapsed);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getActiveHoldCount() {
+        return holds.size();
+    }
+
+    /**
+     * Make a cart line (null id for a line not yet saved) hold exactly quantity units,
+     * reusing what it already holds, and restart its TTL. Surplus units are not released
+     * here. Call track() once the line is saved. Returns null, leaving any existing hold
+     * in place, if stock is short.
+     */
+    public HoldChange adjust(Integer userId, Integer cartItemId, Integer productId, int quantity) {
+        quantity = Math.max(0, quantity);
+        Hold current = cartItemId != null ? take(cartItemId) : null;
+        int held = current != null ? current.quantity : 0;
+        int diff = quantity - held;
+        if (diff > 0 && !stockLedger.reserve(productId, diff, StockLedger.cartHolder(userId))) {
+            if (current != null) {
+                schedule(new Hold(current.userId, current.cartItemId, current.productId, current.quantity, current.expiresAt));
+            }
+            return null;
+        }
+        return new HoldChange(quantity, System.currentTimeMillis() + ttlMs, Math.max(0, -diff));
+    }
+
+    // Start the expiry timer for a saved line
+    public void track(Integer userId, Integer cartItemId, Integer productId, int quantity, long expiresAt) {
+        if (cartItemId == null || quantity <= 0) {
+            return;
+        }
+        schedule(new Hold(userId, cartItemId, productId, quantity, expiresAt));
+    }
+
+    // Stop a line's timer (line removed or cart cleared); the caller releases the returned units
+    public int takeHold(Integer cartItemId) {
+        Hold hold = take(cartItemId);
+        return hold != null ? hold.quantity : 0;
+    }
+
+    /**
+     * Hand the units held by a user's cart line for this product over to the caller,
+     * who now owns that reservation. The units stay recorded under the cart's ledger
+     * holder until the caller transfers them. Returns how many units were held.
+     */
+    public int claim(Integer userId, Integer productId) {
+        Integer cartItemId = cartCache.update(userId, cart -> {
+            CartCache.Line line = cart.findByProduct(productId);
+            return line != null ? line.getCartItemId() : null;
+        });
+        if (cartItemId == null) {
+            return 0;
+        }
+        Hold hold = take(cartItemId);
+        if (hold == null) {
+            return 0;
+        }
+        cartCache.runExclusive(() -> {
+            cartCache.update(userId, cart -> {
+                CartCache.Line line = cart.findById(cartItemId);
+                if (line != null) {
+                    cart.setHold(line, 0, 0);
+                }
+                return null;
+            });
+            jdbcTemplate.update("UPDATE cart_items SET reserved_quantity = 0, reserved_until = NULL WHERE cart_item_id = ?",
+                    hold.cartItemId);
+        });
+        return hold.quantity;
+    }
+
+    // Collect everything the wheel expired this tick and release it in one batch
+    @Scheduled(fixedRate = TICK_MS)
+    public void expire() {
+        List<Hold> due = wheel.advance(System.currentTimeMillis());
+        if (due.isEmpty()) {
+            return;
+        }
+        List<Hold> expired = new ArrayList<>(due.size());
+        for (Hold hold : due) {
+            // Skip holds that were claimed or replaced after the wheel picked them
+            if (holds.remove(hold.cartItemId, hold)) {
+                expired.add(hold);
+            }
+        }
+        if (!expired.isEmpty()) {
+            try {
+                releaseBatch(expired);
+            } catch (Exception e) {
+                System.err.println("Failed to release " + expired.size() + " expired cart holds: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Clear the hold columns (and the cached copies of the lines) first, then return the
+     * units to the ledger (which writes quantity_reserved behind in one coalesced batch).
+     * A crash between the two leaves stock over-reserved rather than oversold.
+     */
+    private void releaseBatch(List<Hold> expired) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        cartCache.runExclusive(() -> {
+            for (int from = 0; from < expired.size(); from += CLEAR_CHUNK_SIZE) {
+                List<Object[]> args = new ArrayList<>();
+                for (Hold hold : expired.subList(from, Math.min(from + CLEAR_CHUNK_SIZE, expired.size()))) {
+                    args.add(new Object[]{hold.cartItemId, now});
+                }
+                jdbcTemplate.batchUpdate(CLEAR_SQL, args);
+            }
+            // Same condition as CLEAR_SQL, so a line re-held since keeps its hold
+            for (Hold hold : expired) {
+                if (hold.userId == null) {
+                    continue;
+                }
+                cartCache.peek(hold.userId, cart -> {
+                    CartCache.Line line = cart.findById(hold.cartItemId);
+                    if (line != null && line.getReservedUntil() <= now.getTime()) {
+                        cart.setHold(line, 0, 0);
+                    }
+                    return null;
+                });
+            }
+        });
+
+        // One release per cart and product, so each goes back to the rows that cart took it from
+        Map<List<Integer>, Integer> byCartProduct = new HashMap<>();
+        for (Hold hold : expired) {
+            byCartProduct.merge(Arrays.asList(hold.userId, hold.productId), hold.quantity, Integer::sum);
+        }
+        for (Map.Entry<List<Integer>, Integer> entry : byCartProduct.entrySet()) {
+            stockLedger.release(entry.getKey().get(1), entry.getValue(), StockLedger.cartHolder(entry.getKey().get(0)));
+        }
+    }
+
+    private void schedule(Hold hold) {
+        hold.timeout = wheel.schedule(hold, hold.expiresAt);
+        Hold previous = holds.put(hold.cartItemId, hold);
+        if (previous != null && previous.timeout != null) {
+            previous.timeout.cancel();
+        }
+    }
+
+    private Hold take(Integer cartItemId) {
+        Hold hold = holds.remove(cartItemId);
+        if (hold != null && hold.timeout != null) {
+            hold.timeout.cancel();
+        }
+        return hold;
+    }
+}
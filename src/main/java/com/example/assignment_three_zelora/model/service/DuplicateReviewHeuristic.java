@@ -0,0 +1,180 @@
+package com.example.assignment_three_zelora.model.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Flags reviews whose text is a near copy of a recent one.
+ * Each text becomes a set of word 3-gram shingles, summarised by a MinHash signature;
+ * signatures are bucketed by band (locality-sensitive hashing), so a check only compares
+ * against reviews that share a band instead of scanning the window. The window keeps the
+ * last duplicate-window reviews. Short texts are skipped: "Great product, love it" is not spam.
+ */
+@Component
+public class DuplicateReviewHeuristic implements ReviewHeuristic {
+
+    private static final int MIN_TOKENS = 8;
+    private static final int SHINGLE_WORDS = 3;
+    private static final int BANDS = 8;
+    private static final int ROWS = 4;
+    private static final int SIGNATURE_SIZE = BANDS * ROWS;
+
+    private static final long[] SEEDS = new long[SIGNATURE_SIZE];
+
+    static {
+        long seed = 0x5DEECE66DL;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            SEEDS[i] = seed;
+        }
+    }
+
+    /**
+     * One indexed review; removed from the buckets it still owns when it leaves the window.
+     */
+    private static final class Entry {
+        final int reviewId;
+        final long[] signature;
+        final long[] bandKeys;
+
+        Entry(int reviewId, long[] signature, long[] bandKeys) {
+            this.reviewId = reviewId;
+            this.signature = signature;
+            this.bandKeys = bandKeys;
+        }
+    }
+
+    private final double threshold;
+    private final int window;
+
+    // Band key -> first review seen with it; putIfAbsent keeps concurrent copies from missing each other
+    private final ConcurrentHashMap<Long, Entry> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    public DuplicateReviewHeuristic(@Value("${zelora.reviews.moderation.duplicate-similarity:0.8}") double threshold,
+                                    @Value("${zelora.reviews.moderation.duplicate-window:50000}") int window) {
+        this.threshold = Math.min(1.0, Math.max(0.1, threshold));
+        this.window = Math.max(1, window);
+    }
+
+    @Override
+    public String getName() {
+        return "duplicate-text";
+    }
+
+    @Override
+    public String check(ReviewModerationService.Candidate review) {
+        List<String> tokens = tokenize(review.text);
+        if (tokens.size() < MIN_TOKENS) {
+            return null;
+        }
+        long[] signature = signature(tokens);
+        long[] bandKeys = new long[BANDS];
+        for (int b = 0; b < BANDS; b++) {
+            long key = mix(b + 1);
+            for (int r = 0; r < ROWS; r++) {
+                key = mix(key ^ signature[b * ROWS + r]);
+            }
+            bandKeys[b] = key;
+        }
+
+        Entry entry = new Entry(review.reviewId, signature, bandKeys);
+        Entry best = null;
+        double bestSimilarity = 0;
+        for (long key : bandKeys) {
+            Entry other = buckets.putIfAbsent(key, entry);
+            if (other != null && other.reviewId != review.reviewId) {
+                double similarity = similarity(signature, other.signature);
+                if (similarity > bestSimilarity) {
+                    best = other;
+                    bestSimilarity = similarity;
+                }
+            }
+        }
+        order.add(entry);
+        if (size.incrementAndGet() > window) {
+            evictOldest();
+        }
+
+        if (best != null && bestSimilarity >= threshold) {
+            return "near copy of review " + best.reviewId + " (" + Math.round(bestSimilarity * 100) + "% similar)";
+        }
+        return null;
+    }
+
+    private void evictOldest() {
+        Entry oldest = order.poll();
+        if (oldest == null) {
+            return;
+        }
+        size.decrementAndGet();
+        for (long key : oldest.bandKeys) {
+            buckets.remove(key, oldest);
+        }
+    }
+
+    // Lower-case letter/digit runs
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean word = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static long[] signature(List<String> tokens) {
+        long[] mins = new long[SIGNATURE_SIZE];
+        Arrays.fill(mins, Long.MAX_VALUE);
+        for (int i = 0; i + SHINGLE_WORDS <= tokens.size(); i++) {
+            long shingle = 0;
+            for (int w = 0; w < SHINGLE_WORDS; w++) {
+                shingle = mix(shingle ^ tokens.get(i + w).hashCode());
+            }
+            for (int h = 0; h < SIGNATURE_SIZE; h++) {
+                long value = mix(shingle ^ SEEDS[h]);
+                if (value < mins[h]) {
+                    mins[h] = value;
+                }
+            }
+        }
+        return mins;
+    }
+
+    // Share of matching MinHash slots, an estimate of the shingle sets' Jaccard similarity
+    private static double similarity(long[] a, long[] b) {
+        int same = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                same++;
+            }
+        }
+        return same / (double) a.length;
+    }
+
+    // SplitMix64 finaliser
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,7 +1,138 @@
 package com.example.assignment_three_zelora.model.service;
 
+import com.example.assignment_three_zelora.event.OrderStatusChangedEvent;
+import com.example.assignment_three_zelora.model.repos.OrderItemRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Ties order lifecycle to the stock ledger: checkout reserves, shipping consumes
+ * the reservation and cancelling gives it back.
+ */
 @Service
 public class InventoryService {
+
+    // Statuses in which an order holds a reservation
+    private static final Set<String> HOLDING = Set.of("pending", "processing");
+    private static final Set<String> CONSUMED = Set.of("shipped", "delivered");
+    private static final Set<String> CANCELLED = Set.of("cancelled", "canceled");
+
+    private final StockLedger stockLedger;
+    private final OrderItemRepository orderItemRepository;
+    private final CartReservationService cartReservationService;
+
+    public InventoryService(StockLedger stockLedger, OrderItemRepository orderItemRepository,
+                            CartReservationService cartReservationService) {
+        this.stockLedger = stockLedger;
+        this.orderItemRepository = orderItemRepository;
+        this.cartReservationService = cartReservationService;
+    }
+
+    /**
+     * Thrown when a reservation cannot be covered by available stock.
+     */
+    public static class InsufficientStockException extends RuntimeException {
+        private final Integer productId;
+
+        public InsufficientStockException(Integer productId) {
+            super("Insufficient stock for product " + productId);
+            this.productId = productId;
+        }
+
+        public Integer getProductId() {
+            return productId;
+        }
+    }
+
+    /**
+     * Reserve every line or none of them. Units the customer's cart already holds
+     * for a product are taken over first, so only the difference is reserved. Until the
+     * order exists the checkout's units are held under the customer's cart holder.
+     */
+    public void reserveAll(Integer customerId, int[] productIds, int[] quantities) {
+        String holder = StockLedger.cartHolder(customerId);
+        List<Integer> done = new ArrayList<>(productIds.length);
+        try {
+            for (int i = 0; i < productIds.length; i++) {
+                int held = customerId != null ? cartReservationService.claim(customerId, productIds[i]) : 0;
+                int missing = quantities[i] - held;
+                if (missing < 0) {
+                    stockLedger.release(productIds[i], -missing, holder);
+                } else if (missing > 0 && !stockLedger.reserve(productIds[i], missing, holder)) {
+                    if (held > 0) {
+                        stockLedger.release(productIds[i], held, holder);
+                    }
+                    throw new InsufficientStockException(productIds[i]);
+                }
+                done.add(i);
+            }
+        } catch (RuntimeException e) {
+            for (int i : done) {
+                stockLedger.release(productIds[i], quantities[i], holder);
+            }
+            throw e;
+        }
+    }
+
+    public void releaseAll(Integer customerId, int[] productIds, int[] quantities) {
+        String holder = StockLedger.cartHolder(customerId);
+        for (int i = 0; i < productIds.length; i++) {
+            stockLedger.release(productIds[i], quantities[i], holder);
+        }
+    }
+
+    // Move a checkout's reserved rows from the customer's cart holder to the saved order
+    public void assignToOrder(Integer customerId, Integer orderId, int[] productIds, int[] quantities) {
+        String from = StockLedger.cartHolder(customerId);
+        String to = StockLedger.orderHolder(orderId);
+        for (int i = 0; i < productIds.length; i++) {
+            stockLedger.transfer(productIds[i], quantities[i], from, to);
+        }
+    }
+
+    // Move reserved stock along with the order once the status change has committed
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        String from = normalise(event.getPreviousStatus());
+        String to = normalise(event.getNewStatus());
+        if (from.equals(to)) {
+            return;
+        }
+        try {
+            boolean holding = HOLDING.contains(from);
+            String holder = StockLedger.orderHolder(event.getOrderId());
+            if (holding && CONSUMED.contains(to)) {
+                forEachLine(event.getOrderId(), (productId, qty) -> stockLedger.fulfil(productId, qty, holder));
+            } else if (holding && CANCELLED.contains(to)) {
+                forEachLine(event.getOrderId(), (productId, qty) -> stockLedger.release(productId, qty, holder));
+            } else if (CANCELLED.contains(from) && HOLDING.contains(to)) {
+                // Best effort: a reinstated order takes whatever stock is still there
+                forEachLine(event.getOrderId(), (productId, qty) -> {
+                    if (!stockLedger.reserve(productId, qty, holder)) {
+                        System.err.println("Could not re-reserve product " + productId + " for order " + event.getOrderId());
+                    }
+                });
+            }
+        } catch (Exception e) {
+            System.err.println("Stock update failed for order " + event.getOrderId() + ": " + e.getMessage());
+        }
+    }
+
+    private void forEachLine(Integer orderId, java.util.function.BiConsumer<Integer, Integer> action) {
+        for (Object[] line : orderItemRepository.findQuantitiesByOrderId(orderId)) {
+            Integer productId = (Integer) line[0];
+            Integer quantity = (Integer) line[1];
+            if (productId != null && quantity != null && quantity > 0) {
+                action.accept(productId, quantity);
+            }
+        }
+    }
+
+    private static String normalise(String status) {
+        return status == null ? "" : status.trim().toLowerCase();
+    }
 }
@@ -0,0 +1,60 @@
+package com.example.assignment_three_zelora.model.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Flags reviews carrying more than max-links links, or any of the configured keywords.
+ */
+@Component
+public class LinkKeywordHeuristic implements ReviewHeuristic {
+
+    private static final Pattern LINK = Pattern.compile(
+            "(?i)\\b(?:https?://|www\\.)\\S+|\\b[a-z0-9-]+\\.(?:com|net|org|io|biz|info|xyz|top|shop|ru|cn)\\b");
+
+    private final int maxLinks;
+    private final List<String> keywords = new ArrayList<>();
+
+    public LinkKeywordHeuristic(@Value("${zelora.reviews.moderation.max-links:0}") int maxLinks,
+                                @Value("${zelora.reviews.moderation.keywords:}") String keywords) {
+        this.maxLinks = Math.max(0, maxLinks);
+        for (String keyword : keywords.split(",")) {
+            if (!keyword.isBlank()) {
+                this.keywords.add(keyword.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "links-keywords";
+    }
+
+    @Override
+    public String check(ReviewModerationService.Candidate review) {
+        if (review.text == null || review.text.isEmpty()) {
+            return null;
+        }
+        int links = 0;
+        Matcher matcher = LINK.matcher(review.text);
+        while (matcher.find()) {
+            links++;
+        }
+        if (links > maxLinks) {
+            return links + " link(s)";
+        }
+        String lower = review.text.toLowerCase(Locale.ROOT);
+        for (String keyword : keywords) {
+            if (lower.contains(keyword)) {
+                return "keyword \"" + keyword + "\"";
+            }
+        }
+        return null;
+    }
+}
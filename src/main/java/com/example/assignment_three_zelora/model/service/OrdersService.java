@@ -1,7 +1,207 @@
 package com.example.assignment_three_zelora.model.service;
 
+import com.example.assignment_three_zelora.dto.KeysetPage;
+import com.example.assignment_three_zelora.dto.OrderSummaryDto;
+import com.example.assignment_three_zelora.event.OrderStatusChangedEvent;
+import com.example.assignment_three_zelora.model.entitys.Orders;
+import com.example.assignment_three_zelora.model.repos.OrdersRepository;
+import com.example.assignment_three_zelora.service.OptimisticRetry;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Consumer;
 
 @Service
 public class OrdersService {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    public static final int BULK_STATUS_CHUNK_SIZE = 500;
+    public static final int BULK_STATUS_MAX_IDS = 10000;
+
+    // Target status -> statuses an order may move from
+    private static final Map<String, List<String>> ALLOWED_TRANSITIONS = Map.of(
+            "Processing", List.of("Pending"),
+            "Shipped", List.of("Pending", "Processing"),
+            "Delivered", List.of("Shipped"),
+            "Cancelled", List.of("Pending", "Processing")
+    );
+
+    private final OrdersRepository ordersRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final OptimisticRetry optimisticRetry;
+
+    public OrdersService(OrdersRepository ordersRepository,
+                         ApplicationEventPublisher eventPublisher,
+                         PlatformTransactionManager transactionManager,
+                         OptimisticRetry optimisticRetry) {
+        this.ordersRepository = ordersRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.optimisticRetry = optimisticRetry;
+    }
+
+    // Apply a change to one order, re-reading and re-applying it if another writer got there first;
+    // empty if the order does not exist. A status change is published once the write has landed.
+    public Optional<Orders> updateOrder(Integer orderId, Consumer<Orders> change) {
+        String[] previousStatus = new String[1];
+        Orders savedOrder = optimisticRetry.execute("Orders", () -> {
+            Optional<Orders> orderOpt = ordersRepository.findById(orderId);
+            if (orderOpt.isEmpty()) {
+                return null;
+            }
+            Orders order = orderOpt.get();
+            previousStatus[0] = order.getOrderStatus();
+            change.accept(order);
+            return ordersRepository.save(order);
+        });
+        if (savedOrder == null) {
+            return Optional.empty();
+        }
+        if (!Objects.equals(previousStatus[0], savedOrder.getOrderStatus())) {
+            eventPublisher.publishEvent(new OrderStatusChangedEvent(
+                    savedOrder.getOrderId(), savedOrder.getCustomerIdValue(), previousStatus[0], savedOrder.getOrderStatus()));
+        }
+        return Optional.of(savedOrder);
+    }
+
+    // Get one order with its line items and products
+    @Transactional(readOnly = true)
+    public Optional<Orders> getFullOrder(Integer orderId) {
+        return ordersRepository.findFullById(orderId);
+    }
+
+    // Get a page of order summaries, optionally scoped to one customer
+    @Transactional(readOnly = true)
+    public KeysetPage<OrderSummaryDto> getOrderSummaries(Integer customerId, String status,
+                                                         LocalDate from, LocalDate to,
+                                                         String cursor, Integer size) {
+        int pageSize = clampPageSize(size);
+        Integer beforeId = parseCursor(cursor);
+        Date fromDate = from != null ? java.sql.Date.valueOf(from) : null;
+        Date toDate = to != null ? java.sql.Date.valueOf(to) : null;
+        String statusFilter = status != null && !status.isBlank() ? status : null;
+
+        // Fetch one extra row to know whether another page exists
+        Limit limit = Limit.of(pageSize + 1);
+        List<OrderSummaryDto> rows = customerId != null
+                ? ordersRepository.findSummariesByCustomer(customerId, statusFilter, fromDate, toDate, beforeId, limit)
+                : ordersRepository.findSummaries(statusFilter, fromDate, toDate, beforeId, limit);
+
+        boolean hasMore = rows.size() > pageSize;
+        List<OrderSummaryDto> items = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasMore ? String.valueOf(items.get(items.size() - 1).getOrderId()) : null;
+        return new KeysetPage<>(items, nextCursor, hasMore);
+    }
+
+    // Move many orders to one status with set-based updates, one transaction per chunk
+    public Map<String, Object> bulkUpdateStatus(List<Integer> orderIds, String targetStatus) {
+        if (orderIds == null || orderIds.isEmpty()) {
+            throw new IllegalArgumentException("orderIds is required");
+        }
+        if (orderIds.size() > BULK_STATUS_MAX_IDS) {
+            throw new IllegalArgumentException("At most " + BULK_STATUS_MAX_IDS + " orders can be updated at once");
+        }
+        String target = canonicalStatus(targetStatus);
+        List<String> fromStatuses = ALLOWED_TRANSITIONS.get(target);
+        if (fromStatuses == null) {
+            throw new IllegalArgumentException("Unsupported target status: " + targetStatus);
+        }
+
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(orderIds));
+        List<Map<String, Object>> results = new ArrayList<>(ids.size());
+        int updated = 0;
+
+        for (int start = 0; start < ids.size(); start += BULK_STATUS_CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(start, Math.min(start + BULK_STATUS_CHUNK_SIZE, ids.size()));
+            List<Map<String, Object>> chunkResults = transactionTemplate.execute(tx -> applyStatusChunk(chunk, target, fromStatuses));
+            for (Map<String, Object> result : chunkResults) {
+                if ("UPDATED".equals(result.get("result"))) {
+                    updated++;
+                }
+            }
+            results.addAll(chunkResults);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("status", target);
+        response.put("requested", ids.size());
+        response.put("updated", updated);
+        response.put("results", results);
+        return response;
+    }
+
+    private List<Map<String, Object>> applyStatusChunk(List<Integer> chunk, String target, List<String> fromStatuses) {
+        // Row locks make the snapshot below exactly what the UPDATE will see
+        Map<Integer, Object[]> current = new HashMap<>();
+        for (Object[] row : ordersRepository.lockStatusesByIds(chunk)) {
+            current.put(((Number) row[0]).intValue(), row);
+        }
+        ordersRepository.updateStatusWhereAllowed(chunk, target, fromStatuses);
+
+        List<Map<String, Object>> results = new ArrayList<>(chunk.size());
+        for (Integer id : chunk) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("orderId", id);
+            Object[] row = current.get(id);
+            if (row == null) {
+                result.put("result", "NOT_FOUND");
+                results.add(result);
+                continue;
+            }
+            Integer customerId = row[1] != null ? ((Number) row[1]).intValue() : null;
+            String previousStatus = (String) row[2];
+            result.put("previousStatus", previousStatus);
+
+            if (target.equalsIgnoreCase(previousStatus)) {
+                result.put("result", "UNCHANGED");
+            } else if (previousStatus != null && fromStatuses.stream().anyMatch(previousStatus::equalsIgnoreCase)) {
+                result.put("result", "UPDATED");
+                // Delivered to @TransactionalEventListener listeners once this chunk commits
+                eventPublisher.publishEvent(new OrderStatusChangedEvent(id, customerId, previousStatus, target));
+            } else {
+                result.put("result", "INVALID_TRANSITION");
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    private String canonicalStatus(String status) {
+        if (status == null || status.isBlank()) {
+            throw new IllegalArgumentException("status is required");
+        }
+        for (String known : ALLOWED_TRANSITIONS.keySet()) {
+            if (known.equalsIgnoreCase(status.trim())) {
+                return known;
+            }
+        }
+        return status.trim();
+    }
+
+    private int clampPageSize(Integer size) {
+        if (size == null || size <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    private Integer parseCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
 }
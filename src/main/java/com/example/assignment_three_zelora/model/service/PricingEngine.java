@@ -0,0 +1,157 @@
+package com.example.assignment_three_zelora.model.service;
+
+import com.example.assignment_three_zelora.dto.CheckoutQuoteDto;
+import com.example.assignment_three_zelora.dto.QuoteRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes line, shipping and order totals from catalog prices.
+ * All arithmetic is in integer cents; BigDecimal only appears in the returned DTO.
+ */
+@Service
+public class PricingEngine {
+
+    public static final int MAX_LINES = 500;
+
+    // Standard: 4.99 for the first kg, 1.00 per started kg after that, free from 100.00
+    private static final long STANDARD_BASE_MINOR = 499;
+    private static final long STANDARD_PER_KG_MINOR = 100;
+    private static final long FREE_STANDARD_FROM_MINOR = 10000;
+
+    // Express: 9.99 for the first kg, 1.50 per started kg after that
+    private static final long EXPRESS_BASE_MINOR = 999;
+    private static final long EXPRESS_PER_KG_MINOR = 150;
+
+    private final ProductPriceCache priceCache;
+
+    public PricingEngine(ProductPriceCache priceCache) {
+        this.priceCache = priceCache;
+    }
+
+    // Price a basket with a single batch price lookup
+    public Quote quote(List<QuoteRequest.Line> items, String shippingMethod) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("At least one item is required");
+        }
+        if (items.size() > MAX_LINES) {
+            throw new IllegalArgumentException("A basket can have at most " + MAX_LINES + " lines");
+        }
+
+        List<Integer> ids = new ArrayList<>(items.size());
+        for (QuoteRequest.Line item : items) {
+            if (item.getProductId() == null) {
+                throw new IllegalArgumentException("Every item needs a productId");
+            }
+            if (item.getQuantity() == null || item.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive for product " + item.getProductId());
+            }
+            ids.add(item.getProductId());
+        }
+        Map<Integer, ProductPriceCache.PriceEntry> prices = priceCache.getPrices(ids);
+
+        int n = items.size();
+        int[] productIds = new int[n];
+        int[] quantities = new int[n];
+        long[] unitMinor = new long[n];
+        long[] lineMinor = new long[n];
+        int[] weightGrams = new int[n];
+        int[] measuredGrams = new int[n];
+        long subtotal = 0;
+        long totalWeight = 0;
+
+        for (int i = 0; i < n; i++) {
+            QuoteRequest.Line item = items.get(i);
+            ProductPriceCache.PriceEntry price = prices.get(item.getProductId());
+            if (price == null) {
+                throw new IllegalArgumentException("Product not found: " + item.getProductId());
+            }
+            productIds[i] = price.productId;
+            quantities[i] = item.getQuantity();
+            unitMinor[i] = price.effectiveMinor();
+            weightGrams[i] = price.weightGrams;
+            measuredGrams[i] = price.measuredGrams;
+        }
+
+        String method = shippingMethod != null && !shippingMethod.isBlank() ? shippingMethod : "Standard";
+        // Absurd quantities overflow a long; that is a bad request, not a server error
+        try {
+            for (int i = 0; i < n; i++) {
+                lineMinor[i] = Math.multiplyExact(unitMinor[i], (long) quantities[i]);
+                subtotal = Math.addExact(subtotal, lineMinor[i]);
+                totalWeight = Math.addExact(totalWeight, Math.multiplyExact((long) weightGrams[i], (long) quantities[i]));
+            }
+            long shipping = shippingMinor(method, subtotal, totalWeight);
+            return new Quote(productIds, quantities, unitMinor, lineMinor, weightGrams, measuredGrams,
+                    subtotal, shipping, Math.addExact(subtotal, shipping), totalWeight, method);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Basket total is too large to price");
+        }
+    }
+
+    static long shippingMinor(String method, long subtotalMinor, long weightGrams) {
+        boolean express = method.toLowerCase().contains("express");
+        long extraKg = weightGrams > 1000 ? (weightGrams - 1000 + 999) / 1000 : 0;
+        if (express) {
+            return Math.addExact(EXPRESS_BASE_MINOR, Math.multiplyExact(extraKg, EXPRESS_PER_KG_MINOR));
+        }
+        if (subtotalMinor >= FREE_STANDARD_FROM_MINOR) {
+            return 0;
+        }
+        return Math.addExact(STANDARD_BASE_MINOR, Math.multiplyExact(extraKg, STANDARD_PER_KG_MINOR));
+    }
+
+    /**
+     * A priced basket in cents. Arrays are indexed by basket line.
+     */
+    public static final class Quote {
+        public final int[] productIds;
+        public final int[] quantities;
+        public final long[] unitMinor;
+        public final long[] lineMinor;
+        public final int[] weightGrams;
+        // -1 where the product has no measured weight and weightGrams is the default
+        public final int[] measuredGrams;
+        public final long subtotalMinor;
+        public final long shippingMinor;
+        public final long totalMinor;
+        public final long totalWeightGrams;
+        public final String shippingMethod;
+
+        Quote(int[] productIds, int[] quantities, long[] unitMinor, long[] lineMinor, int[] weightGrams,
+              int[] measuredGrams, long subtotalMinor, long shippingMinor, long totalMinor, long totalWeightGrams, String shippingMethod) {
+            this.productIds = productIds;
+            this.quantities = quantities;
+            this.unitMinor = unitMinor;
+            this.lineMinor = lineMinor;
+            this.weightGrams = weightGrams;
+            this.measuredGrams = measuredGrams;
+            this.subtotalMinor = subtotalMinor;
+            this.shippingMinor = shippingMinor;
+            this.totalMinor = totalMinor;
+            this.totalWeightGrams = totalWeightGrams;
+            this.shippingMethod = shippingMethod;
+        }
+
+        public int size() {
+            return productIds.length;
+        }
+
+        public CheckoutQuoteDto toDto() {
+            List<CheckoutQuoteDto.Line> lines = new ArrayList<>(productIds.length);
+            for (int i = 0; i < productIds.length; i++) {
+                lines.add(new CheckoutQuoteDto.Line(productIds[i], quantities[i],
+                        ProductPriceCache.fromMinor(unitMinor[i]), ProductPriceCache.fromMinor(lineMinor[i]),
+                        weightGrams[i]));
+            }
+            return new CheckoutQuoteDto(lines,
+                    ProductPriceCache.fromMinor(subtotalMinor),
+                    ProductPriceCache.fromMinor(shippingMinor),
+                    ProductPriceCache.fromMinor(totalMinor),
+                    totalWeightGrams, shippingMethod);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.assignment_three_zelora.model.service;
+
+import com.example.assignment_three_zelora.model.repos.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory table of effective product prices in integer minor units (cents).
+ * Misses are resolved with a single batch query; entries are evicted on product
+ * writes and refreshed after a short TTL so admin price edits show up quickly.
+ * Expired entries are swept on a schedule and the table holds at most max-entries
+ * products; once full, further lookups are answered without being cached.
+ * Weights come from the product's own weight column, seeded once from order history.
+ */
+@Service
+public class ProductPriceCache {
+
+    private static final long TTL_MS = 5 * 60 * 1000L;
+
+    // Used when a product has no measured weight
+    public static final int DEFAULT_WEIGHT_GRAMS = 500;
+
+    private final ProductRepository productRepository;
+    private final int maxEntries;
+    private final Map<Integer, PriceEntry> entries = new ConcurrentHashMap<>();
+
+    public ProductPriceCache(ProductRepository productRepository,
+                             @Value("${zelora.pricing.cache.max-entries:50000}") int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("zelora.pricing.cache.max-entries must be at least 1");
+        }
+        this.productRepository = productRepository;
+        this.maxEntries = maxEntries;
+    }
+
+    // Look up many products at once; products that do not exist are absent from the result
+    public Map<Integer, PriceEntry> getPrices(Collection<Integer> productIds) {
+        Map<Integer, PriceEntry> result = new HashMap<>(productIds.size() * 2);
+        List<Integer> missing = null;
+        long now = System.currentTimeMillis();
+
+        for (Integer id : productIds) {
+            if (id == null || result.containsKey(id)) {
+                continue;
+            }
+            PriceEntry entry = entries.get(id);
+            if (entry != null && now - entry.loadedAt < TTL_MS) {
+                result.put(id, entry);
+            } else {
+                if (missing == null) {
+                    missing = new ArrayList<>();
+                }
+                missing.add(id);
+            }
+        }
+
+        if (missing != null) {
+            for (Object[] row : productRepository.findPriceRows(missing)) {
+                PriceEntry entry = new PriceEntry(
+                        (Integer) row[0],
+                        toMinor((BigDecimal) row[1]),
+                        row[2] != null ? toMinor((BigDecimal) row[2]) : -1,
+                        row[3] != null ? toGrams(((Number) row[3]).doubleValue()) : -1,
+                        now);
+                if (entries.size() < maxEntries || entries.containsKey(entry.productId)) {
+                    entries.put(entry.productId, entry);
+                }
+                result.put(entry.productId, entry);
+            }
+        }
+        return result;
+    }
+
+    public PriceEntry getPrice(Integer productId) {
+        return getPrices(List.of(productId)).get(productId);
+    }
+
+    // Give products without a weight the average their past order items recorded, before checkouts start
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillWeights() {
+        int updated = productRepository.backfillWeightsFromOrderHistory();
+        if (updated > 0) {
+            System.err.println("Seeded weights of " + updated + " products from order history");
+        }
+        entries.clear();
+    }
+
+    // Call after any write to a product's price or weight
+    public void evict(Integer productId) {
+        if (productId != null) {
+            entries.remove(productId);
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    // Drop entries past their TTL, so products nobody looks at again do not stay resident
+    @Scheduled(fixedDelay = TTL_MS)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> now - entry.loadedAt >= TTL_MS);
+    }
+
+    public static long toMinor(BigDecimal amount) {
+        if (amount == null) {
+            return 0;
+        }
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal fromMinor(long minor) {
+        return BigDecimal.valueOf(minor, 2);
+    }
+
+    private static int toGrams(double kilograms) {
+        return (int) Math.round(kilograms * 1000);
+    }
+
+    /**
+     * Immutable price snapshot for one product. discountedMinor is -1 when there is no discount,
+     * and measuredGrams is -1 when the product has no measured weight.
+     */
+    public static final class PriceEntry {
+        public final int productId;
+        public final long priceMinor;
+        public final long discountedMinor;
+        public final int measuredGrams;
+        // What shipping is charged on: the measured weight, or the default
+        public final int weightGrams;
+        private final long loadedAt;
+
+        PriceEntry(int productId, long priceMinor, long discountedMinor, int measuredGrams, long loadedAt) {
+            this.productId = productId;
+            this.priceMinor = priceMinor;
+            this.discountedMinor = discountedMinor;
+            this.measuredGrams = measuredGrams;
+            this.weightGrams = measuredGrams >= 0 ? measuredGrams : DEFAULT_WEIGHT_GRAMS;
+            this.loadedAt = loadedAt;
+        }
+
+        // The price a customer actually pays
+        public long effectiveMinor() {
+            if (discountedMinor >= 0 && discountedMinor < priceMinor) {
+                return discountedMinor;
+            }
+            return priceMinor;
+        }
+    }
+}
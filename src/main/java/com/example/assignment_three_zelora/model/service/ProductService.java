@@ -10,14 +10,18 @@ import java.util.List;
 public class ProductService {
 
     private final ProductRepository productRepository;
+    private final ProductPriceCache productPriceCache;
 
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository, ProductPriceCache productPriceCache) {
         this.productRepository = productRepository;
+        this.productPriceCache = productPriceCache;
     }
 
     //create
     public Product createProduct(Product product) {
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        productPriceCache.evict(saved.getProductId());
+        return saved;
     }
 
     //Get all
@@ -36,11 +40,14 @@ public class ProductService {
             return null;
         }
         updatedProduct.setProductId(id);
-        return productRepository.save(updatedProduct);
+        Product saved = productRepository.save(updatedProduct);
+        productPriceCache.evict(id);
+        return saved;
     }
 
     //Delete by id
     public void deleteProduct(Integer id) {
         productRepository.deleteById(id);
+        productPriceCache.evict(id);
     }
 }
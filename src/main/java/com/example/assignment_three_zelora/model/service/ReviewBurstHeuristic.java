@@ -0,0 +1,70 @@
+package com.example.assignment_three_zelora.model.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Flags a customer's reviews once they submit more than burst-max within burst-window-minutes.
+ * Only live submissions count; reviews picked up by the catch-up scan have no submit time.
+ */
+@Component
+public class ReviewBurstHeuristic implements ReviewHeuristic {
+
+    // Drop idle customers every this many checks
+    private static final int PRUNE_EVERY = 1024;
+
+    private final int maxInWindow;
+    private final long windowMs;
+
+    // customerId -> submit times inside the window, oldest first; only touched inside compute()
+    private final ConcurrentHashMap<Integer, ArrayDeque<Long>> recent = new ConcurrentHashMap<>();
+    private final AtomicInteger checks = new AtomicInteger();
+
+    public ReviewBurstHeuristic(@Value("${zelora.reviews.moderation.burst-max:5}") int maxInWindow,
+                                @Value("${zelora.reviews.moderation.burst-window-minutes:10}") int windowMinutes) {
+        this.maxInWindow = Math.max(1, maxInWindow);
+        this.windowMs = Math.max(1, windowMinutes) * 60_000L;
+    }
+
+    @Override
+    public String getName() {
+        return "burst";
+    }
+
+    @Override
+    public String check(ReviewModerationService.Candidate review) {
+        if (review.customerId == null || review.submittedAt <= 0) {
+            return null;
+        }
+        if (checks.incrementAndGet() % PRUNE_EVERY == 0) {
+            prune(System.currentTimeMillis() - windowMs);
+        }
+        long cutoff = review.submittedAt - windowMs;
+        int[] count = {0};
+        recent.compute(review.customerId, (id, times) -> {
+            if (times == null) {
+                times = new ArrayDeque<>();
+            }
+            while (!times.isEmpty() && times.peekFirst() <= cutoff) {
+                times.pollFirst();
+            }
+            times.addLast(review.submittedAt);
+            count[0] = times.size();
+            return times;
+        });
+        if (count[0] > maxInWindow) {
+            return count[0] + " reviews in " + (windowMs / 60_000L) + " minutes";
+        }
+        return null;
+    }
+
+    private void prune(long cutoff) {
+        for (Integer customerId : recent.keySet()) {
+            recent.computeIfPresent(customerId, (id, times) -> times.isEmpty() || times.peekLast() <= cutoff ? null : times);
+        }
+    }
+}
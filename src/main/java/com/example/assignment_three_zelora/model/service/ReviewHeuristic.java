@@ -0,0 +1,15 @@
+package com.example.assignment_three_zelora.model.service;
+
+/**
+ * One automatic spam check run by ReviewModerationService.
+ * Every heuristic bean sees every review, from several worker threads at once,
+ * so implementations must be thread-safe and must not touch the database.
+ */
+public interface ReviewHeuristic {
+
+    // Short name used in the moderation stats
+    String getName();
+
+    // Why the review looks like spam, or null if it passes this check
+    String check(ReviewModerationService.Candidate review);
+}
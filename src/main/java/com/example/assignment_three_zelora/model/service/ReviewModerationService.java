@@ -0,0 +1,382 @@
+package com.example.assignment_three_zelora.model.service;
+
+import com.example.assignment_three_zelora.event.ReviewsModeratedEvent;
+import com.example.assignment_three_zelora.model.entitys.Review;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Automatic spam moderation, kept off the review submit path.
+ * createReview only enqueues the new review. A bounded pool of workers (one per core by
+ * default) runs every ReviewHeuristic bean on it, and a single writer applies the verdicts
+ * in batches: one UPDATE sets moderated_at and flags the spam, then a ReviewsModeratedEvent
+ * refreshes the affected rating aggregates. When the queue is full a review is simply left
+ * with moderated_at NULL; the catch-up scan enqueues such reviews once there is room, which
+ * also covers reviews submitted before a restart. Reviews written before moderation existed
+ * also start with moderated_at NULL; the first catch-up marks them moderated as they are,
+ * once, instead of running the heuristics over the whole history.
+ */
+@Service
+public class ReviewModerationService {
+
+    // An earlier run already moderated something, so any NULL left is a real backlog
+    private static final String MODERATED_BEFORE_SQL =
+            "SELECT COUNT(*) FROM (SELECT 1 FROM reviews WHERE moderated_at < ? LIMIT 1) m";
+
+    private static final String BACKFILL_SQL =
+            "UPDATE reviews SET moderated_at = ? WHERE moderated_at IS NULL LIMIT ?";
+
+    private static final String UNMODERATED_SQL =
+            "SELECT review_id, product_id, customer_id, rating, review_text FROM reviews " +
+            "WHERE moderated_at IS NULL ORDER BY review_id LIMIT ?";
+
+    private final List<ReviewHeuristic> heuristics;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int workers;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final long lingerMs;
+
+    private final ThreadPoolExecutor executor;
+    private final LinkedBlockingQueue<Verdict> verdicts = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean historyMarked;
+    private final Timestamp startedAt = new Timestamp(System.currentTimeMillis());
+
+    // Reviews queued, being checked or waiting to be written; keeps the catch-up scan from enqueueing twice
+    private final Set<Integer> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder caughtUp = new LongAdder();
+    private final LongAdder historyBackfilled = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+    private final LongAdder moderated = new LongAdder();
+    private final LongAdder flagged = new LongAdder();
+    private final LongAdder heuristicErrors = new LongAdder();
+    private final LongAdder writeBatches = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    private final LongAdder queueLagNanos = new LongAdder();
+    private final LongAccumulator maxQueueLagNanos = new LongAccumulator(Long::max, 0);
+    private final LongAdder endToEndNanos = new LongAdder();
+    private final LongAccumulator maxEndToEndNanos = new LongAccumulator(Long::max, 0);
+    private final Map<String, LongAdder> flaggedBy = new ConcurrentHashMap<>();
+    private final AtomicInteger lastBatchSize = new AtomicInteger();
+
+    /**
+     * What the heuristics see of a review. submittedAt is 0 for reviews found by the catch-up scan.
+     */
+    public static final class Candidate {
+        public final int reviewId;
+        public final Integer productId;
+        public final Integer customerId;
+        public final Integer rating;
+        public final String text;
+        public final long submittedAt;
+
+        public Candidate(int reviewId, Integer productId, Integer customerId, Integer rating,
+                         String text, long submittedAt) {
+            this.reviewId = reviewId;
+            this.productId = productId;
+            this.customerId = customerId;
+            this.rating = rating;
+            this.text = text;
+            this.submittedAt = submittedAt;
+        }
+    }
+
+    private static final class Verdict {
+        final Candidate review;
+        final String reason;
+        final long enqueuedNanos;
+
+        Verdict(Candidate review, String reason, long enqueuedNanos) {
+            this.review = review;
+            this.reason = reason;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    private final class Task implements Runnable {
+        final Candidate review;
+        final long enqueuedNanos = System.nanoTime();
+
+        Task(Candidate review) {
+            this.review = review;
+        }
+
+        @Override
+        public void run() {
+            long lag = System.nanoTime() - enqueuedNanos;
+            queueLagNanos.add(lag);
+            maxQueueLagNanos.accumulate(lag);
+
+            // Every heuristic runs, since some of them learn from each review they see
+            String reason = null;
+            for (ReviewHeuristic heuristic : heuristics) {
+                String why;
+                try {
+                    why = heuristic.check(review);
+                } catch (RuntimeException e) {
+                    heuristicErrors.increment();
+                    System.err.println("Review heuristic " + heuristic.getName() + " failed on review "
+                            + review.reviewId + ": " + e.getMessage());
+                    continue;
+                }
+                if (why != null && reason == null) {
+                    reason = heuristic.getName() + ": " + why;
+                    flaggedBy.computeIfAbsent(heuristic.getName(), n -> new LongAdder()).increment();
+                }
+            }
+            verdicts.add(new Verdict(review, reason, enqueuedNanos));
+        }
+    }
+
+    public ReviewModerationService(List<ReviewHeuristic> heuristics,
+                                   JdbcTemplate jdbcTemplate,
+                                   ApplicationEventPublisher eventPublisher,
+                                   @Value("${zelora.reviews.moderation.workers:0}") int workers,
+                                   @Value("${zelora.reviews.moderation.queue-capacity:10000}") int queueCapacity,
+                                   @Value("${zelora.reviews.moderation.batch-size:200}") int batchSize,
+                                   @Value("${zelora.reviews.moderation.linger-ms:50}") long lingerMs) {
+        if (queueCapacity < 1 || batchSize < 1 || batchSize > 1000) {
+            throw new IllegalArgumentException("Review moderation needs queue-capacity >= 1 and 1 <= batch-size <= 1000");
+        }
+        this.heuristics = List.copyOf(heuristics);
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.workers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.lingerMs = Math.max(0, lingerMs);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.workers, this.workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "review-moderation-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.writer = new Thread(this::writeLoop, "review-moderation-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // Queue a just-saved review; never blocks the caller
+    public boolean submit(Review review) {
+        Candidate candidate = new Candidate(review.getReviewId(),
+                review.getProductId() != null ? review.getProductId().getProductId() : null,
+                review.getCustomerId() != null ? review.getCustomerId().getCustomerId() : null,
+                review.getRating(), review.getReviewText(), System.currentTimeMillis());
+        submitted.increment();
+        return enqueue(candidate);
+    }
+
+    // Pick up reviews that were never moderated: queue overflow, or submitted before a restart
+    @Scheduled(fixedDelayString = "${zelora.reviews.moderation.catch-up-ms:60000}")
+    public void catchUp() {
+        int room = (queueCapacity - executor.getQueue().size()) / 2;
+        if (!running || room < 1) {
+            return;
+        }
+        try {
+            if (!historyMarked) {
+                markHistoryModerated();
+            }
+            List<Candidate> found = jdbcTemplate.query(UNMODERATED_SQL, (rs, i) -> new Candidate(
+                    rs.getInt(1), (Integer) rs.getObject(2), (Integer) rs.getObject(3),
+                    (Integer) rs.getObject(4), rs.getString(5), 0L), room + inFlight.size());
+            for (Candidate candidate : found) {
+                if (!inFlight.contains(candidate.reviewId) && enqueue(candidate)) {
+                    caughtUp.increment();
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Review moderation catch-up failed: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long done = moderated.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workers", workers);
+        stats.put("heuristics", heuristics.stream().map(ReviewHeuristic::getName).toList());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("queueDepth", executor.getQueue().size());
+        stats.put("activeWorkers", executor.getActiveCount());
+        stats.put("pendingWrites", verdicts.size());
+        stats.put("inFlight", inFlight.size());
+        stats.put("oldestQueuedMs", oldestQueuedMs());
+        stats.put("submitted", submitted.sum());
+        stats.put("caughtUp", caughtUp.sum());
+        stats.put("historyBackfilled", historyBackfilled.sum());
+        stats.put("overflowed", overflowed.sum());
+        stats.put("moderated", done);
+        stats.put("flagged", flagged.sum());
+        Map<String, Long> byHeuristic = new TreeMap<>();
+        flaggedBy.forEach((name, count) -> byHeuristic.put(name, count.sum()));
+        stats.put("flaggedByHeuristic", byHeuristic);
+        stats.put("heuristicErrors", heuristicErrors.sum());
+        stats.put("writeBatches", writeBatches.sum());
+        stats.put("writeFailures", writeFailures.sum());
+        stats.put("lastBatchSize", lastBatchSize.get());
+        // Queue lag: enqueue until a worker starts; end to end: enqueue until the verdict is written
+        stats.put("avgQueueLagMs", done > 0 ? queueLagNanos.sum() / done / 1_000_000.0 : 0.0);
+        stats.put("maxQueueLagMs", maxQueueLagNanos.get() / 1_000_000.0);
+        stats.put("avgEndToEndMs", done > 0 ? endToEndNanos.sum() / done / 1_000_000.0 : 0.0);
+        stats.put("maxEndToEndMs", maxEndToEndNanos.get() / 1_000_000.0);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        executor.shutdownNow();
+        writer.interrupt();
+    }
+
+    /**
+     * Runs before the first catch-up scan. If no review was moderated before this process
+     * started, the moderated_at column is new and every review in the table predates
+     * moderation: stamp them all, a chunk at a time, so the scan does not moderate (and the
+     * duplicate heuristic does not flag) years of history. After that first deployment
+     * it only checks.
+     */
+    private void markHistoryModerated() {
+        Integer moderatedBefore = jdbcTemplate.queryForObject(MODERATED_BEFORE_SQL, Integer.class, startedAt);
+        if (moderatedBefore == null || moderatedBefore == 0) {
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            int updated;
+            do {
+                updated = jdbcTemplate.update(BACKFILL_SQL, now, batchSize);
+                historyBackfilled.add(updated);
+            } while (updated > 0);
+            if (historyBackfilled.sum() > 0) {
+                System.err.println("Marked " + historyBackfilled.sum() + " pre-existing reviews as moderated");
+            }
+        }
+        historyMarked = true;
+    }
+
+    private boolean enqueue(Candidate candidate) {
+        if (!running || !inFlight.add(candidate.reviewId)) {
+            return false;
+        }
+        try {
+            executor.execute(new Task(candidate));
+            return true;
+        } catch (RejectedExecutionException e) {
+            // Left unmoderated; the catch-up scan retries once the queue drains
+            inFlight.remove(candidate.reviewId);
+            overflowed.increment();
+            return false;
+        }
+    }
+
+    private double oldestQueuedMs() {
+        Runnable head = executor.getQueue().peek();
+        if (head instanceof Task) {
+            return (System.nanoTime() - ((Task) head).enqueuedNanos) / 1_000_000.0;
+        }
+        return 0.0;
+    }
+
+    private void writeLoop() {
+        List<Verdict> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(verdicts.take());
+                // Give a burst a moment to fill the batch, so it costs one UPDATE rather than many
+                long deadline = System.nanoTime() + lingerMs * 1_000_000L;
+                while (batch.size() < batchSize) {
+                    verdicts.drainTo(batch, batchSize - batch.size());
+                    long left = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || left <= 0) {
+                        break;
+                    }
+                    Verdict next = verdicts.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                // Rows keep moderated_at NULL, so the catch-up scan will retry them
+                writeFailures.increment();
+                System.err.println("Review moderation write failed for " + batch.size() + " reviews: " + e.getMessage());
+            } finally {
+                for (Verdict verdict : batch) {
+                    inFlight.remove(verdict.review.reviewId);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Verdict> batch) {
+        List<Object> args = new ArrayList<>(batch.size() * 2 + 1);
+        args.add(new Timestamp(System.currentTimeMillis()));
+        List<Integer> flaggedIds = new ArrayList<>();
+        Set<Integer> productIds = new TreeSet<>();
+        for (Verdict verdict : batch) {
+            if (verdict.reason != null) {
+                flaggedIds.add(verdict.review.reviewId);
+                if (verdict.review.productId != null) {
+                    productIds.add(verdict.review.productId);
+                }
+            }
+        }
+        String sql;
+        if (flaggedIds.isEmpty()) {
+            sql = "UPDATE reviews SET moderated_at = ? WHERE review_id IN " + placeholders(batch.size());
+        } else {
+            // Only ever sets the flag, so an admin's manual flag is never undone
+            sql = "UPDATE reviews SET moderated_at = ?, flagged_as_spam = CASE WHEN review_id IN "
+                    + placeholders(flaggedIds.size()) + " THEN TRUE ELSE flagged_as_spam END "
+                    + "WHERE review_id IN " + placeholders(batch.size());
+            args.addAll(flaggedIds);
+        }
+        for (Verdict verdict : batch) {
+            args.add(verdict.review.reviewId);
+        }
+        jdbcTemplate.update(sql, args.toArray());
+
+        long now = System.nanoTime();
+        for (Verdict verdict : batch) {
+            long lag = now - verdict.enqueuedNanos;
+            endToEndNanos.add(lag);
+            maxEndToEndNanos.accumulate(lag);
+        }
+        moderated.add(batch.size());
+        flagged.add(flaggedIds.size());
+        writeBatches.increment();
+        lastBatchSize.set(batch.size());
+
+        if (!flaggedIds.isEmpty()) {
+            eventPublisher.publishEvent(new ReviewsModeratedEvent(productIds, flaggedIds, List.of(), batch.size()));
+        }
+    }
+
+    private static String placeholders(int n) {
+        StringJoiner joiner = new StringJoiner(", ", "(", ")");
+        for (int i = 0; i < n; i++) {
+            joiner.add("?");
+        }
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.assignment_three_zelora.model.service;
+
+import com.example.assignment_three_zelora.event.ReviewsModeratedEvent;
+import com.example.assignment_three_zelora.model.repos.ReviewRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Average rating and review count per product, counting non-spam reviews only.
+ * Loaded on first use with one aggregate query and dropped whenever a review is
+ * created, deleted or moderated, so the next read reloads it.
+ */
+@Service
+public class ReviewRatingCache {
+
+    private final ReviewRepository reviewRepository;
+    private final ConcurrentHashMap<Integer, Aggregate> aggregates = new ConcurrentHashMap<>();
+
+    /**
+     * One product's aggregate.
+     */
+    public static final class Aggregate {
+        private final long ratingSum;
+        private final long ratedCount;
+        private final long reviewCount;
+
+        Aggregate(long ratingSum, long ratedCount, long reviewCount) {
+            this.ratingSum = ratingSum;
+            this.ratedCount = ratedCount;
+            this.reviewCount = reviewCount;
+        }
+
+        // Unrounded average over reviews that have a rating; 0 when there are none
+        public double getAverageRating() {
+            return ratedCount > 0 ? ratingSum / (double) ratedCount : 0.0;
+        }
+
+        public long getReviewCount() {
+            return reviewCount;
+        }
+    }
+
+    public ReviewRatingCache(ReviewRepository reviewRepository) {
+        this.reviewRepository = reviewRepository;
+    }
+
+    public Aggregate get(Integer productId) {
+        return aggregates.computeIfAbsent(productId, this::load);
+    }
+
+    public void invalidate(Integer productId) {
+        if (productId != null) {
+            aggregates.remove(productId);
+        }
+    }
+
+    // Moderation flagged or deleted reviews of these products, so their averages changed
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReviewsModerated(ReviewsModeratedEvent event) {
+        for (Integer productId : event.getProductIds()) {
+            invalidate(productId);
+        }
+    }
+
+    private Aggregate load(Integer productId) {
+        List<Object[]> rows = reviewRepository.getRatingAggregateByProductId(productId);
+        if (rows.isEmpty()) {
+            return new Aggregate(0, 0, 0);
+        }
+        Object[] row = rows.get(0);
+        return new Aggregate(((Number) row[0]).longValue(), ((Number) row[1]).longValue(), ((Number) row[2]).longValue());
+    }
+}
@@ -0,0 +1,515 @@
+package com.example.assignment_three_zelora.model.service;
+
+import com.example.assignment_three_zelora.dto.ReviewSearchHitDto;
+import com.example.assignment_three_zelora.event.ReviewsModeratedEvent;
+import com.example.assignment_three_zelora.model.entitys.Review;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory positional inverted index over review text, behind /reviews/search.
+ * Terms are lower-case letter/digit runs; each posting keeps the token positions, so
+ * quoted phrases ("runs small") match only adjacent words. Review text is kept alongside
+ * for snippets. The index is rebuilt at startup from id ranges loaded in parallel, each
+ * range merged under a short write lock, and kept current from review writes and
+ * moderation. Searches take the read lock and never touch the database.
+ */
+@Service
+public class ReviewSearchIndex {
+
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+    public static final int MAX_QUERY_TERMS = 10;
+
+    // Characters of context kept either side of the first match in a snippet
+    private static final int SNIPPET_CONTEXT = 80;
+
+    private static final Pattern QUERY_PART = Pattern.compile("\"([^\"]*)\"|(\\S+)");
+
+    private static final String RANGE_SQL =
+            "SELECT review_id, product_id, rating, flagged_as_spam, review_text FROM reviews " +
+            "WHERE review_id >= ? AND review_id < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int rebuildThreads;
+    private final int rebuildChunk;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Guarded by lock
+    private final Map<Integer, Doc> docs = new HashMap<>();
+    private final Map<String, Map<Integer, int[]>> postings = new HashMap<>();
+    private long postingCount;
+    // Removals and flags that arrive while a rebuild is still merging older rows; null otherwise
+    private Set<Integer> removedDuringBuild;
+    private Set<Integer> flaggedDuringBuild;
+
+    private volatile boolean ready;
+    private volatile boolean building;
+    private volatile long lastBuildMs;
+    private volatile long lastBuildDocs;
+    private volatile String lastBuildError;
+    private volatile Thread rebuilder;
+
+    /**
+     * One indexed review. flagged is guarded by the index lock.
+     */
+    private static final class Doc {
+        final int reviewId;
+        final Integer productId;
+        final Integer rating;
+        final String text;
+        boolean flagged;
+
+        Doc(int reviewId, Integer productId, Integer rating, String text, boolean flagged) {
+            this.reviewId = reviewId;
+            this.productId = productId;
+            this.rating = rating;
+            this.text = text != null ? text : "";
+            this.flagged = flagged;
+        }
+    }
+
+    // A document and its term positions, tokenized outside the lock
+    private static final class Prepared {
+        final Doc doc;
+        final Map<String, int[]> terms;
+
+        Prepared(Doc doc) {
+            this.doc = doc;
+            this.terms = termPositions(doc.text);
+        }
+    }
+
+    // A matching document plus the token position and length of every match
+    private static final class Match {
+        final Doc doc;
+        final boolean flagged;
+        final List<int[]> occurrences = new ArrayList<>();
+
+        Match(Doc doc) {
+            this.doc = doc;
+            this.flagged = doc.flagged;
+        }
+    }
+
+    public ReviewSearchIndex(JdbcTemplate jdbcTemplate,
+                             @Value("${zelora.reviews.search.rebuild-threads:0}") int rebuildThreads,
+                             @Value("${zelora.reviews.search.rebuild-chunk:5000}") int rebuildChunk) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.rebuildThreads = rebuildThreads > 0 ? rebuildThreads : Runtime.getRuntime().availableProcessors();
+        this.rebuildChunk = Math.max(100, rebuildChunk);
+    }
+
+    // Build in the background once the schema is up; searches before then see whatever is merged so far
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread t = new Thread(this::rebuild, "review-search-rebuild");
+        t.setDaemon(true);
+        rebuilder = t;
+        t.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Thread t = rebuilder;
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    // Index a newly saved review
+    public void add(Review review) {
+        Prepared prepared = new Prepared(new Doc(review.getReviewId(),
+                review.getProductId() != null ? review.getProductId().getProductId() : null,
+                review.getRating(), review.getReviewText(), Boolean.TRUE.equals(review.getFlaggedAsSpam())));
+        lock.writeLock().lock();
+        try {
+            removeLocked(prepared.doc.reviewId);
+            insertLocked(prepared);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Integer reviewId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(reviewId);
+            if (removedDuringBuild != null) {
+                removedDuringBuild.add(reviewId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void markFlagged(Collection<Integer> reviewIds) {
+        lock.writeLock().lock();
+        try {
+            for (Integer id : reviewIds) {
+                Doc doc = docs.get(id);
+                if (doc != null) {
+                    doc.flagged = true;
+                }
+            }
+            if (flaggedDuringBuild != null) {
+                flaggedDuringBuild.addAll(reviewIds);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Moderation flags and deletions show up in search results straight away
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReviewsModerated(ReviewsModeratedEvent event) {
+        if (!event.getFlaggedReviewIds().isEmpty()) {
+            markFlagged(event.getFlaggedReviewIds());
+        }
+        for (Integer reviewId : event.getDeletedReviewIds()) {
+            remove(reviewId);
+        }
+    }
+
+    // Reviews containing every word and quoted phrase of the query, best matches first
+    public Map<String, Object> search(String query, Integer productId, boolean includeSpam, Integer limit) {
+        List<List<String>> clauses = parseQuery(query);
+        int max = limit == null || limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+
+        List<Match> matches = collectMatches(clauses, productId, includeSpam);
+        matches.sort(Comparator.comparingInt((Match m) -> m.occurrences.size()).reversed()
+                .thenComparing(m -> m.doc.reviewId, Comparator.reverseOrder()));
+        List<ReviewSearchHitDto> hits = new ArrayList<>(Math.min(max, matches.size()));
+        for (Match match : matches.subList(0, Math.min(max, matches.size()))) {
+            hits.add(toHit(match));
+        }
+        return response(query, productId, matches.size(), hits);
+    }
+
+    // Ids of every review, spam included, that the same query would match
+    public Set<Integer> matchingIds(String query) {
+        Set<Integer> ids = new TreeSet<>();
+        for (Match match : collectMatches(parseQuery(query), null, true)) {
+            ids.add(match.doc.reviewId);
+        }
+        return ids;
+    }
+
+    public boolean isComplete() {
+        return ready;
+    }
+
+    private List<Match> collectMatches(List<List<String>> clauses, Integer productId, boolean includeSpam) {
+        List<Match> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            List<List<Map<Integer, int[]>>> clausePostings = new ArrayList<>(clauses.size());
+            Map<Integer, int[]> smallest = null;
+            for (List<String> clause : clauses) {
+                List<Map<Integer, int[]>> lists = new ArrayList<>(clause.size());
+                for (String term : clause) {
+                    Map<Integer, int[]> list = postings.get(term);
+                    if (list == null) {
+                        return matches;
+                    }
+                    lists.add(list);
+                    if (smallest == null || list.size() < smallest.size()) {
+                        smallest = list;
+                    }
+                }
+                clausePostings.add(lists);
+            }
+
+            // Walk the rarest term's documents and check every clause against each
+            for (Integer id : smallest.keySet()) {
+                Doc doc = docs.get(id);
+                if (doc == null || (productId != null && !productId.equals(doc.productId))
+                        || (!includeSpam && doc.flagged)) {
+                    continue;
+                }
+                Match match = new Match(doc);
+                for (List<Map<Integer, int[]>> lists : clausePostings) {
+                    int found = phraseOccurrences(lists, id, match.occurrences);
+                    if (found == 0) {
+                        match = null;
+                        break;
+                    }
+                }
+                if (match != null) {
+                    matches.add(match);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return matches;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("documents", docs.size());
+            stats.put("terms", postings.size());
+            stats.put("postings", postingCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+        stats.put("ready", ready);
+        stats.put("building", building);
+        stats.put("rebuildThreads", rebuildThreads);
+        stats.put("lastBuildMs", lastBuildMs);
+        stats.put("lastBuildDocuments", lastBuildDocs);
+        stats.put("lastBuildError", lastBuildError);
+        return stats;
+    }
+
+    private void rebuild() {
+        long started = System.currentTimeMillis();
+        building = true;
+        lock.writeLock().lock();
+        try {
+            removedDuringBuild = new HashSet<>();
+            flaggedDuringBuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(rebuildThreads, r -> {
+            Thread t = new Thread(r, "review-search-rebuild-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            long[] bounds = jdbcTemplate.queryForObject("SELECT MIN(review_id), MAX(review_id) FROM reviews",
+                    (rs, i) -> new long[]{rs.getLong(1), rs.getLong(2), rs.wasNull() ? 1 : 0});
+            long loaded = 0;
+            if (bounds[2] == 0) {
+                List<Future<Integer>> ranges = new ArrayList<>();
+                for (long from = bounds[0]; from <= bounds[1]; from += rebuildChunk) {
+                    long lo = from;
+                    long hi = Math.min(from + rebuildChunk, bounds[1] + 1);
+                    ranges.add(pool.submit(() -> loadRange(lo, hi)));
+                }
+                for (Future<Integer> range : ranges) {
+                    loaded += range.get();
+                }
+            }
+            lastBuildDocs = loaded;
+            lastBuildMs = System.currentTimeMillis() - started;
+            lastBuildError = null;
+            ready = true;
+            System.err.println("Review search index built: " + loaded + " reviews in " + lastBuildMs + "ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            lastBuildError = e.getMessage();
+            System.err.println("Review search index rebuild failed: " + e.getMessage());
+        } finally {
+            pool.shutdownNow();
+            lock.writeLock().lock();
+            try {
+                removedDuringBuild = null;
+                flaggedDuringBuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            building = false;
+        }
+    }
+
+    // Load and tokenize one id range without the lock, then merge it in one short write
+    private int loadRange(long lo, long hi) {
+        List<Prepared> batch = new ArrayList<>();
+        jdbcTemplate.query(RANGE_SQL, rs -> {
+            batch.add(new Prepared(new Doc(rs.getInt(1), (Integer) rs.getObject(2), (Integer) rs.getObject(3),
+                    rs.getString(5), rs.getBoolean(4))));
+        }, lo, hi);
+        lock.writeLock().lock();
+        try {
+            for (Prepared prepared : batch) {
+                int id = prepared.doc.reviewId;
+                // Anything already indexed was written after this range was read
+                if (docs.containsKey(id) || (removedDuringBuild != null && removedDuringBuild.contains(id))) {
+                    continue;
+                }
+                if (flaggedDuringBuild != null && flaggedDuringBuild.contains(id)) {
+                    prepared.doc.flagged = true;
+                }
+                insertLocked(prepared);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return batch.size();
+    }
+
+    private void insertLocked(Prepared prepared) {
+        int id = prepared.doc.reviewId;
+        docs.put(id, prepared.doc);
+        for (Map.Entry<String, int[]> term : prepared.terms.entrySet()) {
+            postings.computeIfAbsent(term.getKey(), t -> new HashMap<>()).put(id, term.getValue());
+        }
+        postingCount += prepared.terms.size();
+    }
+
+    private void removeLocked(Integer reviewId) {
+        Doc doc = docs.remove(reviewId);
+        if (doc == null) {
+            return;
+        }
+        for (String term : termPositions(doc.text).keySet()) {
+            Map<Integer, int[]> list = postings.get(term);
+            if (list != null && list.remove(reviewId) != null) {
+                postingCount--;
+                if (list.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    // Adds {position, length} for every place the phrase occurs in the document; returns how many
+    private static int phraseOccurrences(List<Map<Integer, int[]>> lists, Integer id, List<int[]> out) {
+        int[] first = lists.get(0).get(id);
+        if (first == null) {
+            return 0;
+        }
+        int found = 0;
+        for (int start : first) {
+            boolean match = true;
+            for (int i = 1; i < lists.size() && match; i++) {
+                int[] positions = lists.get(i).get(id);
+                match = positions != null && Arrays.binarySearch(positions, start + i) >= 0;
+            }
+            if (match) {
+                out.add(new int[]{start, lists.size()});
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private ReviewSearchHitDto toHit(Match match) {
+        String text = match.doc.text;
+        List<int[]> spans = tokenSpans(text);
+        List<int[]> chars = new ArrayList<>(match.occurrences.size());
+        for (int[] occurrence : match.occurrences) {
+            int[] firstToken = spans.get(occurrence[0]);
+            int[] lastToken = spans.get(occurrence[0] + occurrence[1] - 1);
+            chars.add(new int[]{firstToken[0], lastToken[1]});
+        }
+        chars.sort(Comparator.comparingInt(c -> c[0]));
+
+        // A window around the first match, widened to whole words
+        int[] anchor = chars.get(0);
+        int from = Math.max(0, anchor[0] - SNIPPET_CONTEXT);
+        int to = Math.min(text.length(), anchor[1] + SNIPPET_CONTEXT);
+        while (from > 0 && from < anchor[0] && !Character.isWhitespace(text.charAt(from - 1))) {
+            from++;
+        }
+        while (to < text.length() && to > anchor[1] && !Character.isWhitespace(text.charAt(to))) {
+            to--;
+        }
+        String prefix = from > 0 ? "…" : "";
+        String suffix = to < text.length() ? "…" : "";
+        // Same-length whitespace swap keeps the offsets valid
+        String snippet = prefix + text.substring(from, to).replace('\n', ' ').replace('\r', ' ').replace('\t', ' ') + suffix;
+
+        List<int[]> highlights = new ArrayList<>();
+        int lastEnd = -1;
+        for (int[] c : chars) {
+            if (c[0] >= from && c[1] <= to && c[0] >= lastEnd) {
+                highlights.add(new int[]{c[0] - from + prefix.length(), c[1] - from + prefix.length()});
+                lastEnd = c[1];
+            }
+        }
+        return new ReviewSearchHitDto(match.doc.reviewId, match.doc.productId, match.doc.rating, match.flagged,
+                match.occurrences.size(), snippet, highlights);
+    }
+
+    private Map<String, Object> response(String query, Integer productId, int total, List<ReviewSearchHitDto> hits) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("query", query);
+        response.put("productId", productId);
+        // False while the startup rebuild is still merging, so older reviews may be missing
+        response.put("complete", ready);
+        response.put("total", total);
+        response.put("hits", hits);
+        return response;
+    }
+
+    // Each quoted part is one phrase; each bare word is its own clause ("well-made" is the phrase well made)
+    private static List<List<String>> parseQuery(String query) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("q is required");
+        }
+        List<List<String>> clauses = new ArrayList<>();
+        int terms = 0;
+        Matcher matcher = QUERY_PART.matcher(query);
+        while (matcher.find()) {
+            String part = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+            List<String> clause = new ArrayList<>();
+            for (int[] span : tokenSpans(part)) {
+                clause.add(term(part, span));
+            }
+            if (!clause.isEmpty()) {
+                clauses.add(clause);
+                terms += clause.size();
+            }
+        }
+        if (clauses.isEmpty()) {
+            throw new IllegalArgumentException("q must contain at least one word");
+        }
+        if (terms > MAX_QUERY_TERMS) {
+            throw new IllegalArgumentException("q can contain at most " + MAX_QUERY_TERMS + " words");
+        }
+        return clauses;
+    }
+
+    // Term -> ascending token positions
+    private static Map<String, int[]> termPositions(String text) {
+        List<int[]> spans = tokenSpans(text);
+        Map<String, List<Integer>> positions = new HashMap<>();
+        for (int i = 0; i < spans.size(); i++) {
+            positions.computeIfAbsent(term(text, spans.get(i)), t -> new ArrayList<>()).add(i);
+        }
+        Map<String, int[]> terms = new HashMap<>(positions.size() * 2);
+        for (Map.Entry<String, List<Integer>> e : positions.entrySet()) {
+            terms.put(e.getKey(), e.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        return terms;
+    }
+
+    // [start, end) of every letter/digit run, in the original text's offsets
+    private static List<int[]> tokenSpans(String text) {
+        List<int[]> spans = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                spans.add(new int[]{start, i});
+                start = -1;
+            }
+        }
+        return spans;
+    }
+
+    private static String term(String text, int[] span) {
+        return text.substring(span[0], span[1]).toLowerCase(Locale.ROOT);
+    }
+}
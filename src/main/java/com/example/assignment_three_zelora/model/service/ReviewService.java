@@ -1,7 +1,323 @@
 package com.example.assignment_three_zelora.model.service;
 
+import com.example.assignment_three_zelora.dto.KeysetPage;
+import com.example.assignment_three_zelora.dto.ReviewDto;
+import com.example.assignment_three_zelora.event.ReviewsModeratedEvent;
+import com.example.assignment_three_zelora.model.repos.ReviewRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.*;
 
 @Service
 public class ReviewService {
+
+    public static final int DEFAULT_PAGE_SIZE = 10;
+    public static final int MAX_PAGE_SIZE = 50;
+
+    // Reviews below this rating are not shown on product pages (as per assignment requirement)
+    public static final int MIN_VISIBLE_RATING = 3;
+
+    public static final String SORT_DATE = "date";
+    public static final String SORT_RATING = "rating";
+    public static final String SORT_HELPFUL = "helpful";
+
+    public static final String ACTION_FLAG = "flag";
+    public static final String ACTION_DELETE = "delete";
+
+    public static final int BULK_MODERATION_CHUNK_SIZE = 500;
+    public static final int BULK_MODERATION_MAX_IDS = 10000;
+
+    // Cursor key for reviews without a date
+    private static final String NO_DATE = "none";
+
+    private final ReviewRepository reviewRepository;
+    private final ReviewSearchIndex reviewSearchIndex;
+    private final ReviewRatingCache reviewRatingCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    public ReviewService(ReviewRepository reviewRepository,
+                         ReviewSearchIndex reviewSearchIndex,
+                         ReviewRatingCache reviewRatingCache,
+                         ApplicationEventPublisher eventPublisher,
+                         PlatformTransactionManager transactionManager) {
+        this.reviewRepository = reviewRepository;
+        this.reviewSearchIndex = reviewSearchIndex;
+        this.reviewRatingCache = reviewRatingCache;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Keyset page of a product's visible reviews, projected straight into ReviewDto
+    @Transactional(readOnly = true)
+    public KeysetPage<ReviewDto> getProductReviews(Integer productId, String sort, String cursor, Integer size) {
+        String order = canonicalSort(sort);
+        int pageSize = clampPageSize(size);
+        String[] after = parseCursor(cursor, order);
+        Integer afterId = after != null ? Integer.valueOf(after[1]) : null;
+
+        // Fetch one extra row to know whether another page exists
+        Limit limit = Limit.of(pageSize + 1);
+        List<ReviewDto> rows;
+        switch (order) {
+            case SORT_RATING:
+                rows = reviewRepository.findVisibleByProductTopRated(productId, MIN_VISIBLE_RATING,
+                        after != null ? Integer.valueOf(after[0]) : null, afterId, limit);
+                break;
+            case SORT_HELPFUL:
+                rows = reviewRepository.findVisibleByProductMostHelpful(productId, MIN_VISIBLE_RATING,
+                        after != null ? Integer.valueOf(after[0]) : null, afterId, limit);
+                break;
+            default:
+                Date afterDate = after != null && !NO_DATE.equals(after[0]) ? java.sql.Date.valueOf(after[0]) : null;
+                rows = reviewRepository.findVisibleByProductNewest(productId, MIN_VISIBLE_RATING, afterDate, afterId, limit);
+                break;
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<ReviewDto> items = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasMore ? toCursor(order, items.get(items.size() - 1)) : null;
+        return new KeysetPage<>(items, nextCursor, hasMore);
+    }
+
+    // Number of reviews getProductReviews pages through
+    @Transactional(readOnly = true)
+    public long countProductReviews(Integer productId) {
+        return reviewRepository.countVisibleByProduct(productId, MIN_VISIBLE_RATING);
+    }
+
+    // Add one "helpful" vote; false if the review does not exist
+    @Transactional
+    public boolean markHelpful(Integer reviewId) {
+        return reviewRepository.incrementHelpfulCount(reviewId) > 0;
+    }
+
+    // Flag or delete many reviews, given by id or picked by a filter, with set-based statements one chunk per transaction
+    public Map<String, Object> bulkModerate(String action, List<Integer> reviewIds, Integer customerId,
+                                            LocalDate from, LocalDate to, String textPattern) {
+        String op = canonicalAction(action);
+        boolean byIds = reviewIds != null && !reviewIds.isEmpty();
+        boolean byFilter = customerId != null || from != null || to != null
+                || (textPattern != null && !textPattern.isBlank());
+        if (byIds == byFilter) {
+            throw new IllegalArgumentException("Give either reviewIds or a filter (customerId, from, to, textPattern), not both");
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+
+        List<Integer> ids = byIds
+                ? new ArrayList<>(new LinkedHashSet<>(reviewIds))
+                : findIdsForModeration(customerId, from, to, textPattern);
+        if (ids.size() > BULK_MODERATION_MAX_IDS) {
+            throw new IllegalArgumentException("At most " + BULK_MODERATION_MAX_IDS + " reviews can be moderated at once");
+        }
+
+        boolean delete = ACTION_DELETE.equals(op);
+        String done = delete ? "DELETED" : "FLAGGED";
+        Set<Integer> affectedProducts = new TreeSet<>();
+        List<Map<String, Object>> results = new ArrayList<>(ids.size());
+        int changed = 0;
+
+        for (int start = 0; start < ids.size(); start += BULK_MODERATION_CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(start, Math.min(start + BULK_MODERATION_CHUNK_SIZE, ids.size()));
+            List<Map<String, Object>> chunkResults = transactionTemplate.execute(
+                    tx -> applyModerationChunk(chunk, delete, affectedProducts));
+            for (Map<String, Object> result : chunkResults) {
+                if (done.equals(result.get("result"))) {
+                    changed++;
+                }
+            }
+            results.addAll(chunkResults);
+        }
+
+        // Each chunk's event only dropped cached aggregates; reload every affected product once, now
+        List<Map<String, Object>> products = new ArrayList<>(affectedProducts.size());
+        for (Integer productId : affectedProducts) {
+            ReviewRatingCache.Aggregate rating = reviewRatingCache.get(productId);
+            Map<String, Object> product = new LinkedHashMap<>();
+            product.put("productId", productId);
+            product.put("averageRating", Math.round(rating.getAverageRating() * 10.0) / 10.0);
+            product.put("totalReviews", rating.getReviewCount());
+            products.add(product);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("action", op);
+        response.put("requested", ids.size());
+        response.put(delete ? "deleted" : "flagged", changed);
+        response.put("results", results);
+        response.put("products", products);
+        return response;
+    }
+
+    private List<Map<String, Object>> applyModerationChunk(List<Integer> chunk, boolean delete, Set<Integer> affectedProducts) {
+        // Row locks make the snapshot below exactly what the UPDATE or DELETE will see
+        Map<Integer, Object[]> current = new HashMap<>();
+        for (Object[] row : reviewRepository.lockModerationStateByIds(chunk)) {
+            current.put(((Number) row[0]).intValue(), row);
+        }
+        if (current.isEmpty()) {
+            return notFound(chunk);
+        }
+        if (delete) {
+            reviewRepository.deleteAllByIds(current.keySet());
+        } else {
+            reviewRepository.flagAsSpamByIds(current.keySet());
+        }
+
+        Set<Integer> chunkProducts = new HashSet<>();
+        List<Integer> changedIds = new ArrayList<>();
+        List<Map<String, Object>> results = new ArrayList<>(chunk.size());
+        for (Integer id : chunk) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("reviewId", id);
+            Object[] row = current.get(id);
+            if (row == null) {
+                result.put("result", "NOT_FOUND");
+                results.add(result);
+                continue;
+            }
+            Integer productId = row[1] != null ? ((Number) row[1]).intValue() : null;
+            boolean wasFlagged = isTrue(row[2]);
+            result.put("productId", productId);
+
+            if (!delete && wasFlagged) {
+                result.put("result", "ALREADY_FLAGGED");
+            } else {
+                result.put("result", delete ? "DELETED" : "FLAGGED");
+                changedIds.add(id);
+                // Spam is already left out of the aggregates, so removing it changes nothing there
+                if (!wasFlagged && productId != null) {
+                    chunkProducts.add(productId);
+                }
+            }
+            results.add(result);
+        }
+
+        if (!changedIds.isEmpty()) {
+            // Delivered to the search index and rating cache once this chunk commits
+            eventPublisher.publishEvent(new ReviewsModeratedEvent(chunkProducts,
+                    delete ? List.of() : changedIds, delete ? changedIds : List.of(), changedIds.size()));
+        }
+        affectedProducts.addAll(chunkProducts);
+        return results;
+    }
+
+    // Filter ids from SQL (customer, date range) intersected with the search index's matches for the text pattern
+    private List<Integer> findIdsForModeration(Integer customerId, LocalDate from, LocalDate to, String textPattern) {
+        Set<Integer> textMatches = null;
+        if (textPattern != null && !textPattern.isBlank()) {
+            if (!reviewSearchIndex.isComplete()) {
+                throw new IllegalArgumentException("The review text index is still loading; retry textPattern shortly");
+            }
+            textMatches = reviewSearchIndex.matchingIds(textPattern);
+            if (customerId == null && from == null && to == null) {
+                return new ArrayList<>(textMatches);
+            }
+        }
+
+        // Without a text pattern one row past the cap is enough to reject the request
+        Limit limit = textMatches == null ? Limit.of(BULK_MODERATION_MAX_IDS + 1) : Limit.unlimited();
+        List<Integer> ids = new ArrayList<>(reviewRepository.findIdsForModeration(customerId,
+                from != null ? java.sql.Date.valueOf(from) : null,
+                to != null ? java.sql.Date.valueOf(to) : null, limit));
+        if (textMatches != null) {
+            ids.retainAll(textMatches);
+        }
+        return ids;
+    }
+
+    private List<Map<String, Object>> notFound(List<Integer> chunk) {
+        List<Map<String, Object>> results = new ArrayList<>(chunk.size());
+        for (Integer id : chunk) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("reviewId", id);
+            result.put("result", "NOT_FOUND");
+            results.add(result);
+        }
+        return results;
+    }
+
+    private boolean isTrue(Object value) {
+        if (value instanceof Boolean b) {
+            return b;
+        }
+        return value instanceof Number n && n.intValue() != 0;
+    }
+
+    private String canonicalAction(String action) {
+        if (action == null || action.isBlank()) {
+            throw new IllegalArgumentException("action is required (flag or delete)");
+        }
+        String a = action.trim().toLowerCase(Locale.ROOT);
+        if (!a.equals(ACTION_FLAG) && !a.equals(ACTION_DELETE)) {
+            throw new IllegalArgumentException("Unsupported action: " + action + " (use flag or delete)");
+        }
+        return a;
+    }
+
+    private String canonicalSort(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return SORT_DATE;
+        }
+        String s = sort.trim().toLowerCase(Locale.ROOT);
+        if (!s.equals(SORT_DATE) && !s.equals(SORT_RATING) && !s.equals(SORT_HELPFUL)) {
+            throw new IllegalArgumentException("Unsupported sort: " + sort + " (use date, rating or helpful)");
+        }
+        return s;
+    }
+
+    private int clampPageSize(Integer size) {
+        if (size == null || size <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    // Cursor is "<sort>:<key>:<reviewId>", where key is the sort column of the last review returned
+    private String toCursor(String order, ReviewDto last) {
+        String key;
+        switch (order) {
+            case SORT_RATING:
+                key = String.valueOf(last.getRating());
+                break;
+            case SORT_HELPFUL:
+                key = String.valueOf(last.getHelpfulCount());
+                break;
+            default:
+                key = last.getReviewDate() != null
+                        ? new java.sql.Date(last.getReviewDate().getTime()).toString()
+                        : NO_DATE;
+                break;
+        }
+        return order + ":" + key + ":" + last.getReviewId();
+    }
+
+    private String[] parseCursor(String cursor, String order) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        String[] parts = cursor.split(":");
+        if (parts.length != 3 || !parts[0].equals(order)) {
+            throw new IllegalArgumentException("Invalid cursor for sort " + order + ": " + cursor);
+        }
+        try {
+            Integer.valueOf(parts[2]);
+            if (!order.equals(SORT_DATE)) {
+                Integer.valueOf(parts[1]);
+            } else if (!NO_DATE.equals(parts[1])) {
+                java.sql.Date.valueOf(parts[1]);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return new String[]{parts[1], parts[2]};
+    }
 }
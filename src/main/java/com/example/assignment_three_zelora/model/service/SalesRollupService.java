@@ -0,0 +1,414 @@
+package com.example.assignment_three_zelora.model.service;
+
+import com.example.assignment_three_zelora.event.OrderCreatedEvent;
+import com.example.assignment_three_zelora.event.OrderStatusChangedEvent;
+import com.example.assignment_three_zelora.model.entitys.SalesRollup;
+import com.example.assignment_three_zelora.model.repos.OrdersRepository;
+import com.example.assignment_three_zelora.model.repos.SalesRollupRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Maintains the sales_rollups table for the admin dashboard.
+ * New orders and cancellations are applied incrementally as additive upserts;
+ * the backfill rebuilds whole days in parallel, one day per task, replacing their totals.
+ * While a day is being rebuilt, incremental updates for it are left to the rebuild,
+ * which runs again if any arrived, so no order is counted twice.
+ */
+@Service
+public class SalesRollupService {
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO sales_rollups (granularity, dimension, dimension_id, bucket_start, revenue, order_count, units) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE revenue = revenue + VALUES(revenue), " +
+            "order_count = order_count + VALUES(order_count), units = units + VALUES(units)";
+
+    private static final String REPLACE_SQL =
+            "INSERT INTO sales_rollups (granularity, dimension, dimension_id, bucket_start, revenue, order_count, units) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE revenue = VALUES(revenue), " +
+            "order_count = VALUES(order_count), units = VALUES(units)";
+
+    private final OrdersRepository ordersRepository;
+    private final SalesRollupRepository salesRollupRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int backfillThreads;
+
+    private volatile BackfillStatus backfillStatus;
+    private ExecutorService backfillExecutor;
+
+    // Days being rebuilt -> whether an incremental update for the day was deferred meanwhile
+    private final ConcurrentHashMap<LocalDate, Boolean> rebuildingDays = new ConcurrentHashMap<>();
+    // Incremental updates hold the read lock until they commit, so a day marked under the
+    // write lock is only rebuilt once every earlier update for it is visible
+    private final ReentrantReadWriteLock incrementalLock = new ReentrantReadWriteLock();
+
+    public SalesRollupService(OrdersRepository ordersRepository,
+                              SalesRollupRepository salesRollupRepository,
+                              JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${zelora.rollups.backfill-threads:4}") int backfillThreads) {
+        this.ordersRepository = ordersRepository;
+        this.salesRollupRepository = salesRollupRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        // REQUIRES_NEW: listeners run after the publisher's transaction has already committed
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.backfillThreads = Math.max(1, backfillThreads);
+    }
+
+    // Cancelled orders are excluded from every rollup
+    public static boolean isCountedStatus(String status) {
+        if (status == null) {
+            return true;
+        }
+        String s = status.trim().toLowerCase();
+        return !s.equals("cancelled") && !s.equals("canceled");
+    }
+
+    // Add a newly committed order to its buckets
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderCreated(OrderCreatedEvent event) {
+        applyOrder(event.getOrderId(), true, 1);
+    }
+
+    // Remove an order when it is cancelled, and add it back if it is reinstated
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        boolean wasCounted = isCountedStatus(event.getPreviousStatus());
+        boolean isCounted = isCountedStatus(event.getNewStatus());
+        if (wasCounted == isCounted) {
+            return;
+        }
+        applyOrder(event.getOrderId(), false, isCounted ? 1 : -1);
+    }
+
+    // Read a series straight from the rollups
+    @Transactional(readOnly = true)
+    public Map<String, Object> getSalesSeries(LocalDate from, LocalDate to, String granularity,
+                                              String dimension, Integer dimensionId) {
+        String g = granularity != null ? granularity.toUpperCase() : SalesRollup.DAY;
+        String d = dimension != null ? dimension.toUpperCase() : SalesRollup.ALL;
+        if (!g.equals(SalesRollup.HOUR) && !g.equals(SalesRollup.DAY)) {
+            throw new IllegalArgumentException("granularity must be HOUR or DAY");
+        }
+        if (!d.equals(SalesRollup.ALL) && !d.equals(SalesRollup.PRODUCT) && !d.equals(SalesRollup.CATEGORY)) {
+            throw new IllegalArgumentException("dimension must be ALL, PRODUCT or CATEGORY");
+        }
+        if (!d.equals(SalesRollup.ALL) && dimensionId == null) {
+            throw new IllegalArgumentException("dimensionId is required for " + d);
+        }
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new IllegalArgumentException("from and to are required and from must not be after to");
+        }
+        int id = d.equals(SalesRollup.ALL) ? 0 : dimensionId;
+
+        List<SalesRollup> rows = salesRollupRepository.findSeries(g, d, id,
+                from.atStartOfDay(), to.plusDays(1).atStartOfDay());
+
+        BigDecimal totalRevenue = BigDecimal.ZERO;
+        long totalOrders = 0;
+        long totalUnits = 0;
+        List<Map<String, Object>> points = new ArrayList<>();
+        for (SalesRollup row : rows) {
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("bucketStart", row.getBucketStart());
+            point.put("revenue", row.getRevenue());
+            point.put("orderCount", row.getOrderCount());
+            point.put("units", row.getUnits());
+            points.add(point);
+            totalRevenue = totalRevenue.add(row.getRevenue() != null ? row.getRevenue() : BigDecimal.ZERO);
+            totalOrders += row.getOrderCount() != null ? row.getOrderCount() : 0;
+            totalUnits += row.getUnits() != null ? row.getUnits() : 0;
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("granularity", g);
+        response.put("dimension", d);
+        response.put("dimensionId", id);
+        response.put("from", from);
+        response.put("to", to);
+        response.put("totalRevenue", totalRevenue);
+        response.put("totalOrders", totalOrders);
+        response.put("totalUnits", totalUnits);
+        response.put("points", points);
+        return response;
+    }
+
+    // Rebuild the rollups for a date range, one day per task
+    public synchronized BackfillStatus startBackfill(LocalDate from, LocalDate to) {
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new IllegalArgumentException("from and to are required and from must not be after to");
+        }
+        if (backfillStatus != null && backfillStatus.isRunning()) {
+            throw new IllegalStateException("A backfill is already running");
+        }
+        if (backfillExecutor == null) {
+            backfillExecutor = Executors.newFixedThreadPool(backfillThreads);
+        }
+
+        List<LocalDate> days = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            days.add(day);
+        }
+        BackfillStatus status = new BackfillStatus(from, to, days.size());
+        backfillStatus = status;
+
+        for (LocalDate day : days) {
+            backfillExecutor.execute(() -> {
+                try {
+                    backfillDay(day);
+                } catch (Exception e) {
+                    status.failedDays.add(day.toString());
+                    System.err.println("Sales rollup backfill failed for " + day + ": " + e.getMessage());
+                } finally {
+                    status.daysDone.incrementAndGet();
+                }
+            });
+        }
+        return status;
+    }
+
+    public BackfillStatus getBackfillStatus() {
+        return backfillStatus;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (backfillExecutor != null) {
+            backfillExecutor.shutdownNow();
+        }
+    }
+
+    // Rollup failures must never fail the order write that triggered them
+    private void applyOrder(Integer orderId, boolean skipUncounted, int sign) {
+        incrementalLock.readLock().lock();
+        try {
+            transactionTemplate.executeWithoutResult(tx -> {
+                List<Object[]> lines = ordersRepository.findSalesLinesByOrderId(orderId);
+                Map<RollupKey, RollupTotals> totals = accumulate(lines, skipUncounted);
+                if (!deferToRebuild(totals)) {
+                    upsert(totals, sign, UPSERT_SQL);
+                }
+            });
+        } catch (Exception e) {
+            System.err.println("Sales rollup update failed for order " + orderId + ": " + e.getMessage());
+        } finally {
+            incrementalLock.readLock().unlock();
+        }
+    }
+
+    // True when the order's day is being rebuilt; the rebuild then runs again and picks the order up
+    private boolean deferToRebuild(Map<RollupKey, RollupTotals> totals) {
+        boolean deferred = false;
+        for (RollupKey key : totals.keySet()) {
+            if (key.granularity().equals(SalesRollup.DAY)
+                    && rebuildingDays.computeIfPresent(key.bucketStart().toLocalDate(), (d, dirty) -> true) != null) {
+                deferred = true;
+            }
+        }
+        return deferred;
+    }
+
+    private void backfillDay(LocalDate day) {
+        incrementalLock.writeLock().lock();
+        try {
+            rebuildingDays.put(day, false);
+        } finally {
+            incrementalLock.writeLock().unlock();
+        }
+        try {
+            // Rebuild until no incremental update was deferred to us during the last pass
+            do {
+                transactionTemplate.executeWithoutResult(tx -> rebuildDay(day));
+            } while (!rebuildingDays.remove(day, false) && rebuildingDays.replace(day, true, false));
+        } finally {
+            rebuildingDays.remove(day);
+        }
+    }
+
+    // Delete, read and rewrite the day in one transaction, so the totals come from one snapshot
+    private void rebuildDay(LocalDate day) {
+        salesRollupRepository.deleteRange(day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+        List<Object[]> lines = ordersRepository.findSalesLinesByOrderDate(java.sql.Date.valueOf(day));
+        upsert(accumulate(lines, true), 1, REPLACE_SQL);
+    }
+
+    private void upsert(Map<RollupKey, RollupTotals> totals, int sign, String sql) {
+        if (totals.isEmpty()) {
+            return;
+        }
+        List<Object[]> batch = new ArrayList<>(totals.size());
+        for (Map.Entry<RollupKey, RollupTotals> entry : totals.entrySet()) {
+            RollupKey key = entry.getKey();
+            RollupTotals t = entry.getValue();
+            batch.add(new Object[] {
+                    key.granularity(), key.dimension(), key.dimensionId(), Timestamp.valueOf(key.bucketStart()),
+                    sign > 0 ? t.revenue : t.revenue.negate(), sign * t.orders, sign * t.units
+            });
+        }
+        jdbcTemplate.batchUpdate(sql, batch);
+    }
+
+    /**
+     * Fold flat sales lines (grouped by order) into per-bucket totals for every
+     * granularity and dimension. Each order counts once per product and category.
+     */
+    private Map<RollupKey, RollupTotals> accumulate(List<Object[]> lines, boolean skipUncounted) {
+        Map<RollupKey, RollupTotals> totals = new HashMap<>();
+        int i = 0;
+        while (i < lines.size()) {
+            Integer orderId = (Integer) lines.get(i)[0];
+            int end = i;
+            while (end < lines.size() && orderId.equals(lines.get(end)[0])) {
+                end++;
+            }
+            addOrder(lines.subList(i, end), skipUncounted, totals);
+            i = end;
+        }
+        return totals;
+    }
+
+    private void addOrder(List<Object[]> orderLines, boolean skipUncounted, Map<RollupKey, RollupTotals> totals) {
+        Object[] first = orderLines.get(0);
+        Date placedAt = (Date) first[1];
+        Date orderDate = (Date) first[2];
+        String status = (String) first[3];
+        BigDecimal totalAmount = (BigDecimal) first[4];
+
+        if (skipUncounted && !isCountedStatus(status)) {
+            return;
+        }
+        if (placedAt == null && orderDate == null) {
+            return;
+        }
+        LocalDateTime dayBucket = orderDate != null
+                ? toLocalDateTime(orderDate).truncatedTo(ChronoUnit.DAYS)
+                : toLocalDateTime(placedAt).truncatedTo(ChronoUnit.DAYS);
+        LocalDateTime hourBucket = placedAt != null
+                ? toLocalDateTime(placedAt).truncatedTo(ChronoUnit.HOURS)
+                : dayBucket;
+
+        BigDecimal itemRevenue = BigDecimal.ZERO;
+        long orderUnits = 0;
+        Set<Integer> seenProducts = new HashSet<>();
+        Set<Integer> seenCategories = new HashSet<>();
+
+        for (Object[] line : orderLines) {
+            Integer productId = (Integer) line[5];
+            Integer categoryId = (Integer) line[6];
+            BigDecimal subtotal = line[7] != null ? (BigDecimal) line[7] : BigDecimal.ZERO;
+            long quantity = line[8] != null ? ((Number) line[8]).longValue() : 0;
+
+            itemRevenue = itemRevenue.add(subtotal);
+            orderUnits += quantity;
+
+            if (productId != null) {
+                boolean firstTime = seenProducts.add(productId);
+                add(totals, SalesRollup.PRODUCT, productId, dayBucket, hourBucket, subtotal, firstTime ? 1 : 0, quantity);
+            }
+            if (categoryId != null) {
+                boolean firstTime = seenCategories.add(categoryId);
+                add(totals, SalesRollup.CATEGORY, categoryId, dayBucket, hourBucket, subtotal, firstTime ? 1 : 0, quantity);
+            }
+        }
+
+        BigDecimal orderRevenue = totalAmount != null ? totalAmount : itemRevenue;
+        add(totals, SalesRollup.ALL, 0, dayBucket, hourBucket, orderRevenue, 1, orderUnits);
+    }
+
+    private void add(Map<RollupKey, RollupTotals> totals, String dimension, int dimensionId,
+                     LocalDateTime dayBucket, LocalDateTime hourBucket,
+                     BigDecimal revenue, long orders, long units) {
+        totals.computeIfAbsent(new RollupKey(SalesRollup.DAY, dimension, dimensionId, dayBucket), k -> new RollupTotals())
+                .add(revenue, orders, units);
+        totals.computeIfAbsent(new RollupKey(SalesRollup.HOUR, dimension, dimensionId, hourBucket), k -> new RollupTotals())
+                .add(revenue, orders, units);
+    }
+
+    private static LocalDateTime toLocalDateTime(Date date) {
+        return new Timestamp(date.getTime()).toLocalDateTime();
+    }
+
+    private record RollupKey(String granularity, String dimension, int dimensionId, LocalDateTime bucketStart) {
+    }
+
+    private static class RollupTotals {
+        private BigDecimal revenue = BigDecimal.ZERO;
+        private long orders;
+        private long units;
+
+        void add(BigDecimal revenue, long orders, long units) {
+            this.revenue = this.revenue.add(revenue);
+            this.orders += orders;
+            this.units += units;
+        }
+    }
+
+    /**
+     * Progress of the most recent backfill run.
+     */
+    public static class BackfillStatus {
+        private final LocalDate from;
+        private final LocalDate to;
+        private final int daysTotal;
+        private final AtomicInteger daysDone = new AtomicInteger();
+        private final List<String> failedDays = Collections.synchronizedList(new ArrayList<>());
+        private final Date startedAt = new Date();
+
+        BackfillStatus(LocalDate from, LocalDate to, int daysTotal) {
+            this.from = from;
+            this.to = to;
+            this.daysTotal = daysTotal;
+        }
+
+        public LocalDate getFrom() {
+            return from;
+        }
+
+        public LocalDate getTo() {
+            return to;
+        }
+
+        public int getDaysTotal() {
+            return daysTotal;
+        }
+
+        public int getDaysDone() {
+            return daysDone.get();
+        }
+
+        public List<String> getFailedDays() {
+            return List.copyOf(failedDays);
+        }
+
+        public Date getStartedAt() {
+            return startedAt;
+        }
+
+        public boolean isRunning() {
+            return daysDone.get() < daysTotal;
+        }
+    }
+}
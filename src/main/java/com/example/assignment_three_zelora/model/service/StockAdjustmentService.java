@@ -0,0 +1,219 @@
+package com.example.assignment_three_zelora.model.service;
+
+import com.example.assignment_three_zelora.dto.StockAdjustmentSummaryDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Applies bulk stock deltas from the warehouse system.
+ * Records are read one line at a time, coalesced per inventory row, and written with
+ * chunked JDBC batch updates, one transaction per chunk. Decrements are taken out of the
+ * stock ledger before their chunk is written, each checked against the row's reserved
+ * units in the same step, and handed back if the chunk rolls back; increments are added
+ * once the chunk commits. Either way stock never drops below what is reserved.
+ */
+@Service
+public class StockAdjustmentService {
+
+    public static final int MAX_RECORDS = 100000;
+    public static final int CHUNK_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private static final String ADJUST_SQL =
+            "UPDATE inventory SET quantity_in_stock = COALESCE(quantity_in_stock, 0) + ?, version = version + 1 WHERE inventory_id = ?";
+
+    private final StockLedger stockLedger;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public StockAdjustmentService(StockLedger stockLedger, JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager) {
+        this.stockLedger = stockLedger;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Net delta for one inventory row and the lines that contributed to it.
+     */
+    private static final class Pending {
+        final int inventoryId;
+        long delta;
+        final List<Integer> lines = new ArrayList<>(1);
+
+        Pending(int inventoryId) {
+            this.inventoryId = inventoryId;
+        }
+    }
+
+    // Read JSON lines ({"productId":1,"supplierId":2,"delta":-3}) or CSV (productId,supplierId,delta)
+    public StockAdjustmentSummaryDto apply(BufferedReader reader, boolean csv) throws IOException {
+        long started = System.currentTimeMillis();
+        List<StockAdjustmentSummaryDto.RecordError> errors = new ArrayList<>();
+        int[] failed = {0};
+        Map<Integer, Pending> byRow = new LinkedHashMap<>();
+
+        int lineNo = 0;
+        int received = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || (csv && lineNo == 1 && Character.isLetter(trimmed.charAt(0)))) {
+                continue; // blank line or CSV header
+            }
+            if (++received > MAX_RECORDS) {
+                throw new IllegalArgumentException("At most " + MAX_RECORDS + " records per upload");
+            }
+            try {
+                long[] record = csv ? parseCsv(trimmed) : parseJson(trimmed);
+                Integer productId = (int) record[0];
+                Integer supplierId = record[1] < 0 ? null : (int) record[1];
+                StockLedger.StockCell cell = stockLedger.findCell(productId, supplierId);
+                if (cell == null) {
+                    throw new IllegalArgumentException("No inventory for product " + productId
+                            + (supplierId != null ? " and supplier " + supplierId : ""));
+                }
+                Pending pending = byRow.computeIfAbsent(cell.getInventoryId(), Pending::new);
+                pending.delta += record[2];
+                pending.lines.add(lineNo);
+            } catch (IllegalArgumentException e) {
+                addError(errors, failed, lineNo, e.getMessage());
+            }
+        }
+
+        // Net changes that cannot fit in a row are rejected up front; the reserved bound is checked per chunk
+        List<Pending> rows = new ArrayList<>(byRow.size());
+        for (Pending pending : byRow.values()) {
+            if (pending.delta == 0) {
+                continue;
+            }
+            long after = stockLedger.getCell(pending.inventoryId).getQuantityInStock() + pending.delta;
+            if (pending.delta < Integer.MIN_VALUE || after > Integer.MAX_VALUE) {
+                for (int l : pending.lines) {
+                    addError(errors, failed, l, "Net change " + pending.delta + " would leave inventory "
+                            + pending.inventoryId + " at " + after);
+                }
+                continue;
+            }
+            rows.add(pending);
+        }
+
+        int rowsUpdated = 0;
+        int chunks = 0;
+        for (int from = 0; from < rows.size(); from += CHUNK_SIZE) {
+            List<Pending> chunk = new ArrayList<>(CHUNK_SIZE);
+            for (Pending pending : rows.subList(from, Math.min(from + CHUNK_SIZE, rows.size()))) {
+                // Decrements leave the ledger now, so a reservation cannot land on units about to go
+                if (pending.delta < 0 && !stockLedger.applyAhead(pending.inventoryId, (int) pending.delta)) {
+                    StockLedger.StockCell cell = stockLedger.getCell(pending.inventoryId);
+                    for (int l : pending.lines) {
+                        addError(errors, failed, l, "Net change " + pending.delta + " would leave inventory "
+                                + pending.inventoryId + " below its " + cell.getQuantityReserved() + " reserved units");
+                    }
+                    continue;
+                }
+                chunk.add(pending);
+            }
+            if (chunk.isEmpty()) {
+                continue;
+            }
+            List<Object[]> args = new ArrayList<>(chunk.size());
+            for (Pending pending : chunk) {
+                args.add(new Object[]{pending.delta, pending.inventoryId});
+            }
+            chunks++;
+            try {
+                int[] counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(ADJUST_SQL, args));
+                for (int i = 0; i < chunk.size(); i++) {
+                    Pending pending = chunk.get(i);
+                    if (pending.delta > 0) {
+                        stockLedger.applyCommitted(pending.inventoryId, (int) pending.delta);
+                    }
+                    rowsUpdated += counts != null && counts[i] > 0 ? counts[i] : 0;
+                }
+            } catch (Exception e) {
+                for (Pending pending : chunk) {
+                    if (pending.delta < 0) {
+                        stockLedger.applyCommitted(pending.inventoryId, (int) -pending.delta);
+                    }
+                    for (int l : pending.lines) {
+                        addError(errors, failed, l, "Chunk " + chunks + " rolled back: " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        errors.sort(Comparator.comparingInt(StockAdjustmentSummaryDto.RecordError::getLine));
+        boolean truncated = failed[0] > errors.size();
+        return new StockAdjustmentSummaryDto(received, received - failed[0], failed[0], rowsUpdated, chunks,
+                System.currentTimeMillis() - started, errors, truncated);
+    }
+
+    private long[] parseCsv(String line) {
+        String[] parts = line.split(",", -1);
+        if (parts.length == 2) {
+            return new long[]{parseId(parts[0], "productId"), -1, parseDelta(parts[1])};
+        }
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Expected productId,supplierId,delta");
+        }
+        long supplierId = parts[1].isBlank() ? -1 : parseId(parts[1], "supplierId");
+        return new long[]{parseId(parts[0], "productId"), supplierId, parseDelta(parts[2])};
+    }
+
+    private long[] parseJson(String line) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(line);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed JSON");
+        }
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("Expected a JSON object per line");
+        }
+        JsonNode productId = node.get("productId");
+        JsonNode supplierId = node.get("supplierId");
+        JsonNode delta = node.get("delta");
+        if (productId == null || !productId.canConvertToInt()) {
+            throw new IllegalArgumentException("productId is required");
+        }
+        if (delta == null || !delta.canConvertToInt()) {
+            throw new IllegalArgumentException("delta must be an integer");
+        }
+        long supplier = supplierId == null || supplierId.isNull() ? -1 : supplierId.asInt();
+        return new long[]{productId.asInt(), supplier, delta.asInt()};
+    }
+
+    private static long parseId(String value, String field) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(field + " must be an integer");
+        }
+    }
+
+    private static long parseDelta(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("delta must be an integer");
+        }
+    }
+
+    private static void addError(List<StockAdjustmentSummaryDto.RecordError> errors, int[] failed, int line, String message) {
+        failed[0]++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new StockAdjustmentSummaryDto.RecordError(line, message));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.assignment_three_zelora.model.service;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Order in which a product's supplier rows are drawn from when reserving stock.
+ * Selected with zelora.stock.allocation-policy.
+ */
+public enum StockAllocationPolicy {
+
+    // Fill the lowest inventoryId first, as the app always did with inventories.get(0)
+    PRIMARY_FIRST,
+
+    // Draw from whichever supplier currently has the most available, keeping suppliers level
+    MOST_AVAILABLE,
+
+    // Drain the smallest supplier first so fewer suppliers are left holding odd remainders
+    LEAST_AVAILABLE;
+
+    StockLedger.StockCell[] order(StockLedger.StockCell[] cells) {
+        if (this == PRIMARY_FIRST || cells.length < 2) {
+            return cells;
+        }
+        // Snapshot availability once so the sort sees a consistent key
+        int[] available = new int[cells.length];
+        Integer[] idx = new Integer[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            available[i] = cells[i].getAvailable();
+            idx[i] = i;
+        }
+        Comparator<Integer> byAvailable = Comparator.comparingInt(i -> available[i]);
+        Arrays.sort(idx, this == MOST_AVAILABLE ? byAvailable.reversed() : byAvailable);
+        StockLedger.StockCell[] ordered = new StockLedger.StockCell[cells.length];
+        for (int i = 0; i < idx.length; i++) {
+            ordered[i] = cells[idx[i]];
+        }
+        return ordered;
+    }
+}
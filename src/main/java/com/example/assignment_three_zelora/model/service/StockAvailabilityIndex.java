@@ -0,0 +1,102 @@
+package com.example.assignment_three_zelora.model.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * One bit per product id: set while the product has stock available across all its
+ * suppliers (in stock minus reserved, summed). StockLedger keeps it current on every
+ * change, so "in stock only" filters are a bit test instead of an inventory join.
+ * Bits live in pages of 4096 ids created on first use; reads and writes are lock-free.
+ */
+@Service
+public class StockAvailabilityIndex {
+
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_WORDS = (1 << PAGE_BITS) / 64;
+
+    private final Map<Integer, AtomicLongArray> pages = new ConcurrentHashMap<>();
+    private final AtomicInteger cardinality = new AtomicInteger();
+
+    public boolean isInStock(Integer productId) {
+        if (productId == null || productId < 0) {
+            return false;
+        }
+        AtomicLongArray page = pages.get(productId >>> PAGE_BITS);
+        return page != null && (page.get(wordIndex(productId)) & bit(productId)) != 0;
+    }
+
+    // Number of products currently in stock
+    public int cardinality() {
+        return cardinality.get();
+    }
+
+    void set(int productId, boolean inStock) {
+        if (productId < 0) {
+            return;
+        }
+        AtomicLongArray page = inStock
+                ? pages.computeIfAbsent(productId >>> PAGE_BITS, p -> new AtomicLongArray(PAGE_WORDS))
+                : pages.get(productId >>> PAGE_BITS);
+        if (page == null) {
+            return;
+        }
+        int word = wordIndex(productId);
+        long mask = bit(productId);
+        long before, after;
+        do {
+            before = page.get(word);
+            after = inStock ? before | mask : before & ~mask;
+            if (before == after) {
+                return;
+            }
+        } while (!page.compareAndSet(word, before, after));
+        cardinality.addAndGet(inStock ? 1 : -1);
+    }
+
+    // Up to limit in-stock product ids picked uniformly at random (reservoir sampling)
+    public List<Integer> sample(int limit) {
+        List<Integer> picked = new ArrayList<>(Math.max(0, limit));
+        if (limit <= 0) {
+            return picked;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int seen = 0;
+        for (Map.Entry<Integer, AtomicLongArray> entry : pages.entrySet()) {
+            int base = entry.getKey() << PAGE_BITS;
+            AtomicLongArray page = entry.getValue();
+            for (int w = 0; w < PAGE_WORDS; w++) {
+                long bits = page.get(w);
+                while (bits != 0) {
+                    int productId = base + w * 64 + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    seen++;
+                    if (picked.size() < limit) {
+                        picked.add(productId);
+                    } else {
+                        int slot = random.nextInt(seen);
+                        if (slot < limit) {
+                            picked.set(slot, productId);
+                        }
+                    }
+                }
+            }
+        }
+        return picked;
+    }
+
+    private static int wordIndex(int productId) {
+        return (productId & ((1 << PAGE_BITS) - 1)) >>> 6;
+    }
+
+    private static long bit(int productId) {
+        return 1L << (productId & 63);
+    }
+}
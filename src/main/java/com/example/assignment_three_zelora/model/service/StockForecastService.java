@@ -0,0 +1,249 @@
+package com.example.assignment_three_zelora.model.service;
+
+import com.example.assignment_three_zelora.model.entitys.StockForecast;
+import com.example.assignment_three_zelora.model.repos.StockForecastRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Forecasts per-product sales velocity and suggests reorder points.
+ * Daily unit sales are streamed from orderitems joined to orders (one row per product
+ * and day, never the whole history at once), then each product's series is smoothed
+ * with an exponentially weighted moving average in parallel on a fork/join pool.
+ * Suggested reorder point = velocity * lead time + z * deviation * sqrt(lead time).
+ * Results go to stock_forecasts; the hand-maintained reorder points are left alone.
+ */
+@Service
+public class StockForecastService {
+
+    private static final String DAILY_UNITS_SQL =
+            "SELECT oi.product_id, CAST(COALESCE(o.order_date, o.placed_at) AS DATE) AS sale_day, SUM(oi.quantity) AS units " +
+            "FROM orderitems oi JOIN orders o ON o.order_id = oi.order_id " +
+            "WHERE oi.product_id IS NOT NULL " +
+            "AND COALESCE(o.order_date, o.placed_at) >= ? AND COALESCE(o.order_date, o.placed_at) < ? " +
+            "AND (o.order_status IS NULL OR LOWER(o.order_status) NOT IN ('cancelled', 'canceled')) " +
+            "GROUP BY oi.product_id, CAST(COALESCE(o.order_date, o.placed_at) AS DATE)";
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO stock_forecasts (product_id, daily_velocity, daily_deviation, units_in_window, available_quantity, " +
+            "current_reorder_point, suggested_reorder_point, days_to_stockout, computed_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE daily_velocity = VALUES(daily_velocity), daily_deviation = VALUES(daily_deviation), " +
+            "units_in_window = VALUES(units_in_window), available_quantity = VALUES(available_quantity), " +
+            "current_reorder_point = VALUES(current_reorder_point), suggested_reorder_point = VALUES(suggested_reorder_point), " +
+            "days_to_stockout = VALUES(days_to_stockout), computed_at = VALUES(computed_at)";
+
+    private static final int WRITE_CHUNK = 1000;
+    private static final int SPLIT_THRESHOLD = 256;
+
+    private final StockLedger stockLedger;
+    private final StockForecastRepository stockForecastRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ForkJoinPool pool;
+
+    private final int windowDays;
+    private final double alpha;
+    private final double leadTimeDays;
+    private final double serviceLevelZ;
+
+    private volatile Map<String, Object> lastRun;
+
+    public StockForecastService(StockLedger stockLedger,
+                                StockForecastRepository stockForecastRepository,
+                                JdbcTemplate jdbcTemplate,
+                                DataSource dataSource,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${zelora.forecast.window-days:90}") int windowDays,
+                                @Value("${zelora.forecast.alpha:0.2}") double alpha,
+                                @Value("${zelora.forecast.lead-time-days:7}") double leadTimeDays,
+                                @Value("${zelora.forecast.service-level-z:1.65}") double serviceLevelZ,
+                                @Value("${zelora.forecast.parallelism:4}") int parallelism,
+                                @Value("${zelora.forecast.fetch-size:1000}") int fetchSize) {
+        if (windowDays < 1 || alpha <= 0 || alpha > 1 || leadTimeDays < 0) {
+            throw new IllegalArgumentException("Forecast needs window-days >= 1, 0 < alpha <= 1 and lead-time-days >= 0");
+        }
+        this.stockLedger = stockLedger;
+        this.stockForecastRepository = stockForecastRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        // Separate template so only the forecast read streams (MySQL streams row by row at Integer.MIN_VALUE)
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+        this.windowDays = windowDays;
+        this.alpha = alpha;
+        this.leadTimeDays = leadTimeDays;
+        this.serviceLevelZ = serviceLevelZ;
+    }
+
+    @Scheduled(cron = "${zelora.forecast.cron:0 30 2 * * *}")
+    public void scheduledRun() {
+        try {
+            runForecast();
+        } catch (Exception e) {
+            System.err.println("Stock forecast run failed: " + e.getMessage());
+        }
+    }
+
+    // Recompute every forecast over the trailing window of completed days
+    public synchronized Map<String, Object> runForecast() {
+        long started = System.currentTimeMillis();
+        LocalDateTime runStartedAt = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        LocalDate to = runStartedAt.toLocalDate();
+        LocalDate from = to.minusDays(windowDays);
+
+        // Stream daily buckets into one compact series per product
+        Map<Integer, double[]> series = new HashMap<>();
+        long[] rowsStreamed = {0};
+        streamingJdbcTemplate.query(DAILY_UNITS_SQL, rs -> {
+            rowsStreamed[0]++;
+            int productId = rs.getInt(1);
+            java.sql.Date day = rs.getDate(2);
+            if (day == null) {
+                return;
+            }
+            int index = (int) ChronoUnit.DAYS.between(from, day.toLocalDate());
+            if (index >= 0 && index < windowDays) {
+                series.computeIfAbsent(productId, id -> new double[windowDays])[index] += rs.getLong(3);
+            }
+        }, java.sql.Date.valueOf(from), java.sql.Date.valueOf(to));
+
+        // Every stocked product gets a row, including the ones that did not sell
+        Set<Integer> productIds = new TreeSet<>(series.keySet());
+        for (StockLedger.StockCell cell : stockLedger.getAllCells()) {
+            productIds.add(cell.getProductId());
+        }
+        int[] ids = productIds.stream().mapToInt(Integer::intValue).toArray();
+
+        List<StockForecast> forecasts = pool.invoke(new ForecastTask(ids, 0, ids.length, series, runStartedAt));
+
+        transactionTemplate.executeWithoutResult(tx -> {
+            for (int i = 0; i < forecasts.size(); i += WRITE_CHUNK) {
+                List<Object[]> batch = new ArrayList<>();
+                for (StockForecast f : forecasts.subList(i, Math.min(i + WRITE_CHUNK, forecasts.size()))) {
+                    batch.add(new Object[] {
+                            f.getProductId(), f.getDailyVelocity(), f.getDailyDeviation(), f.getUnitsInWindow(),
+                            f.getAvailableQuantity(), f.getCurrentReorderPoint(), f.getSuggestedReorderPoint(),
+                            f.getDaysToStockout(), Timestamp.valueOf(runStartedAt)
+                    });
+                }
+                jdbcTemplate.batchUpdate(UPSERT_SQL, batch);
+            }
+            stockForecastRepository.deleteOlderThan(runStartedAt);
+        });
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("computedAt", runStartedAt);
+        summary.put("from", from);
+        summary.put("to", to.minusDays(1));
+        summary.put("products", forecasts.size());
+        summary.put("productsWithSales", series.size());
+        summary.put("rowsStreamed", rowsStreamed[0]);
+        summary.put("elapsedMs", System.currentTimeMillis() - started);
+        lastRun = summary;
+        return summary;
+    }
+
+    public Map<String, Object> getLastRun() {
+        return lastRun;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    // Smooth one product's daily series and derive its reorder point and runway
+    StockForecast forecast(int productId, double[] daily, LocalDateTime computedAt) {
+        double level = 0;
+        double variance = 0;
+        long units = 0;
+        if (daily != null) {
+            // Seed with the window mean so a quiet first day does not drag the average down
+            double sum = 0;
+            for (double d : daily) {
+                sum += d;
+            }
+            units = (long) sum;
+            level = sum / daily.length;
+            for (double d : daily) {
+                double diff = d - level;
+                level += alpha * diff;
+                variance = (1 - alpha) * (variance + alpha * diff * diff);
+            }
+        }
+        double deviation = Math.sqrt(variance);
+
+        StockLedger.ProductStock stock = stockLedger.getProduct(productId);
+        int available = stock != null ? Math.max(0, stock.getAvailable()) : 0;
+
+        StockForecast f = new StockForecast();
+        f.setProductId(productId);
+        f.setDailyVelocity(round(level));
+        f.setDailyDeviation(round(deviation));
+        f.setUnitsInWindow(units);
+        f.setAvailableQuantity(available);
+        f.setCurrentReorderPoint(stock != null ? stock.getReorderPoint() : null);
+        f.setSuggestedReorderPoint((int) Math.ceil(level * leadTimeDays + serviceLevelZ * deviation * Math.sqrt(leadTimeDays)));
+        f.setDaysToStockout(level > 0 ? round(available / level) : null);
+        f.setComputedAt(computedAt);
+        return f;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+
+    /**
+     * Splits the product id range in half until it is small enough to compute directly.
+     */
+    private class ForecastTask extends RecursiveTask<List<StockForecast>> {
+        private final int[] ids;
+        private final int from;
+        private final int to;
+        private final Map<Integer, double[]> series;
+        private final LocalDateTime computedAt;
+
+        ForecastTask(int[] ids, int from, int to, Map<Integer, double[]> series, LocalDateTime computedAt) {
+            this.ids = ids;
+            this.from = from;
+            this.to = to;
+            this.series = series;
+            this.computedAt = computedAt;
+        }
+
+        @Override
+        protected List<StockForecast> compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                List<StockForecast> result = new ArrayList<>(to - from);
+                for (int i = from; i < to; i++) {
+                    result.add(forecast(ids[i], series.get(ids[i]), computedAt));
+                }
+                return result;
+            }
+            int mid = (from + to) >>> 1;
+            ForecastTask left = new ForecastTask(ids, from, mid, series, computedAt);
+            left.fork();
+            List<StockForecast> right = new ForecastTask(ids, mid, to, series, computedAt).compute();
+            List<StockForecast> result = left.join();
+            result.addAll(right);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,805 @@
+package com.example.assignment_three_zelora.model.service;
+
+import com.example.assignment_three_zelora.model.entitys.StockJournalCheckpoint;
+import com.example.assignment_three_zelora.model.repos.InventoryRepository;
+import com.example.assignment_three_zelora.model.repos.StockJournalCheckpointRepository;
+import com.example.assignment_three_zelora.service.StockJournal;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * In-memory source of truth for stock levels.
+ * Each inventory row is a cell whose in-stock and reserved counts are packed into one
+ * AtomicLong, so reads and availability checks never lock. A change to a row is a CAS on
+ * that word; the caller then appends it to the local StockJournal and is not answered
+ * until the journal's group commit has fsync'd it, so writers to one hot row share fsyncs
+ * instead of taking turns. If the journal fails, the ledger stops taking changes.
+ * Journaled changes are written behind to the inventory table in coalesced batches.
+ * Reservations are made for a holder (a cart or an order). The rows each holder's units
+ * were taken from are remembered, so releasing or shipping them touches those same rows.
+ * That memory is not persisted: after a restart, and for units reserved before it, rows
+ * are walked in allocation-policy order instead.
+ */
+@Service
+public class StockLedger {
+
+    // Start a new journal segment once the current one passes this size
+    private static final long ROTATE_BYTES = 8L * 1024 * 1024;
+
+    private static final String APPLY_DELTA_SQL =
+            "UPDATE inventory SET quantity_in_stock = COALESCE(quantity_in_stock, 0) + ?, " +
+            "quantity_reserved = COALESCE(quantity_reserved, 0) + ?, version = version + 1 WHERE inventory_id = ?";
+
+    private final InventoryRepository inventoryRepository;
+    private final StockJournalCheckpointRepository checkpointRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Path journalDir;
+    private final StockStatusTracker statusTracker;
+    private final StockAvailabilityIndex availabilityIndex;
+    private final StockAllocationPolicy allocationPolicy;
+
+    private final Map<Integer, ProductStock> products = new ConcurrentHashMap<>();
+    private final Map<Integer, StockCell> rows = new ConcurrentHashMap<>();
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+
+    // Holder and product -> units reserved per inventoryId, most recently taken last
+    private final Map<HoldKey, LinkedHashMap<Integer, Integer>> allocations = new ConcurrentHashMap<>();
+
+    private record HoldKey(String holder, int productId) {
+    }
+
+    // Mutations share the read side; the flusher takes the write side to cut a consistent checkpoint
+    private final ReentrantReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+    private StockJournal journal;
+    private volatile long persistedSeq;
+    // Set when a journal append fails; from then on every change is refused
+    private volatile String stoppedReason;
+
+    /**
+     * Stock for one inventory row (one product/supplier pair).
+     */
+    public static final class StockCell {
+        private final int inventoryId;
+        private final int productId;
+        private final Integer supplierId;
+        private volatile Integer reorderPoint;
+
+        // inStock in the high 32 bits, reserved in the low 32 bits; changed only by CAS
+        private final AtomicLong state;
+
+        // Net change not yet written to the inventory table
+        private final AtomicLong pendingStock = new AtomicLong();
+        private final AtomicLong pendingReserved = new AtomicLong();
+
+        StockCell(int inventoryId, int productId, Integer supplierId, Integer reorderPoint, int inStock, int reserved) {
+            this.inventoryId = inventoryId;
+            this.productId = productId;
+            this.supplierId = supplierId;
+            this.reorderPoint = reorderPoint;
+            this.state = new AtomicLong(pack(inStock, reserved));
+        }
+
+        public int getInventoryId() {
+            return inventoryId;
+        }
+
+        public int getProductId() {
+            return productId;
+        }
+
+        public Integer getSupplierId() {
+            return supplierId;
+        }
+
+        public Integer getReorderPoint() {
+            return reorderPoint;
+        }
+
+        public int getQuantityInStock() {
+            return stockOf(state.get());
+        }
+
+        public int getQuantityReserved() {
+            return reservedOf(state.get());
+        }
+
+        public int getAvailable() {
+            long s = state.get();
+            return stockOf(s) - reservedOf(s);
+        }
+    }
+
+    /**
+     * All inventory rows of one product, ordered by inventoryId, with running totals
+     * across suppliers kept up to date on every journaled change.
+     */
+    public static final class ProductStock {
+        private final int productId;
+        private volatile String productName;
+        private volatile StockCell[] cells;
+
+        // Sum over all cells, packed like StockCell.state
+        private final AtomicLong totals;
+
+        // Last classification, owned by StockStatusTracker (guarded by this product's monitor)
+        String stockStatus;
+
+        ProductStock(int productId, String productName, StockCell[] cells) {
+            this.productId = productId;
+            this.productName = productName;
+            this.cells = cells;
+            int stock = 0;
+            int reserved = 0;
+            for (StockCell cell : cells) {
+                stock += cell.getQuantityInStock();
+                reserved += cell.getQuantityReserved();
+            }
+            this.totals = new AtomicLong(pack(stock, reserved));
+        }
+
+        public int getProductId() {
+            return productId;
+        }
+
+        public String getProductName() {
+            return productName;
+        }
+
+        public List<StockCell> getCells() {
+            return List.of(cells);
+        }
+
+        // The row the rest of the app has always treated as "the" inventory row
+        public StockCell primary() {
+            return cells[0];
+        }
+
+        public int getQuantityInStock() {
+            return stockOf(totals.get());
+        }
+
+        public int getQuantityReserved() {
+            return reservedOf(totals.get());
+        }
+
+        public int getAvailable() {
+            long s = totals.get();
+            return stockOf(s) - reservedOf(s);
+        }
+
+        // Product-level reorder point: the suppliers' reorder points added up, null if none set one
+        public Integer getReorderPoint() {
+            Integer total = null;
+            for (StockCell cell : cells) {
+                Integer point = cell.reorderPoint;
+                if (point != null) {
+                    total = (total == null ? 0 : total) + point;
+                }
+            }
+            return total;
+        }
+    }
+
+    public StockLedger(InventoryRepository inventoryRepository,
+                       StockJournalCheckpointRepository checkpointRepository,
+                       JdbcTemplate jdbcTemplate,
+                       PlatformTransactionManager transactionManager,
+                       StockStatusTracker statusTracker,
+                       StockAvailabilityIndex availabilityIndex,
+                       @Value("${zelora.stock.journal-dir:./data/stock-journal}") String journalDir,
+                       @Value("${zelora.stock.allocation-policy:PRIMARY_FIRST}") StockAllocationPolicy allocationPolicy) {
+        this.inventoryRepository = inventoryRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.journalDir = Paths.get(journalDir);
+        this.statusTracker = statusTracker;
+        this.availabilityIndex = availabilityIndex;
+        this.allocationPolicy = allocationPolicy;
+    }
+
+    // Replay anything journaled but not yet written, then load the ledger from the table
+    @PostConstruct
+    public void start() throws IOException {
+        long checkpoint = transactionTemplate.execute(status ->
+                checkpointRepository.findById(StockJournalCheckpoint.SINGLETON_ID)
+                        .orElseGet(() -> checkpointRepository.save(
+                                new StockJournalCheckpoint(StockJournalCheckpoint.SINGLETON_ID, 0L)))
+                        .getLastSeq());
+
+        long lastSeq = checkpoint;
+        Map<Integer, long[]> replay = new LinkedHashMap<>();
+        for (StockJournal.Record record : StockJournal.readAll(journalDir)) {
+            lastSeq = Math.max(lastSeq, record.seq);
+            if (record.seq > checkpoint) {
+                long[] delta = replay.computeIfAbsent(record.inventoryId, id -> new long[2]);
+                delta[0] += record.stockDelta;
+                delta[1] += record.reservedDelta;
+            }
+        }
+        if (lastSeq > checkpoint) {
+            long replayedUpTo = lastSeq;
+            transactionTemplate.executeWithoutResult(status -> writeDeltas(replay, replayedUpTo));
+            System.err.println("Stock ledger replayed journal " + checkpoint + ".." + lastSeq
+                    + " across " + replay.size() + " inventory rows");
+        }
+        persistedSeq = lastSeq;
+
+        load();
+
+        journal = new StockJournal(journalDir, lastSeq);
+        journal.deleteSegmentsUpTo(lastSeq);
+    }
+
+    private void load() {
+        Map<Integer, List<StockCell>> byProduct = new LinkedHashMap<>();
+        Map<Integer, String> names = new HashMap<>();
+        for (Object[] row : inventoryRepository.findLedgerRows()) {
+            if (row[1] == null) {
+                continue;
+            }
+            StockCell cell = new StockCell(
+                    (Integer) row[0],
+                    (Integer) row[1],
+                    (Integer) row[3],
+                    (Integer) row[6],
+                    row[4] != null ? (Integer) row[4] : 0,
+                    row[5] != null ? (Integer) row[5] : 0);
+            rows.put(cell.inventoryId, cell);
+            byProduct.computeIfAbsent(cell.productId, id -> new ArrayList<>()).add(cell);
+            names.put(cell.productId, (String) row[2]);
+        }
+        for (Map.Entry<Integer, List<StockCell>> entry : byProduct.entrySet()) {
+            ProductStock product = new ProductStock(entry.getKey(), names.get(entry.getKey()),
+                    entry.getValue().toArray(new StockCell[0]));
+            products.put(entry.getKey(), product);
+            statusTracker.track(product);
+            refreshAvailability(product);
+        }
+    }
+
+    // ===== Reads =====
+
+    public ProductStock getProduct(Integer productId) {
+        return productId == null ? null : products.get(productId);
+    }
+
+    public StockCell getCell(Integer inventoryId) {
+        return inventoryId == null ? null : rows.get(inventoryId);
+    }
+
+    // Every cell in inventoryId order
+    public List<StockCell> getAllCells() {
+        List<StockCell> cells = new ArrayList<>(rows.values());
+        cells.sort(Comparator.comparingInt(StockCell::getInventoryId));
+        return cells;
+    }
+
+    // The row for a product/supplier pair; a null supplier means the product's primary row
+    public StockCell findCell(Integer productId, Integer supplierId) {
+        ProductStock product = getProduct(productId);
+        if (product == null) {
+            return null;
+        }
+        if (supplierId == null) {
+            return product.primary();
+        }
+        for (StockCell cell : product.cells) {
+            if (supplierId.equals(cell.supplierId)) {
+                return cell;
+            }
+        }
+        return null;
+    }
+
+    public String getProductName(int productId) {
+        ProductStock product = products.get(productId);
+        return product != null ? product.productName : null;
+    }
+
+    // Available quantity summed over every supplier, or 0 when the product has no stock record
+    public int getAvailable(Integer productId) {
+        ProductStock product = getProduct(productId);
+        return product != null ? Math.max(0, product.getAvailable()) : 0;
+    }
+
+    public StockAllocationPolicy getAllocationPolicy() {
+        return allocationPolicy;
+    }
+
+    public void updateProductName(Integer productId, String productName) {
+        ProductStock product = getProduct(productId);
+        if (product != null) {
+            product.productName = productName;
+        }
+    }
+
+    public void updateReorderPoint(Integer inventoryId, Integer reorderPoint) {
+        StockCell cell = getCell(inventoryId);
+        if (cell != null) {
+            cell.reorderPoint = reorderPoint;
+            refreshStatus(cell);
+        }
+    }
+
+    // Holder of the units a user's cart holds, and of a checkout until its order exists
+    public static String cartHolder(Integer userId) {
+        return userId != null ? "cart:" + userId : null;
+    }
+
+    public static String orderHolder(Integer orderId) {
+        return orderId != null ? "order:" + orderId : null;
+    }
+
+    // ===== Mutations =====
+
+    /**
+     * Reserve quantity for a holder across suppliers in allocation-policy order; all of it
+     * or none. A null holder reserves without remembering the rows.
+     */
+    public boolean reserve(Integer productId, int quantity, String holder) {
+        requirePositive(quantity);
+        ProductStock product = getProduct(productId);
+        if (product == null || product.getAvailable() < quantity) {
+            return false;
+        }
+        StockCell[] order = allocationPolicy.order(product.cells);
+        int[] taken = new int[order.length];
+        int remaining = quantity;
+        for (int i = 0; i < order.length && remaining > 0; i++) {
+            taken[i] = takeAvailable(order[i], remaining);
+            remaining -= taken[i];
+        }
+        if (remaining == 0) {
+            for (int i = 0; i < order.length; i++) {
+                if (taken[i] > 0) {
+                    allocate(holder, product.productId, order[i].inventoryId, taken[i]);
+                }
+            }
+            return true;
+        }
+        // Lost a race for the last units; hand back what was taken
+        for (int i = 0; i < order.length; i++) {
+            if (taken[i] > 0) {
+                releaseFrom(order[i], taken[i]);
+            }
+        }
+        return false;
+    }
+
+    // Give back a holder's reservation from the rows it was taken from; never drops reserved below zero
+    public void release(Integer productId, int quantity, String holder) {
+        requirePositive(quantity);
+        ProductStock product = getProduct(productId);
+        if (product == null) {
+            return;
+        }
+        int remaining = quantity;
+        for (Map.Entry<StockCell, Integer> taken : deallocate(holder, product, quantity).entrySet()) {
+            remaining -= releaseFrom(taken.getKey(), taken.getValue());
+        }
+        for (StockCell cell : allocationPolicy.order(product.cells)) {
+            if (remaining == 0) {
+                break;
+            }
+            remaining -= releaseFrom(cell, remaining);
+        }
+    }
+
+    // Turn a holder's reservation into a shipment from the rows it was taken from: stock and reserved both go down
+    public void fulfil(Integer productId, int quantity, String holder) {
+        requirePositive(quantity);
+        ProductStock product = getProduct(productId);
+        if (product == null) {
+            return;
+        }
+        int remaining = quantity;
+        for (Map.Entry<StockCell, Integer> taken : deallocate(holder, product, quantity).entrySet()) {
+            remaining -= shipFrom(taken.getKey(), taken.getValue());
+        }
+        for (StockCell cell : allocationPolicy.order(product.cells)) {
+            if (remaining == 0) {
+                break;
+            }
+            remaining -= shipFrom(cell, remaining);
+        }
+        if (remaining > 0) {
+            // Nothing was reserved for the rest (e.g. an order placed before the ledger existed)
+            adjustStock(product.primary().inventoryId, -remaining);
+        }
+    }
+
+    // Hand up to quantity reserved units over to another holder (a checkout becoming an order); stock is untouched
+    public void transfer(Integer productId, int quantity, String fromHolder, String toHolder) {
+        requirePositive(quantity);
+        ProductStock product = getProduct(productId);
+        if (product == null || toHolder == null) {
+            return;
+        }
+        for (Map.Entry<StockCell, Integer> taken : deallocate(fromHolder, product, quantity).entrySet()) {
+            allocate(toHolder, product.productId, taken.getKey().inventoryId, taken.getValue());
+        }
+    }
+
+    // Add or remove physical stock on one row
+    public void adjustStock(Integer inventoryId, int delta) {
+        StockCell cell = requireCell(inventoryId);
+        if (delta == 0) {
+            return;
+        }
+        apply(cell, s -> {
+            Math.addExact(stockOf(s), delta);
+            return pack(delta, 0);
+        });
+    }
+
+    /**
+     * Admin override of absolute values. Applied only if the row still holds the quantities
+     * the admin read, checked in the same CAS as the write, so a reservation made since is
+     * never wiped; otherwise throws OptimisticLockingFailureException. Units taken off
+     * reserved are also dropped from the holders' records for the row.
+     */
+    public StockCell setQuantities(Integer inventoryId, int expectedStock, int expectedReserved,
+                                   Integer quantityInStock, Integer quantityReserved) {
+        StockCell cell = requireCell(inventoryId);
+        if ((quantityInStock != null && quantityInStock < 0) || (quantityReserved != null && quantityReserved < 0)) {
+            throw new IllegalArgumentException("Quantities cannot be negative");
+        }
+        long delta = apply(cell, s -> {
+            if (stockOf(s) != expectedStock || reservedOf(s) != expectedReserved) {
+                throw new OptimisticLockingFailureException("Inventory " + inventoryId + " changed since it was read: now "
+                        + stockOf(s) + " in stock, " + reservedOf(s) + " reserved");
+            }
+            int stock = quantityInStock != null ? quantityInStock : stockOf(s);
+            int reserved = quantityReserved != null ? quantityReserved : reservedOf(s);
+            return pack(stock - stockOf(s), reserved - reservedOf(s));
+        });
+        if (reservedOf(delta) < 0) {
+            forgetAllocations(cell, -reservedOf(delta));
+        }
+        return cell;
+    }
+
+    /**
+     * Bring memory in line with a stock change another writer has already committed
+     * to the inventory table (bulk adjustments). Not journaled or written behind,
+     * since the table already has it.
+     */
+    public void applyCommitted(Integer inventoryId, int stockDelta) {
+        applyUnjournaled(requireCell(inventoryId), stockDelta, false);
+    }
+
+    /**
+     * Take a bulk stock decrement out of memory ahead of the table write that will commit
+     * it, so nothing can reserve the units in between. Checked and applied in one CAS:
+     * refused (false) if stock would drop below what is reserved. Not journaled; if the
+     * write rolls back, hand the units back with applyCommitted(inventoryId, -stockDelta).
+     */
+    public boolean applyAhead(Integer inventoryId, int stockDelta) {
+        return applyUnjournaled(requireCell(inventoryId), stockDelta, true);
+    }
+
+    private boolean applyUnjournaled(StockCell cell, int stockDelta, boolean keepReserved) {
+        if (stockDelta == 0) {
+            return true;
+        }
+        while (true) {
+            long before = cell.state.get();
+            long stock = (long) stockOf(before) + stockDelta;
+            if (keepReserved && (stock < reservedOf(before) || stock > Integer.MAX_VALUE)) {
+                return false;
+            }
+            if (cell.state.compareAndSet(before, pack((int) stock, reservedOf(before)))) {
+                break;
+            }
+        }
+        addToTotals(products.get(cell.productId), stockDelta, 0);
+        refreshStatus(cell);
+        return true;
+    }
+
+    private void allocate(String holder, int productId, int inventoryId, int units) {
+        if (holder == null) {
+            return;
+        }
+        allocations.compute(new HoldKey(holder, productId), (key, byRow) -> {
+            LinkedHashMap<Integer, Integer> rowsTaken = byRow != null ? byRow : new LinkedHashMap<>();
+            synchronized (rowsTaken) {
+                // Re-inserted so the rows taken most recently are given back first
+                Integer previous = rowsTaken.remove(inventoryId);
+                rowsTaken.put(inventoryId, (previous != null ? previous : 0) + units);
+            }
+            return rowsTaken;
+        });
+    }
+
+    // Remove up to quantity of a holder's units from its record, newest rows first, and return them by row
+    private Map<StockCell, Integer> deallocate(String holder, ProductStock product, int quantity) {
+        Map<StockCell, Integer> taken = new LinkedHashMap<>();
+        if (holder == null) {
+            return taken;
+        }
+        allocations.computeIfPresent(new HoldKey(holder, product.productId), (key, byRow) -> {
+            synchronized (byRow) {
+                List<Integer> newestFirst = new ArrayList<>(byRow.keySet());
+                Collections.reverse(newestFirst);
+                int remaining = quantity;
+                for (Integer inventoryId : newestFirst) {
+                    if (remaining == 0) {
+                        break;
+                    }
+                    int units = byRow.get(inventoryId);
+                    int n = Math.min(remaining, units);
+                    StockCell cell = rows.get(inventoryId);
+                    if (cell != null) {
+                        taken.put(cell, n);
+                    }
+                    remaining -= n;
+                    if (n == units) {
+                        byRow.remove(inventoryId);
+                    } else {
+                        byRow.put(inventoryId, units - n);
+                    }
+                }
+                return byRow.isEmpty() ? null : byRow;
+            }
+        });
+        return taken;
+    }
+
+    // Drop units that are no longer reserved on a row from whichever holders recorded them there
+    private void forgetAllocations(StockCell cell, int units) {
+        int[] remaining = {units};
+        for (HoldKey key : new ArrayList<>(allocations.keySet())) {
+            if (remaining[0] == 0) {
+                break;
+            }
+            if (key.productId() != cell.productId) {
+                continue;
+            }
+            allocations.computeIfPresent(key, (k, byRow) -> {
+                synchronized (byRow) {
+                    Integer held = byRow.get(cell.inventoryId);
+                    if (held != null) {
+                        int n = Math.min(held, remaining[0]);
+                        remaining[0] -= n;
+                        if (n == held) {
+                            byRow.remove(cell.inventoryId);
+                        } else {
+                            byRow.put(cell.inventoryId, held - n);
+                        }
+                    }
+                    return byRow.isEmpty() ? null : byRow;
+                }
+            });
+        }
+    }
+
+    // Reserve up to max units from one row; returns how many were taken
+    private int takeAvailable(StockCell cell, int max) {
+        long delta = apply(cell, s -> pack(0, Math.max(0, Math.min(max, stockOf(s) - reservedOf(s)))));
+        return reservedOf(delta);
+    }
+
+    // Drop up to max units of reservation from one row; returns how many were released
+    private int releaseFrom(StockCell cell, int max) {
+        long delta = apply(cell, s -> pack(0, -Math.max(0, Math.min(max, reservedOf(s)))));
+        return -reservedOf(delta);
+    }
+
+    // Ship up to max reserved units from one row; returns how many were shipped
+    private int shipFrom(StockCell cell, int max) {
+        long delta = apply(cell, s -> {
+            int taken = Math.max(0, Math.min(max, reservedOf(s)));
+            return pack(-taken, -taken);
+        });
+        return -reservedOf(delta);
+    }
+
+    /**
+     * Change one row. The change (packed stock and reserved deltas) is worked out from the
+     * current state and stored with a CAS, retried if another writer got in first. It is
+     * then journaled outside any row lock, and the caller is answered only once the group
+     * commit has fsync'd it. A failed append stops the ledger and takes the change back out
+     * of memory. Returns the delta applied.
+     */
+    private long apply(StockCell cell, LongUnaryOperator change) {
+        if (stoppedReason != null) {
+            throw new IllegalStateException("Stock ledger stopped: " + stoppedReason);
+        }
+        long delta;
+        int stockDelta;
+        int reservedDelta;
+        // Held through the fsync so a flush never checkpoints past a change still being journaled
+        flushLock.readLock().lock();
+        try {
+            while (true) {
+                long before = cell.state.get();
+                delta = change.applyAsLong(before);
+                stockDelta = stockOf(delta);
+                reservedDelta = reservedOf(delta);
+                if (stockDelta == 0 && reservedDelta == 0) {
+                    return 0;
+                }
+                if (cell.state.compareAndSet(before, pack(stockOf(before) + stockDelta, reservedOf(before) + reservedDelta))) {
+                    break;
+                }
+            }
+            ProductStock product = products.get(cell.productId);
+            addToTotals(product, stockDelta, reservedDelta);
+            try {
+                journal.append(cell.inventoryId, stockDelta, reservedDelta);
+            } catch (IOException e) {
+                stop(e);
+                int stock = stockDelta;
+                int reserved = reservedDelta;
+                cell.state.getAndUpdate(s -> pack(stockOf(s) - stock, reservedOf(s) - reserved));
+                addToTotals(product, -stock, -reserved);
+                refreshStatus(cell);
+                throw new IllegalStateException("Stock journal unavailable: " + e.getMessage(), e);
+            }
+            cell.pendingStock.addAndGet(stockDelta);
+            cell.pendingReserved.addAndGet(reservedDelta);
+            dirty.add(cell.inventoryId);
+        } finally {
+            flushLock.readLock().unlock();
+        }
+        refreshStatus(cell);
+        return delta;
+    }
+
+    private void addToTotals(ProductStock product, int stockDelta, int reservedDelta) {
+        if (product != null) {
+            product.totals.getAndUpdate(s -> pack(stockOf(s) + stockDelta, reservedOf(s) + reservedDelta));
+            refreshAvailability(product);
+        }
+    }
+
+    // The journal fails hard, so neither can the ledger carry on; changes already journaled still get written behind
+    private void stop(IOException cause) {
+        if (stoppedReason == null) {
+            stoppedReason = "journal failed: " + cause.getMessage();
+            System.err.println("Stock ledger stopped taking changes, " + stoppedReason);
+        }
+    }
+
+    // Low and out of stock are judged on the product's totals, like availability and product pages
+    private void refreshStatus(StockCell cell) {
+        ProductStock product = products.get(cell.productId);
+        if (product != null) {
+            statusTracker.refresh(product);
+        }
+    }
+
+    // Re-check after writing so the last writer always leaves the bit matching the totals
+    private void refreshAvailability(ProductStock product) {
+        boolean inStock;
+        do {
+            inStock = product.getAvailable() > 0;
+            availabilityIndex.set(product.productId, inStock);
+        } while ((product.getAvailable() > 0) != inStock);
+    }
+
+    // ===== Write-behind =====
+
+    // Write the net change per row since the last flush and advance the checkpoint with it
+    @Scheduled(fixedDelay = 200)
+    public synchronized void flush() {
+        if (journal == null) {
+            return;
+        }
+        Map<Integer, long[]> batch = new HashMap<>();
+        long upTo;
+        flushLock.writeLock().lock();
+        try {
+            upTo = journal.getLastSeq();
+            if (upTo == persistedSeq) {
+                return;
+            }
+            for (Iterator<Integer> it = dirty.iterator(); it.hasNext(); ) {
+                StockCell cell = rows.get(it.next());
+                it.remove();
+                long stockDelta = cell.pendingStock.getAndSet(0);
+                long reservedDelta = cell.pendingReserved.getAndSet(0);
+                if (stockDelta != 0 || reservedDelta != 0) {
+                    batch.put(cell.inventoryId, new long[]{stockDelta, reservedDelta});
+                }
+            }
+            if (journal.currentSegmentSize() > ROTATE_BYTES) {
+                journal.rotate();
+            }
+        } catch (IOException e) {
+            System.err.println("Stock journal rotation failed: " + e.getMessage());
+            upTo = journal.getLastSeq();
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+
+        try {
+            long checkpoint = upTo;
+            transactionTemplate.executeWithoutResult(status -> writeDeltas(batch, checkpoint));
+            persistedSeq = upTo;
+        } catch (Exception e) {
+            // Put the deltas back; the journal still covers them if we crash before the next try
+            for (Map.Entry<Integer, long[]> entry : batch.entrySet()) {
+                StockCell cell = rows.get(entry.getKey());
+                cell.pendingStock.addAndGet(entry.getValue()[0]);
+                cell.pendingReserved.addAndGet(entry.getValue()[1]);
+                dirty.add(entry.getKey());
+            }
+            System.err.println("Stock write-behind failed, will retry: " + e.getMessage());
+            return;
+        }
+
+        try {
+            journal.deleteSegmentsUpTo(upTo);
+        } catch (IOException e) {
+            System.err.println("Could not delete old stock journal segments: " + e.getMessage());
+        }
+    }
+
+    private void writeDeltas(Map<Integer, long[]> deltas, long checkpoint) {
+        if (!deltas.isEmpty()) {
+            List<Object[]> args = new ArrayList<>(deltas.size());
+            for (Map.Entry<Integer, long[]> entry : deltas.entrySet()) {
+                args.add(new Object[]{entry.getValue()[0], entry.getValue()[1], entry.getKey()});
+            }
+            jdbcTemplate.batchUpdate(APPLY_DELTA_SQL, args);
+        }
+        checkpointRepository.updateLastSeq(StockJournalCheckpoint.SINGLETON_ID, checkpoint);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        flush();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private StockCell requireCell(Integer inventoryId) {
+        StockCell cell = getCell(inventoryId);
+        if (cell == null) {
+            throw new IllegalArgumentException("Inventory record not found: " + inventoryId);
+        }
+        return cell;
+    }
+
+    private static void requirePositive(int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+    }
+
+    static long pack(int inStock, int reserved) {
+        return ((long) inStock << 32) | (reserved & 0xffffffffL);
+    }
+
+    static int stockOf(long state) {
+        return (int) (state >> 32);
+    }
+
+    static int reservedOf(long state) {
+        return (int) state;
+    }
+}
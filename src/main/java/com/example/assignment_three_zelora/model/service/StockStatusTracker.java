@@ -0,0 +1,111 @@
+package com.example.assignment_three_zelora.model.service;
+
+import com.example.assignment_three_zelora.event.StockStatusChangedEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the low-stock and out-of-stock products in memory so the dashboard lists cost
+ * O(result) instead of a table scan. Products are classified on their totals across
+ * suppliers (the same numbers the ledger, the in-stock bitmap and product pages use),
+ * so one empty supplier row does not make a purchasable product "out of stock".
+ * StockLedger calls refresh() after every change to one of a product's rows;
+ * classification matches StockStatusDto.calculateStatus (available = in stock - reserved).
+ */
+@Service
+public class StockStatusTracker {
+
+    public static final String IN_STOCK = "IN_STOCK";
+    public static final String LOW_STOCK = "LOW_STOCK";
+    public static final String OUT_OF_STOCK = "OUT_OF_STOCK";
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<Integer, StockLedger.ProductStock> lowStock = new ConcurrentHashMap<>();
+    private final Map<Integer, StockLedger.ProductStock> outOfStock = new ConcurrentHashMap<>();
+
+    public StockStatusTracker(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    public static String classify(int available, Integer reorderPoint) {
+        if (available <= 0) {
+            return OUT_OF_STOCK;
+        }
+        if (reorderPoint != null && available <= reorderPoint) {
+            return LOW_STOCK;
+        }
+        return IN_STOCK;
+    }
+
+    // Place a product in the right set without publishing anything (used when the ledger loads)
+    void track(StockLedger.ProductStock product) {
+        synchronized (product) {
+            String status = classify(product.getAvailable(), product.getReorderPoint());
+            product.stockStatus = status;
+            place(product, status);
+        }
+    }
+
+    // Re-classify a product after a change to one of its rows and publish the transition if there was one
+    void refresh(StockLedger.ProductStock product) {
+        String previous;
+        String current;
+        int available;
+        // Per-product monitor so the last caller always classifies the latest totals
+        synchronized (product) {
+            available = product.getAvailable();
+            current = classify(available, product.getReorderPoint());
+            previous = product.stockStatus;
+            if (current.equals(previous)) {
+                return;
+            }
+            product.stockStatus = current;
+            place(product, current);
+        }
+        eventPublisher.publishEvent(new StockStatusChangedEvent(
+                product.getProductId(), previous, current, Math.max(0, available)));
+    }
+
+    public List<StockLedger.ProductStock> getLowStock() {
+        return sorted(lowStock);
+    }
+
+    public List<StockLedger.ProductStock> getOutOfStock() {
+        return sorted(outOfStock);
+    }
+
+    public int getLowStockCount() {
+        return lowStock.size();
+    }
+
+    public int getOutOfStockCount() {
+        return outOfStock.size();
+    }
+
+    private void place(StockLedger.ProductStock product, String status) {
+        Integer id = product.getProductId();
+        if (LOW_STOCK.equals(status)) {
+            lowStock.put(id, product);
+        } else {
+            lowStock.remove(id);
+        }
+        if (OUT_OF_STOCK.equals(status)) {
+            outOfStock.put(id, product);
+        } else {
+            outOfStock.remove(id);
+        }
+    }
+
+    private static List<StockLedger.ProductStock> sorted(Map<Integer, StockLedger.ProductStock> set) {
+        List<StockLedger.ProductStock> products = new ArrayList<>(set.values());
+        products.sort(Comparator.comparingInt(StockLedger.ProductStock::getProductId));
+        return products;
+    }
+}
@@ -2,6 +2,7 @@ package com.example.assignment_three_zelora.service;
 
 import com.example.assignment_three_zelora.dto.*;
 import com.example.assignment_three_zelora.model.entitys.*;
+import com.example.assignment_three_zelora.model.service.StockLedger;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
@@ -104,6 +105,7 @@ public class DtoMapperService {
         dto.setReviewText(review.getReviewText());
         dto.setReviewDate(review.getReviewDate());
         dto.setFlaggedAsSpam(review.getFlaggedAsSpam());
+        dto.setHelpfulCount(review.getHelpfulCount());
         
         // Product info
         if (review.getProductId() != null) {
@@ -146,6 +148,43 @@ public class DtoMapperService {
         return dto;
     }
     
+    /**
+     * Convert a stock ledger cell to StockStatusDto.
+     */
+    public StockStatusDto toStockStatusDto(StockLedger.StockCell cell, String productName) {
+        StockStatusDto dto = new StockStatusDto();
+        dto.setProductId(cell.getProductId());
+        dto.setProductName(productName);
+        dto.setQuantityInStock(cell.getQuantityInStock());
+        dto.setQuantityReserved(cell.getQuantityReserved());
+        dto.setReorderPoint(cell.getReorderPoint());
+        dto.calculateStatus();
+        return dto;
+    }
+    
+    /**
+     * Convert a product's ledger stock to StockStatusDto, totalled across suppliers
+     * with a per-supplier breakdown.
+     */
+    public StockStatusDto toStockStatusDto(StockLedger.ProductStock stock) {
+        StockStatusDto dto = new StockStatusDto();
+        dto.setProductId(stock.getProductId());
+        dto.setProductName(stock.getProductName());
+        dto.setQuantityInStock(stock.getQuantityInStock());
+        dto.setQuantityReserved(stock.getQuantityReserved());
+        dto.setReorderPoint(stock.getReorderPoint());
+        dto.calculateStatus();
+        
+        List<SupplierStockDto> suppliers = new ArrayList<>();
+        for (StockLedger.StockCell cell : stock.getCells()) {
+            suppliers.add(new SupplierStockDto(cell.getInventoryId(), cell.getSupplierId(),
+                    cell.getQuantityInStock(), cell.getQuantityReserved(),
+                    Math.max(0, cell.getAvailable()), cell.getReorderPoint()));
+        }
+        dto.setSuppliers(suppliers);
+        return dto;
+    }
+    
     /**
      * Convert Wishlist entity to WishlistItemDto.
      */
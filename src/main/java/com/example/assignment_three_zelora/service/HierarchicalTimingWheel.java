@@ -0,0 +1,206 @@
+package com.example.assignment_three_zelora.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel (Varghese and Lauck) for large numbers of timers.
+ * Each level has 64 slots; a slot on level n covers 64^n ticks. Insert and cancel
+ * are O(1) list operations, and advancing one tick touches a single slot per level,
+ * so cost does not grow with the number of outstanding timers.
+ * Timers are not run by the wheel: advance() hands back the expired payloads.
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+
+    private final long tickMs;
+    private final int levels;
+    private final long startMs;
+    private final long maxSpanTicks;
+    private final Slot[][] wheels;
+    private final Object lock = new Object();
+
+    private long currentTick;
+    private int size;
+
+    /**
+     * Handle for one scheduled timer.
+     */
+    public final class Timeout {
+        private final T payload;
+        private final long deadlineTick;
+        private Slot slot;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(T payload, long deadlineTick) {
+            this.payload = payload;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T getPayload() {
+            return payload;
+        }
+
+        public long getDeadlineMs() {
+            return startMs + deadlineTick * tickMs;
+        }
+
+        // Remove the timer; false if it already fired or was cancelled
+        public boolean cancel() {
+            synchronized (lock) {
+                if (slot == null) {
+                    return false;
+                }
+                slot.remove(this);
+                size--;
+                return true;
+            }
+        }
+    }
+
+    private final class Slot {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout t) {
+            t.slot = this;
+            t.prev = tail;
+            t.next = null;
+            if (tail == null) {
+                head = t;
+            } else {
+                tail.next = t;
+            }
+            tail = t;
+        }
+
+        void remove(Timeout t) {
+            if (t.prev == null) {
+                head = t.next;
+            } else {
+                t.prev.next = t.next;
+            }
+            if (t.next == null) {
+                tail = t.prev;
+            } else {
+                t.next.prev = t.prev;
+            }
+            t.slot = null;
+            t.prev = null;
+            t.next = null;
+        }
+
+        // Detach and return the whole chain
+        Timeout takeAll() {
+            Timeout first = head;
+            head = null;
+            tail = null;
+            return first;
+        }
+    }
+
+    // 4 levels of 64 slots at 100ms reach about 19 days
+    public HierarchicalTimingWheel(long tickMs, int levels) {
+        if (tickMs <= 0 || levels < 1 || levels > 8) {
+            throw new IllegalArgumentException("tickMs must be positive and levels between 1 and 8");
+        }
+        this.tickMs = tickMs;
+        this.levels = levels;
+        this.startMs = System.currentTimeMillis();
+        this.maxSpanTicks = 1L << (SLOT_BITS * levels);
+        @SuppressWarnings("unchecked")
+        Slot[][] w = (Slot[][]) java.lang.reflect.Array.newInstance(Slot.class, levels, SLOTS);
+        for (int l = 0; l < levels; l++) {
+            for (int s = 0; s < SLOTS; s++) {
+                w[l][s] = new Slot();
+            }
+        }
+        this.wheels = w;
+    }
+
+    public Timeout schedule(T payload, long deadlineMs) {
+        long deadlineTick = Math.max(0, (deadlineMs - startMs + tickMs - 1) / tickMs);
+        synchronized (lock) {
+            Timeout t = new Timeout(payload, deadlineTick);
+            place(t);
+            size++;
+            return t;
+        }
+    }
+
+    // Move the wheel up to nowMs and return everything that expired on the way
+    public List<T> advance(long nowMs) {
+        List<T> expired = new ArrayList<>();
+        long target = (nowMs - startMs) / tickMs;
+        synchronized (lock) {
+            while (currentTick < target) {
+                currentTick++;
+                // Higher levels first, so their timers land in lower slots before those are read
+                for (int l = levels - 1; l >= 1; l--) {
+                    int shift = SLOT_BITS * l;
+                    if ((currentTick & ((1L << shift) - 1)) == 0) {
+                        cascade(wheels[l][(int) ((currentTick >>> shift) & MASK)], expired);
+                    }
+                }
+                Timeout t = wheels[0][(int) (currentTick & MASK)].takeAll();
+                while (t != null) {
+                    Timeout next = t.next;
+                    t.slot = null;
+                    t.prev = null;
+                    t.next = null;
+                    if (t.deadlineTick <= currentTick) {
+                        expired.add(t.payload);
+                        size--;
+                    } else {
+                        place(t);
+                    }
+                    t = next;
+                }
+            }
+        }
+        return expired;
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    private void cascade(Slot slot, List<T> expired) {
+        Timeout t = slot.takeAll();
+        while (t != null) {
+            Timeout next = t.next;
+            t.slot = null;
+            t.prev = null;
+            t.next = null;
+            if (t.deadlineTick <= currentTick) {
+                expired.add(t.payload);
+                size--;
+            } else {
+                place(t);
+            }
+            t = next;
+        }
+    }
+
+    private void place(Timeout t) {
+        // Anything due now or in the past fires on the next tick
+        long deadline = Math.max(t.deadlineTick, currentTick + 1);
+        long delta = deadline - currentTick;
+        if (delta >= maxSpanTicks) {
+            // Park in the farthest slot; it is re-placed when that slot cascades
+            deadline = currentTick + maxSpanTicks - 1;
+            delta = maxSpanTicks - 1;
+        }
+        int level = 0;
+        while (level < levels - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        wheels[level][(int) ((deadline >>> (SLOT_BITS * level)) & MASK)].add(t);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.assignment_three_zelora.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs a read-modify-write against versioned entities, retrying on optimistic-lock
+ * conflicts. Every attempt gets its own transaction (and so a fresh persistence
+ * context), and waits between attempts use full jitter: a random delay up to an
+ * exponentially growing cap, so colliding writers spread out instead of colliding again.
+ * The work must be safe to run more than once.
+ */
+@Service
+public class OptimisticRetry {
+
+    private final TransactionOperations transactions;
+    private final int maxAttempts;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Contention counters for one entity type.
+     */
+    public static final class Stats {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+        private final LongAdder backoffMs = new LongAdder();
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getConflicts() {
+            return conflicts.sum();
+        }
+
+        public long getExhausted() {
+            return exhausted.sum();
+        }
+
+        public long getBackoffMs() {
+            return backoffMs.sum();
+        }
+
+        // Average retries per call
+        public double getRetriesPerCall() {
+            long c = calls.sum();
+            return c == 0 ? 0.0 : (double) (conflicts.sum() - exhausted.sum()) / c;
+        }
+    }
+
+    @Autowired
+    public OptimisticRetry(PlatformTransactionManager transactionManager,
+                           @Value("${zelora.retry.max-attempts:5}") int maxAttempts,
+                           @Value("${zelora.retry.base-backoff-ms:5}") long baseBackoffMs,
+                           @Value("${zelora.retry.max-backoff-ms:200}") long maxBackoffMs) {
+        this(newTransactionTemplate(transactionManager), maxAttempts, baseBackoffMs, maxBackoffMs);
+    }
+
+    public OptimisticRetry(TransactionOperations transactions, int maxAttempts, long baseBackoffMs, long maxBackoffMs) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        this.transactions = transactions;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    private static TransactionTemplate newTransactionTemplate(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        // A retry inside an outer transaction would reuse the stale persistence context
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
+
+    // Run work, retrying optimistic-lock failures; the last failure is rethrown
+    public <T> T execute(String entity, Supplier<T> work) {
+        Stats s = stats.computeIfAbsent(entity, e -> new Stats());
+        s.calls.increment();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactions.execute(status -> work.get());
+            } catch (OptimisticLockingFailureException e) {
+                s.conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    s.exhausted.increment();
+                    throw e;
+                }
+                long cap = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt - 1, 20));
+                long sleep = cap > 0 ? ThreadLocalRandom.current().nextLong(cap + 1) : 0;
+                s.backoffMs.add(sleep);
+                if (sleep > 0) {
+                    try {
+                        Thread.sleep(sleep);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw e;
+                    }
+                }
+            }
+        }
+    }
+
+    public Stats getStats(String entity) {
+        return stats.get(entity);
+    }
+
+    // Snapshot of all counters, keyed by entity
+    public Map<String, Map<String, Object>> getStatsSnapshot() {
+        Map<String, Map<String, Object>> snapshot = new TreeMap<>();
+        stats.forEach((entity, s) -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("calls", s.getCalls());
+            row.put("conflicts", s.getConflicts());
+            row.put("exhausted", s.getExhausted());
+            row.put("retriesPerCall", s.getRetriesPerCall());
+            row.put("backoffMs", s.getBackoffMs());
+            snapshot.put(entity, row);
+        });
+        return snapshot;
+    }
+}
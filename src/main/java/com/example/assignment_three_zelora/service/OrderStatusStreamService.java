@@ -0,0 +1,200 @@
+package com.example.assignment_three_zelora.service;
+
+import com.example.assignment_three_zelora.event.OrderStatusChangedEvent;
+import jakarta.annotation.PreDestroy;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes order status changes to customers over Server-Sent Events.
+ * Connections are held by async servlet support, so an idle subscriber costs
+ * only its emitter; writes are done on virtual threads, one writer per connection.
+ */
+@Service
+public class OrderStatusStreamService {
+
+    // Emitters time out after 30 minutes; EventSource clients reconnect automatically
+    private static final long EMITTER_TIMEOUT_MS = 30 * 60 * 1000L;
+    private static final long RECONNECT_DELAY_MS = 5000L;
+
+    // A subscriber further behind than this is treated as dead and disconnected
+    private static final int MAX_PENDING_EVENTS = 64;
+
+    private final Map<Integer, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService writers = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Open a stream for a customer
+    public SseEmitter subscribe(Integer customerId) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        Subscriber subscriber = new Subscriber(customerId, emitter);
+
+        subscribers.computeIfAbsent(customerId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+
+        subscriber.enqueueHeartbeat();
+        return emitter;
+    }
+
+    // Fan a committed status change out to the customer's open streams
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        if (event.getCustomerId() == null) {
+            return;
+        }
+        Set<Subscriber> targets = subscribers.get(event.getCustomerId());
+        if (targets == null) {
+            return;
+        }
+        for (Subscriber subscriber : targets) {
+            subscriber.enqueue(event);
+        }
+    }
+
+    // Keep idle connections alive through proxies and detect dead clients
+    @Scheduled(fixedRate = 15000)
+    public void sendHeartbeats() {
+        for (Set<Subscriber> group : subscribers.values()) {
+            for (Subscriber subscriber : group) {
+                subscriber.enqueueHeartbeat();
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Set<Subscriber> group : subscribers.values()) {
+            for (Subscriber subscriber : group) {
+                subscriber.emitter.complete();
+            }
+        }
+        subscribers.clear();
+        writers.shutdownNow();
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscriber.closed.set(true);
+        subscribers.computeIfPresent(subscriber.customerId, (id, group) -> {
+            group.remove(subscriber);
+            return group.isEmpty() ? null : group;
+        });
+    }
+
+    /**
+     * One open connection. Pending events are coalesced per order, so a slow
+     * client only ever receives the latest status of each order.
+     */
+    private class Subscriber {
+
+        private final Integer customerId;
+        private final SseEmitter emitter;
+        private final Map<Integer, OrderStatusChangedEvent> pending = new LinkedHashMap<>();
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+        private boolean heartbeatPending;
+
+        Subscriber(Integer customerId, SseEmitter emitter) {
+            this.customerId = customerId;
+            this.emitter = emitter;
+        }
+
+        void enqueue(OrderStatusChangedEvent event) {
+            boolean overflow;
+            synchronized (pending) {
+                pending.put(event.getOrderId(), event);
+                overflow = pending.size() > MAX_PENDING_EVENTS;
+            }
+            if (overflow) {
+                emitter.complete();
+                remove(this);
+                return;
+            }
+            scheduleDrain();
+        }
+
+        void enqueueHeartbeat() {
+            synchronized (pending) {
+                heartbeatPending = true;
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (closed.get() || !draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                writers.execute(this::drain);
+            } catch (Exception e) {
+                draining.set(false);
+            }
+        }
+
+        private void drain() {
+            try {
+                while (!closed.get()) {
+                    OrderStatusChangedEvent next = null;
+                    boolean heartbeat;
+                    synchronized (pending) {
+                        Iterator<OrderStatusChangedEvent> it = pending.values().iterator();
+                        if (it.hasNext()) {
+                            next = it.next();
+                            it.remove();
+                        }
+                        heartbeat = heartbeatPending;
+                        heartbeatPending = false;
+                    }
+                    if (next == null && !heartbeat) {
+                        break;
+                    }
+                    if (heartbeat) {
+                        emitter.send(SseEmitter.event().comment("heartbeat").reconnectTime(RECONNECT_DELAY_MS));
+                    }
+                    if (next != null) {
+                        emitter.send(SseEmitter.event()
+                                .name("order-status")
+                                .id(next.getOrderId() + "-" + next.getChangedAt().getTime())
+                                .data(Map.of(
+                                        "orderId", next.getOrderId(),
+                                        "status", next.getNewStatus() != null ? next.getNewStatus() : "",
+                                        "previousStatus", next.getPreviousStatus() != null ? next.getPreviousStatus() : "",
+                                        "changedAt", next.getChangedAt()
+                                ), MediaType.APPLICATION_JSON));
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client went away; the emitter callbacks do the rest
+                emitter.completeWithError(e);
+                remove(this);
+            } finally {
+                draining.set(false);
+            }
+            // Catch anything enqueued between the last poll and releasing the flag
+            boolean more;
+            synchronized (pending) {
+                more = !pending.isEmpty() || heartbeatPending;
+            }
+            if (more) {
+                scheduleDrain();
+            }
+        }
+    }
+}
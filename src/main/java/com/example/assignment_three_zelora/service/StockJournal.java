@@ -0,0 +1,266 @@
+package com.example.assignment_three_zelora.service;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Append-only local journal of stock deltas with group commit.
+ * Callers block in append() until their record has been fsync'd, but concurrent
+ * callers share one fsync. Records are text lines "seq,inventoryId,dStock,dReserved"
+ * in segment files named stock-{firstSeq}.journal. An append that gives up waiting
+ * cancels its record, so a caller that saw a failure never has its record written later.
+ */
+public class StockJournal implements Closeable {
+
+    private static final String PREFIX = "stock-";
+    private static final String SUFFIX = ".journal";
+
+    private final Path dir;
+    private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Object channelLock = new Object();
+    private final Thread writer;
+
+    private FileChannel channel;
+    private volatile long lastSeq;
+    private volatile boolean running = true;
+
+    /**
+     * One journaled delta.
+     */
+    public static final class Record {
+        public final long seq;
+        public final int inventoryId;
+        public final long stockDelta;
+        public final long reservedDelta;
+
+        Record(long seq, int inventoryId, long stockDelta, long reservedDelta) {
+            this.seq = seq;
+            this.inventoryId = inventoryId;
+            this.stockDelta = stockDelta;
+            this.reservedDelta = reservedDelta;
+        }
+    }
+
+    private static final class Entry {
+        final int inventoryId;
+        final long stockDelta;
+        final long reservedDelta;
+        final CompletableFuture<Long> done = new CompletableFuture<>();
+        // Set by whoever gets there first: the writer (record will be written) or a giving-up caller (it won't)
+        final AtomicBoolean claimed = new AtomicBoolean();
+
+        Entry(int inventoryId, long stockDelta, long reservedDelta) {
+            this.inventoryId = inventoryId;
+            this.stockDelta = stockDelta;
+            this.reservedDelta = reservedDelta;
+        }
+    }
+
+    // Open the journal, continuing numbering after startSeq in a fresh segment
+    public StockJournal(Path dir, long startSeq) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        this.lastSeq = startSeq;
+        openSegment(startSeq + 1);
+        this.writer = new Thread(this::writeLoop, "stock-journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // Read every record in every segment, in sequence order; a torn last line is ignored
+    public static List<Record> readAll(Path dir) throws IOException {
+        List<Record> records = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return records;
+        }
+        for (Path segment : listSegments(dir)) {
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split(",");
+                    if (parts.length != 4) {
+                        break;
+                    }
+                    try {
+                        records.add(new Record(Long.parseLong(parts[0]), Integer.parseInt(parts[1]),
+                                Long.parseLong(parts[2]), Long.parseLong(parts[3])));
+                    } catch (NumberFormatException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        return records;
+    }
+
+    // Durably record a delta and return its sequence number
+    public long append(int inventoryId, long stockDelta, long reservedDelta) throws IOException {
+        if (!running) {
+            throw new IOException("Stock journal is closed");
+        }
+        Entry entry = new Entry(inventoryId, stockDelta, reservedDelta);
+        queue.add(entry);
+        try {
+            return entry.done.get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            if (entry.claimed.compareAndSet(false, true)) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the stock journal", e);
+            }
+            Thread.currentThread().interrupt();
+            return awaitClaimed(entry);
+        } catch (ExecutionException e) {
+            throw new IOException("Stock journal write failed", e.getCause());
+        } catch (TimeoutException e) {
+            if (entry.claimed.compareAndSet(false, true)) {
+                throw new IOException("Timed out waiting for the stock journal", e);
+            }
+            return awaitClaimed(entry);
+        }
+    }
+
+    // The writer already took the record, so it ends up either written or failed; wait for which
+    private static long awaitClaimed(Entry entry) throws IOException {
+        boolean interrupted = Thread.interrupted();
+        try {
+            while (true) {
+                try {
+                    return entry.done.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    throw new IOException("Stock journal write failed", e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    public long currentSegmentSize() throws IOException {
+        synchronized (channelLock) {
+            return channel.size();
+        }
+    }
+
+    // Start a new segment; only call when no append is in flight
+    public void rotate() throws IOException {
+        synchronized (channelLock) {
+            channel.close();
+            openSegment(lastSeq + 1);
+        }
+    }
+
+    // Remove closed segments whose records are all at or below seq
+    public void deleteSegmentsUpTo(long seq) throws IOException {
+        List<Path> segments = listSegments(dir);
+        for (int i = 0; i < segments.size() - 1; i++) {
+            long nextFirst = firstSeqOf(segments.get(i + 1));
+            if (nextFirst - 1 <= seq) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        writer.interrupt();
+        synchronized (channelLock) {
+            channel.close();
+        }
+    }
+
+    private void openSegment(long firstSeq) throws IOException {
+        Path segment = dir.resolve(PREFIX + String.format("%020d", firstSeq) + SUFFIX);
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                // Records whose caller already gave up are dropped, never written
+                batch.removeIf(e -> !e.claimed.compareAndSet(false, true));
+                if (batch.isEmpty()) {
+                    continue;
+                }
+
+                sb.setLength(0);
+                long seq = lastSeq;
+                for (Entry e : batch) {
+                    seq++;
+                    sb.append(seq).append(',').append(e.inventoryId).append(',')
+                      .append(e.stockDelta).append(',').append(e.reservedDelta).append('\n');
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+                synchronized (channelLock) {
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(false);
+                }
+
+                long assigned = lastSeq;
+                lastSeq = seq;
+                for (Entry e : batch) {
+                    e.done.complete(++assigned);
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (IOException e) {
+                // Fail-stop: a partially written batch must never be followed by reused sequence numbers
+                running = false;
+                for (Entry entry : batch) {
+                    entry.done.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+        IOException closed = new IOException("Stock journal is closed");
+        Entry left;
+        while ((left = queue.poll()) != null) {
+            left.done.completeExceptionally(closed);
+        }
+    }
+
+    private static List<Path> listSegments(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long firstSeqOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,404 @@
+package com.example.assignment_three_zelora.service;
+
+import com.example.assignment_three_zelora.dto.WaitingRoomStatusDto;
+import com.example.assignment_three_zelora.model.service.StockLedger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Virtual waiting room for flash-sale products.
+ * Buyers join a product's room and get a signed ticket numbered in arrival order. Once
+ * a tick, the room admits the next batch of tickets, as many as the lowest of: the
+ * stock still available (times admit-per-unit, minus buyers already admitted), the
+ * measured checkout rate with some headroom (never below min-rate-per-second), and
+ * the max-active cap. Admission lasts admission-ttl-seconds or until the buyer orders;
+ * an order claims it when it starts, so one admission cannot back concurrent orders.
+ * Tokens carry the room's generation, so reopening a room voids the old ones.
+ * Products without an open room skip all of this with a single map lookup.
+ * Rooms and the signing key live in memory, so a restart sends everyone back to join.
+ */
+@Service
+public class WaitingRoomService {
+
+    public static final String TOKEN_HEADER = "X-Waiting-Room-Token";
+
+    private static final double RATE_SMOOTHING = 0.3;
+    private static final double CHECKOUT_HEADROOM = 1.25;
+
+    private final StockLedger stockLedger;
+    private final long tickMs;
+    private final long admissionTtlMs;
+    private final double defaultMinRatePerSecond;
+    private final int defaultMaxActive;
+    private final double admitPerUnit;
+    private final SecretKeySpec signingKey;
+
+    private final Map<Integer, Room> rooms = new ConcurrentHashMap<>();
+    private final AtomicLong generations = new AtomicLong();
+
+    /**
+     * One admitted batch of tickets and which of them are ordering or have ordered.
+     */
+    private static final class Batch {
+        final long firstTicket;
+        final long lastTicket;
+        final long admittedAtMs;
+        final Set<Long> used = ConcurrentHashMap.newKeySet();
+
+        Batch(long firstTicket, long lastTicket, long admittedAtMs) {
+            this.firstTicket = firstTicket;
+            this.lastTicket = lastTicket;
+            this.admittedAtMs = admittedAtMs;
+        }
+
+        long unused() {
+            return lastTicket - firstTicket + 1 - used.size();
+        }
+    }
+
+    /**
+     * Waiting room for one product.
+     */
+    private static final class Room {
+        final int productId;
+        // Part of every signed token, so tickets from an earlier opening of the room are rejected
+        final long generation;
+        final double minRatePerSecond;
+        final int maxActive;
+        final Date openedAt = new Date();
+        final AtomicLong lastIssued = new AtomicLong();
+        // Tickets up to and including this one have been let in; only the tick writes it
+        volatile long admittedUpTo;
+        // Live batches keyed by their last ticket
+        final ConcurrentSkipListMap<Long, Batch> batches = new ConcurrentSkipListMap<>();
+        final LongAdder checkoutsSinceTick = new LongAdder();
+        final LongAdder checkouts = new LongAdder();
+        final LongAdder soldOutRejections = new LongAdder();
+        volatile double checkoutRate;
+        volatile double admitRate;
+        volatile long active;
+
+        Room(int productId, long generation, double minRatePerSecond, int maxActive) {
+            this.productId = productId;
+            this.generation = generation;
+            this.minRatePerSecond = minRatePerSecond;
+            this.maxActive = maxActive;
+        }
+    }
+
+    /**
+     * Admissions an order has claimed: the room and ticket for each waiting-room product.
+     */
+    public static final class Claim {
+        private final Map<Room, Long> tickets = new LinkedHashMap<>();
+    }
+
+    /**
+     * Thrown when a request for a waiting-room product has no valid admission.
+     */
+    public static class AdmissionDeniedException extends RuntimeException {
+        private final WaitingRoomStatusDto status;
+
+        public AdmissionDeniedException(WaitingRoomStatusDto status) {
+            super(status.getMessage());
+            this.status = status;
+        }
+
+        public WaitingRoomStatusDto getStatus() {
+            return status;
+        }
+    }
+
+    public WaitingRoomService(StockLedger stockLedger,
+                              @Value("${zelora.waiting-room.tick-ms:1000}") long tickMs,
+                              @Value("${zelora.waiting-room.admission-ttl-seconds:600}") long admissionTtlSeconds,
+                              @Value("${zelora.waiting-room.min-rate-per-second:5}") double minRatePerSecond,
+                              @Value("${zelora.waiting-room.max-active:500}") int maxActive,
+                              @Value("${zelora.waiting-room.admit-per-unit:1.5}") double admitPerUnit) {
+        this.stockLedger = stockLedger;
+        this.tickMs = tickMs;
+        this.admissionTtlMs = admissionTtlSeconds * 1000;
+        this.defaultMinRatePerSecond = minRatePerSecond;
+        this.defaultMaxActive = maxActive;
+        this.admitPerUnit = admitPerUnit;
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.signingKey = new SecretKeySpec(key, "HmacSHA256");
+    }
+
+    // Put a product behind a waiting room; null settings take the configured defaults
+    public Map<String, Object> open(Integer productId, Double minRatePerSecond, Integer maxActive) {
+        if (stockLedger.getProduct(productId) == null) {
+            throw new IllegalArgumentException("Product " + productId + " has no inventory");
+        }
+        Room room = rooms.computeIfAbsent(productId, id -> new Room(id, generations.incrementAndGet(),
+                minRatePerSecond != null && minRatePerSecond > 0 ? minRatePerSecond : defaultMinRatePerSecond,
+                maxActive != null && maxActive > 0 ? maxActive : defaultMaxActive));
+        return describe(room);
+    }
+
+    public boolean close(Integer productId) {
+        return rooms.remove(productId) != null;
+    }
+
+    public boolean isActive(Integer productId) {
+        return productId != null && rooms.containsKey(productId);
+    }
+
+    public List<Map<String, Object>> getRooms() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Room room : new TreeMap<>(rooms).values()) {
+            result.add(describe(room));
+        }
+        return result;
+    }
+
+    // Take a ticket at the back of the queue
+    public WaitingRoomStatusDto join(Integer productId) {
+        Room room = rooms.get(productId);
+        if (room == null) {
+            return new WaitingRoomStatusDto(productId, WaitingRoomStatusDto.OPEN, null, null, null, null,
+                    "No waiting room for this product");
+        }
+        if (stockLedger.getAvailable(productId) <= 0) {
+            room.soldOutRejections.increment();
+            return soldOut(productId);
+        }
+        long ticket = room.lastIssued.incrementAndGet();
+        return evaluate(room, ticket, sign(room, ticket));
+    }
+
+    // Where a ticket stands now
+    public WaitingRoomStatusDto getStatus(Integer productId, String tokens) {
+        Room room = rooms.get(productId);
+        if (room == null) {
+            return new WaitingRoomStatusDto(productId, WaitingRoomStatusDto.OPEN, null, null, null, null,
+                    "No waiting room for this product");
+        }
+        String token = findToken(productId, tokens);
+        Long ticket = token != null ? verify(room, token) : null;
+        if (ticket == null || ticket > room.lastIssued.get()) {
+            return new WaitingRoomStatusDto(productId, WaitingRoomStatusDto.EXPIRED, null, null, null, null,
+                    "No valid waiting-room token for this product; join the queue first");
+        }
+        return evaluate(room, ticket, token);
+    }
+
+    // Let the request through unless the product has a room and the caller is not admitted
+    public void checkAdmission(Integer productId, String tokens) {
+        if (productId == null || !rooms.containsKey(productId)) {
+            return;
+        }
+        WaitingRoomStatusDto status = getStatus(productId, tokens);
+        if (!WaitingRoomStatusDto.ADMITTED.equals(status.getStatus())) {
+            if (WaitingRoomStatusDto.SOLD_OUT.equals(status.getStatus())) {
+                rooms.get(productId).soldOutRejections.increment();
+            }
+            throw new AdmissionDeniedException(status);
+        }
+    }
+
+    /**
+     * Check admission for every waiting-room product of an order and mark each admission
+     * in use, so a second order on the same token is turned away while this one runs.
+     * All or none: if one is missing or already in use, the ones taken are handed back.
+     */
+    public Claim claimAdmissions(Collection<Integer> productIds, String tokens) {
+        Claim claim = new Claim();
+        try {
+            for (Integer productId : productIds) {
+                Room room = productId != null ? rooms.get(productId) : null;
+                if (room == null || claim.tickets.containsKey(room)) {
+                    continue;
+                }
+                checkAdmission(productId, tokens);
+                Long ticket = verify(room, findToken(productId, tokens));
+                Batch batch = ticket != null ? batchOf(room, ticket) : null;
+                if (batch == null || !batch.used.add(ticket)) {
+                    throw new AdmissionDeniedException(new WaitingRoomStatusDto(productId, WaitingRoomStatusDto.EXPIRED,
+                            null, null, null, null, "This admission is already being used for another order"));
+                }
+                claim.tickets.put(room, ticket);
+            }
+        } catch (RuntimeException e) {
+            release(claim);
+            throw e;
+        }
+        return claim;
+    }
+
+    // The order did not go through: the admissions it claimed can be used again
+    public void release(Claim claim) {
+        if (claim == null) {
+            return;
+        }
+        for (Map.Entry<Room, Long> entry : claim.tickets.entrySet()) {
+            Batch batch = batchOf(entry.getKey(), entry.getValue());
+            if (batch != null) {
+                batch.used.remove(entry.getValue());
+            }
+        }
+        claim.tickets.clear();
+    }
+
+    // The order went through: its admissions stay spent and count towards checkout throughput
+    public void recordCheckout(Claim claim) {
+        for (Room room : claim.tickets.keySet()) {
+            room.checkouts.increment();
+            room.checkoutsSinceTick.increment();
+        }
+        claim.tickets.clear();
+    }
+
+    @Scheduled(fixedRateString = "${zelora.waiting-room.tick-ms:1000}")
+    public void admit() {
+        long now = System.currentTimeMillis();
+        double tickSeconds = tickMs / 1000.0;
+        for (Room room : rooms.values()) {
+            room.batches.values().removeIf(b -> b.admittedAtMs + admissionTtlMs <= now);
+            long active = 0;
+            for (Batch b : room.batches.values()) {
+                active += b.unused();
+            }
+
+            double measured = room.checkoutsSinceTick.sumThenReset() / tickSeconds;
+            room.checkoutRate = RATE_SMOOTHING * measured + (1 - RATE_SMOOTHING) * room.checkoutRate;
+
+            long waiting = room.lastIssued.get() - room.admittedUpTo;
+            long release = 0;
+            int available = stockLedger.getAvailable(room.productId);
+            if (waiting > 0 && available > 0) {
+                long stockBudget = (long) Math.ceil(available * admitPerUnit) - active;
+                double rate = Math.max(room.minRatePerSecond, room.checkoutRate * CHECKOUT_HEADROOM);
+                long rateBudget = (long) Math.ceil(rate * tickSeconds);
+                long concurrencyBudget = room.maxActive - active;
+                release = Math.max(0, Math.min(waiting, Math.min(stockBudget, Math.min(rateBudget, concurrencyBudget))));
+            }
+            if (release > 0) {
+                long first = room.admittedUpTo + 1;
+                long last = room.admittedUpTo + release;
+                room.batches.put(last, new Batch(first, last, now));
+                room.admittedUpTo = last;
+                active += release;
+            }
+            room.active = active;
+            room.admitRate = RATE_SMOOTHING * (release / tickSeconds) + (1 - RATE_SMOOTHING) * room.admitRate;
+        }
+    }
+
+    private WaitingRoomStatusDto evaluate(Room room, long ticket, String token) {
+        int productId = room.productId;
+        if (ticket <= room.admittedUpTo) {
+            Batch batch = batchOf(room, ticket);
+            if (batch == null || batch.used.contains(ticket)) {
+                return new WaitingRoomStatusDto(productId, WaitingRoomStatusDto.EXPIRED, token, null, null, null,
+                        "This admission has been used or has lapsed; join the queue again");
+            }
+            return new WaitingRoomStatusDto(productId, WaitingRoomStatusDto.ADMITTED, token, 0L, 0L,
+                    new Date(batch.admittedAtMs + admissionTtlMs), "You're in");
+        }
+        if (stockLedger.getAvailable(productId) <= 0) {
+            return soldOut(productId);
+        }
+        long position = ticket - room.admittedUpTo;
+        double rate = room.admitRate > 0.01 ? room.admitRate : room.minRatePerSecond;
+        long waitSeconds = (long) Math.ceil(position / rate);
+        return new WaitingRoomStatusDto(productId, WaitingRoomStatusDto.WAITING, token, position, waitSeconds, null,
+                "You're in the queue");
+    }
+
+    private static Batch batchOf(Room room, long ticket) {
+        Map.Entry<Long, Batch> entry = room.batches.ceilingEntry(ticket);
+        return entry != null && entry.getValue().firstTicket <= ticket ? entry.getValue() : null;
+    }
+
+    private static WaitingRoomStatusDto soldOut(Integer productId) {
+        return new WaitingRoomStatusDto(productId, WaitingRoomStatusDto.SOLD_OUT, null, null, null, null,
+                "This product has sold out");
+    }
+
+    private Map<String, Object> describe(Room room) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("productId", room.productId);
+        stats.put("openedAt", room.openedAt);
+        stats.put("ticketsIssued", room.lastIssued.get());
+        stats.put("admitted", room.admittedUpTo);
+        stats.put("waiting", room.lastIssued.get() - room.admittedUpTo);
+        stats.put("active", room.active);
+        stats.put("checkouts", room.checkouts.sum());
+        stats.put("soldOutRejections", room.soldOutRejections.sum());
+        stats.put("admitRatePerSecond", Math.round(room.admitRate * 100) / 100.0);
+        stats.put("checkoutRatePerSecond", Math.round(room.checkoutRate * 100) / 100.0);
+        stats.put("minRatePerSecond", room.minRatePerSecond);
+        stats.put("maxActive", room.maxActive);
+        stats.put("availableQuantity", stockLedger.getAvailable(room.productId));
+        return stats;
+    }
+
+    // The header may carry several comma-separated tokens, one per product
+    private static String findToken(int productId, String tokens) {
+        if (tokens == null) {
+            return null;
+        }
+        String prefix = productId + ".";
+        for (String token : tokens.split(",")) {
+            String t = token.trim();
+            if (t.startsWith(prefix)) {
+                return t;
+            }
+        }
+        return null;
+    }
+
+    // Tokens are productId.generation.ticket.signature
+    private String sign(Room room, long ticket) {
+        String body = room.productId + "." + room.generation + "." + ticket;
+        return body + "." + signature(body);
+    }
+
+    // The ticket number, or null if the token is forged or from an earlier opening of the room
+    private Long verify(Room room, String token) {
+        int dot = token != null ? token.lastIndexOf('.') : -1;
+        if (dot < 0) {
+            return null;
+        }
+        String body = token.substring(0, dot);
+        byte[] expected = signature(body).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, token.substring(dot + 1).getBytes(StandardCharsets.US_ASCII))) {
+            return null;
+        }
+        String prefix = room.productId + "." + room.generation + ".";
+        if (!body.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(body.substring(prefix.length()));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private String signature(String body) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(signingKey);
+            byte[] digest = mac.doFinal(body.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+}
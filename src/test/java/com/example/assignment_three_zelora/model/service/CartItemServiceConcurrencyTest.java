@@ -0,0 +1,257 @@
+package com.example.assignment_three_zelora.model.service;
+
+import com.example.assignment_three_zelora.dto.CartItemResponse;
+import com.example.assignment_three_zelora.model.repos.CartItemRepository;
+import com.example.assignment_three_zelora.model.repos.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Concurrency check for add-to-cart against a simulated cart_items table.
+ * No database is needed: the table enforces unique_cart_item and answers the upsert
+ * the way MySQL does, including the connection-scoped LAST_INSERT_ID.
+ */
+class CartItemServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int ADDS_PER_THREAD = 100;
+
+    /**
+     * cart_items rows keyed by (user_id, product_id).
+     */
+    private static final class FakeCartTable extends JdbcTemplate {
+        private final Map<List<Integer>, int[]> rows = new HashMap<>(); // key -> {cartItemId, quantity}
+        private final ThreadLocal<Integer> lastInsertId = new ThreadLocal<>();
+        private int nextId = 1;
+        private int upserts;
+        volatile CountDownLatch deleteGate;
+        final CountDownLatch deleteStarted = new CountDownLatch(1);
+
+        synchronized void seed(int userId, int productId, int quantity) {
+            rows.put(List.of(userId, productId), new int[]{nextId++, quantity});
+        }
+
+        synchronized Integer quantity(int userId, int productId) {
+            int[] row = rows.get(List.of(userId, productId));
+            return row != null ? row[1] : null;
+        }
+
+        synchronized int rowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public synchronized int update(String sql, Object... args) {
+            assertTrue(sql.startsWith("INSERT INTO cart_items"), sql);
+            upserts++;
+            List<Integer> key = List.of((Integer) args[0], (Integer) args[1]);
+            int[] row = rows.get(key);
+            if (row != null) {
+                row[1] += (Integer) args[2];
+                lastInsertId.set(row[0]);
+                return 2;
+            }
+            row = new int[]{nextId++, (Integer) args[2]};
+            rows.put(key, row);
+            lastInsertId.set(row[0]);
+            return 1;
+        }
+
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType) {
+            assertEquals("SELECT LAST_INSERT_ID()", sql);
+            return requiredType.cast(lastInsertId.get());
+        }
+
+        @Override
+        public synchronized <T> T queryForObject(String sql, RowMapper<T> rowMapper, Object... args) {
+            for (int[] row : rows.values()) {
+                if (row[0] == (Integer) args[0]) {
+                    ResultSet rs = mock(ResultSet.class);
+                    try {
+                        when(rs.getInt(1)).thenReturn(row[1]);
+                        when(rs.getBigDecimal(2)).thenReturn(new BigDecimal("10.00"));
+                        return rowMapper.mapRow(rs, 0);
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            if (sql.startsWith("DELETE") && deleteGate != null) {
+                deleteStarted.countDown();
+                try {
+                    assertTrue(deleteGate.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            synchronized (this) {
+                int[] counts = new int[batchArgs.size()];
+                for (int i = 0; i < batchArgs.size(); i++) {
+                    Object[] args = batchArgs.get(i);
+                    Integer id = (Integer) args[args.length - 1];
+                    for (Iterator<int[]> it = rows.values().iterator(); it.hasNext(); ) {
+                        int[] row = it.next();
+                        if (row[0] == id) {
+                            if (sql.startsWith("DELETE")) {
+                                it.remove();
+                            } else {
+                                row[1] = (Integer) args[0];
+                            }
+                            counts[i] = 1;
+                            break;
+                        }
+                    }
+                }
+                return counts;
+            }
+        }
+    }
+
+    private FakeCartTable table;
+    private CartCache cartCache;
+    private CartItemService service;
+
+    @BeforeEach
+    void setUp() {
+        table = new FakeCartTable();
+        StockLedger stockLedger = mock(StockLedger.class);
+        when(stockLedger.getAvailable(anyInt())).thenReturn(Integer.MAX_VALUE);
+        CartReservationService reservations = mock(CartReservationService.class);
+        when(reservations.isEnabled()).thenReturn(false);
+        ProductPriceCache prices = mock(ProductPriceCache.class);
+        when(prices.getPrice(anyInt())).thenAnswer(inv ->
+                new ProductPriceCache.PriceEntry(inv.getArgument(0), 1000, -1, 500, System.currentTimeMillis()));
+        CartItemRepository cartItems = mock(CartItemRepository.class);
+        cartCache = new CartCache(cartItems, mock(ProductRepository.class), stockLedger,
+                table, mock(PlatformTransactionManager.class), 1000, 30);
+        service = new CartItemService(cartItems, prices, stockLedger, reservations, cartCache);
+    }
+
+    @Test
+    void parallelAddsOfOneProductEndInOneRowWithTheSummedQuantity() throws Exception {
+        runInParallel(THREADS, t -> {
+            for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                service.addToCart(1, 7, 1);
+            }
+        });
+
+        List<CartItemResponse> cart = service.getCartByUserId(1);
+        assertEquals(1, cart.size());
+        assertEquals(THREADS * ADDS_PER_THREAD, cart.get(0).getQuantity());
+        assertEquals(1, table.upserts, "only the first add should reach the database");
+
+        cartCache.flush();
+        assertEquals(1, table.rowCount());
+        assertEquals(THREADS * ADDS_PER_THREAD, table.quantity(1, 7));
+        assertEquals(0, new BigDecimal("8000.00").compareTo(service.getCartTotal(1)));
+    }
+
+    @Test
+    void parallelAddsAcrossUsersAndProductsKeepEveryLineSeparate() throws Exception {
+        runInParallel(THREADS, t -> {
+            for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                service.addToCart(i % 4, i % 3, 1 + t % 2);
+            }
+        });
+        cartCache.flush();
+
+        assertEquals(12, table.rowCount());
+        for (int user = 0; user < 4; user++) {
+            for (int product = 0; product < 3; product++) {
+                int perThread = 0;
+                for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                    if (i % 4 == user && i % 3 == product) {
+                        perThread++;
+                    }
+                }
+                // Half the threads add 1 unit, the other half 2
+                int expected = perThread * (THREADS / 2) * 3;
+                assertEquals(expected, table.quantity(user, product), "user " + user + " product " + product);
+            }
+        }
+    }
+
+    @Test
+    void addForARowWrittenOutsideTheCacheMergesIntoIt() {
+        table.seed(2, 7, 5);
+
+        CartItemResponse response = service.addToCart(2, 7, 3);
+
+        assertEquals(8, response.getQuantity());
+        assertEquals(1, table.rowCount());
+        assertEquals(8, table.quantity(2, 7));
+    }
+
+    @Test
+    void addWaitsForAnInFlightDeleteOfTheSameProduct() throws Exception {
+        CartItemResponse first = service.addToCart(3, 7, 2);
+        service.removeFromCart(first.getCartItemId(), 3);
+
+        table.deleteGate = new CountDownLatch(1);
+        Thread flusher = new Thread(cartCache::flush);
+        flusher.start();
+        assertTrue(table.deleteStarted.await(5, TimeUnit.SECONDS));
+
+        Thread adder = new Thread(() -> service.addToCart(3, 7, 4));
+        adder.start();
+        adder.join(200);
+        assertTrue(adder.isAlive(), "add should wait for the delete to commit");
+
+        table.deleteGate.countDown();
+        flusher.join();
+        adder.join();
+
+        assertEquals(1, table.rowCount());
+        assertEquals(4, table.quantity(3, 7));
+        assertEquals(4, service.getCartByUserId(3).get(0).getQuantity());
+    }
+
+    private interface Worker {
+        void run(int thread) throws Exception;
+    }
+
+    private static void runInParallel(int threads, Worker worker) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> started = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread th = new Thread(() -> {
+                try {
+                    start.await();
+                    worker.run(thread);
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            th.start();
+            started.add(th);
+        }
+        start.countDown();
+        for (Thread th : started) {
+            th.join();
+        }
+        assertTrue(failures.isEmpty(), () -> "Worker failed: " + failures.get(0));
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.assignment_three_zelora.service;
+
+import com.example.assignment_three_zelora.model.entitys.Orders;
+import com.example.assignment_three_zelora.model.repos.OrdersRepository;
+import com.example.assignment_three_zelora.model.service.OrdersService;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Concurrency check for OptimisticRetry through OrdersService.updateOrder, the path the
+ * order endpoints use, with the retry settings from application.properties.
+ * No database is needed: the repository is backed by one simulated order row that behaves
+ * like a JPA entity with @Version, failing the save when the version read earlier no
+ * longer matches.
+ */
+class OptimisticRetryTest {
+
+    private static final int ORDER_ID = 1;
+    private static final int ROUNDS = 100;
+    // Every round is a full collision, the worst case, so versioned writers queue up behind
+    // their backoffs; they may still take at most this many times as long as unversioned ones
+    private static final double MAX_SLOWDOWN = 25.0;
+
+    /**
+     * The one order row behind the mocked repository.
+     */
+    private static final class OrderRow {
+        private final boolean checkVersion;
+        private BigDecimal totalAmount = BigDecimal.ZERO;
+        private int version;
+        // Runs after every read, before the caller gets the order
+        private volatile Runnable readHook = () -> { };
+
+        OrderRow(boolean checkVersion) {
+            this.checkVersion = checkVersion;
+        }
+
+        synchronized Orders read() {
+            Orders order = new Orders();
+            order.setOrderId(ORDER_ID);
+            order.setOrderStatus("Pending");
+            order.setTotalAmount(totalAmount);
+            order.setVersion(version);
+            return order;
+        }
+
+        synchronized Orders save(Orders order) {
+            if (checkVersion && order.getVersion() != version) {
+                throw new ObjectOptimisticLockingFailureException(Orders.class, ORDER_ID);
+            }
+            totalAmount = order.getTotalAmount();
+            version++;
+            return read();
+        }
+
+        synchronized int total() {
+            return totalAmount.intValue();
+        }
+    }
+
+    @Test
+    void concurrentIncrementsAreNotLost() throws Exception {
+        Properties config = loadConfig();
+        int maxAttempts = Integer.parseInt(config.getProperty("zelora.retry.max-attempts"));
+        OptimisticRetry retry = new OptimisticRetry(TransactionOperations.withoutTransaction(), maxAttempts,
+                Long.parseLong(config.getProperty("zelora.retry.base-backoff-ms")),
+                Long.parseLong(config.getProperty("zelora.retry.max-backoff-ms")));
+        // Writers go in rounds, and a failed attempt means another writer of the same round
+        // landed since the read, so no call fails more often than there are other writers;
+        // with one writer per configured attempt none can run out
+        int writers = maxAttempts;
+
+        OrderRow versioned = new OrderRow(true);
+        long versionedNanos = runRounds(versioned, newOrdersService(versioned, retry), writers);
+
+        int total = writers * ROUNDS;
+        assertEquals(total, versioned.total());
+        OptimisticRetry.Stats stats = retry.getStats("Orders");
+        assertEquals(total, stats.getCalls());
+        assertEquals(0, stats.getExhausted());
+        assertTrue(stats.getConflicts() >= (long) (writers - 1) * ROUNDS,
+                "all but one writer of every round should conflict, got " + stats.getConflicts());
+
+        // The same rounds without a version check: every round's writers read the same total
+        OrderRow unversioned = new OrderRow(false);
+        OptimisticRetry unversionedRetry = new OptimisticRetry(TransactionOperations.withoutTransaction(), 1, 0, 0);
+        long unversionedNanos = runRounds(unversioned, newOrdersService(unversioned, unversionedRetry), writers);
+
+        assertEquals(ROUNDS, unversioned.total(), "unversioned writers should keep one update per round");
+        double slowdown = (double) versionedNanos / unversionedNanos;
+        System.err.printf("OptimisticRetryTest: versioned %d ms, unversioned %d ms (%.1fx), %d conflicts%n",
+                versionedNanos / 1_000_000, unversionedNanos / 1_000_000, slowdown, stats.getConflicts());
+        assertTrue(slowdown <= MAX_SLOWDOWN,
+                "versioned updates took " + String.format("%.1f", slowdown) + "x as long as unversioned ones");
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        OptimisticRetry retry = new OptimisticRetry(TransactionOperations.withoutTransaction(), 3, 0, 0);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(OptimisticLockingFailureException.class, () -> retry.execute("Orders", () -> {
+            attempts.incrementAndGet();
+            throw new OptimisticLockingFailureException("always stale");
+        }));
+
+        assertEquals(3, attempts.get());
+        assertEquals(1, retry.getStats("Orders").getExhausted());
+        assertEquals(3, retry.getStats("Orders").getConflicts());
+    }
+
+    @Test
+    void otherExceptionsAreNotRetried() {
+        OptimisticRetry retry = new OptimisticRetry(TransactionOperations.withoutTransaction(), 5, 0, 0);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> retry.execute("Orders", () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("not a conflict");
+        }));
+
+        assertEquals(1, attempts.get());
+    }
+
+    // Each writer adds one to the order total per round; returns the wall time of all rounds
+    private static long runRounds(OrderRow row, OrdersService ordersService, int writers) throws InterruptedException {
+        CyclicBarrier reads = new CyclicBarrier(writers);
+        CyclicBarrier rounds = new CyclicBarrier(writers);
+        ThreadLocal<Boolean> firstRead = ThreadLocal.withInitial(() -> false);
+        row.readHook = () -> {
+            // Every writer's first read of a round happens before anyone writes, so conflicts are certain
+            if (firstRead.get()) {
+                firstRead.set(false);
+                await(reads);
+            }
+            pause(); // time between the read and the write, as a round trip would take
+        };
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int t = 0; t < writers; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < ROUNDS; i++) {
+                        firstRead.set(true);
+                        Optional<Orders> saved = ordersService.updateOrder(ORDER_ID,
+                                order -> order.setTotalAmount(order.getTotalAmount().add(BigDecimal.ONE)));
+                        assertTrue(saved.isPresent());
+                        await(rounds);
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - started;
+        assertTrue(failures.isEmpty(), () -> "worker failed: " + failures.get(0));
+        return elapsed;
+    }
+
+    private static OrdersService newOrdersService(OrderRow row, OptimisticRetry retry) {
+        OrdersRepository orders = mock(OrdersRepository.class);
+        when(orders.findById(ORDER_ID)).thenAnswer(invocation -> {
+            Orders order = row.read();
+            row.readHook.run();
+            return Optional.of(order);
+        });
+        when(orders.save(any(Orders.class))).thenAnswer(invocation -> row.save(invocation.getArgument(0)));
+        return new OrdersService(orders, mock(ApplicationEventPublisher.class),
+                mock(PlatformTransactionManager.class), retry);
+    }
+
+    // The retry settings from the main application.properties, even when a test one is also on the classpath
+    private static Properties loadConfig() throws IOException {
+        Enumeration<URL> candidates = OptimisticRetryTest.class.getClassLoader().getResources("application.properties");
+        while (candidates.hasMoreElements()) {
+            Properties config = new Properties();
+            try (InputStream in = candidates.nextElement().openStream()) {
+                config.load(in);
+            }
+            if (config.containsKey("zelora.retry.max-attempts")) {
+                return config;
+            }
+        }
+        throw new IllegalStateException("no application.properties sets zelora.retry.max-attempts");
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}